@@ -0,0 +1,52 @@
+package com.marklogic.semantics.sesame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openrdf.model.Resource;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * merges the context of a statement with the contexts passed to add or remove,
+ * no server required; run with -prof gc for bytes allocated per statement
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MergeResourceBenchmark {
+
+    @Param({"0", "1", "4"})
+    public int contexts;
+
+    private Resource context;
+    private Resource[] arr;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ValueFactory f = ValueFactoryImpl.getInstance();
+        context = f.createURI("http://example.org/graph/statement");
+        arr = new Resource[contexts];
+        for (int i = 0; i < contexts; i++) {
+            arr[i] = f.createURI("http://example.org/graph/" + i);
+        }
+    }
+
+    @Benchmark
+    public Resource[] withContext() {
+        return MarkLogicRepositoryConnection.mergeResource(context, arr);
+    }
+
+    @Benchmark
+    public Resource[] withoutContext() {
+        return MarkLogicRepositoryConnection.mergeResource(null, arr);
+    }
+}
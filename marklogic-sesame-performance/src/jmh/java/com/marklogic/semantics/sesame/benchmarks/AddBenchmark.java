@@ -0,0 +1,110 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * time to add batchSize statements through the write cache and sync them,
+ * on threads connections at once; requires MarkLogic
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AddBenchmark {
+
+    static final String CONTEXT = "http://marklogic.com/perf/add";
+
+    @Param({"100", "1000", "10000"})
+    public int batchSize;
+
+    @Param({"100", "750", "5000"})
+    public long cacheSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private MarkLogicRepository repository;
+    private MarkLogicRepositoryConnection[] connections;
+    private Workers workers;
+    private Resource context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        repository = PerfSettings.newRepository();
+        connections = new MarkLogicRepositoryConnection[threads];
+        for (int i = 0; i < threads; i++) {
+            connections[i] = repository.getConnection();
+            connections[i].configureWriteCache(0, 800, cacheSize);
+        }
+        context = repository.getValueFactory().createURI(CONTEXT);
+        connections[0].clear(context);
+        workers = new Workers(threads);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() throws Exception {
+        connections[0].clear(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workers.shutdown();
+        for (MarkLogicRepositoryConnection conn : connections) {
+            conn.close();
+        }
+        repository.shutDown();
+    }
+
+    @Benchmark
+    public void add() throws Exception {
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                MarkLogicRepositoryConnection conn = connections[worker];
+                conn.add(statements(conn.getValueFactory(), worker, batchSize, sequence), context);
+                conn.sync();
+            }
+        });
+    }
+
+    /**
+     * returns count statements with a subject per worker and unique objects
+     *
+     * @param f
+     * @param worker
+     * @param count
+     * @param sequence
+     * @return List
+     */
+    static List<Statement> statements(ValueFactory f, int worker, int count, AtomicLong sequence) {
+        URI subject = f.createURI("http://marklogic.com/perf/worker" + worker);
+        URI predicate = f.createURI("http://marklogic.com/perf/value");
+        long first = sequence.getAndAdd(count);
+        List<Statement> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(f.createStatement(subject, predicate, f.createLiteral(first + i)));
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,84 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Resource;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * time to load a test data file, on threads connections at once with a
+ * graph per thread; requires MarkLogic
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkLoadBenchmark {
+
+    static final String CONTEXT = "http://marklogic.com/perf/load";
+
+    @Param({"databases.ttl", "test-small.owl", "test.owl"})
+    public String file;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MarkLogicRepository repository;
+    private MarkLogicRepositoryConnection[] connections;
+    private Resource[] contexts;
+    private Workers workers;
+    private File data;
+    private RDFFormat format;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        data = PerfSettings.testData(file);
+        format = Rio.getParserFormatForFileName(data.getName(), RDFFormat.RDFXML);
+        repository = PerfSettings.newRepository();
+        connections = new MarkLogicRepositoryConnection[threads];
+        contexts = new Resource[threads];
+        for (int i = 0; i < threads; i++) {
+            connections[i] = repository.getConnection();
+            contexts[i] = repository.getValueFactory().createURI(CONTEXT + i);
+        }
+        clear();
+        workers = new Workers(threads);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() throws Exception {
+        connections[0].clear(contexts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workers.shutdown();
+        for (MarkLogicRepositoryConnection conn : connections) {
+            conn.close();
+        }
+        repository.shutDown();
+    }
+
+    @Benchmark
+    public void load() throws Exception {
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                connections[worker].add(data, "http://marklogic.com/perf/", format, contexts[worker]);
+            }
+        });
+    }
+}
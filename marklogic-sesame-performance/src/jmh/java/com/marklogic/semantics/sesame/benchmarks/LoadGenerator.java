@@ -0,0 +1,133 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.client.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * load generator; runs a read/write mix once per combination of connection and
+ * thread counts and reports throughput and p50/p99/p999 latency per operation
+ * type, then a scaling table of all runs. Connects like the benchmarks, see
+ * PerfSettings; arguments are described by LoadSettings.USAGE.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings;
+        try {
+            settings = new LoadSettings(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadSettings.USAGE);
+            System.exit(2);
+            return;
+        }
+        int status = 0;
+        MarkLogicRepository repository = PerfSettings.newRepository();
+        List<LoadRun> runs = new ArrayList<>();
+        try {
+            System.out.println(settings);
+            for (int connections : settings.getConnections()) {
+                for (int threads : settings.getThreads()) {
+                    LoadRun run = new LoadRun(repository, settings, connections, threads);
+                    run.run();
+                    report(run, System.out);
+                    runs.add(run);
+                }
+            }
+            scaling(runs, System.out);
+            if (settings.getCsv() != null) {
+                csv(runs, settings.getCsv());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        } finally {
+            repository.shutDown();
+        }
+        System.exit(status);
+    }
+
+    /**
+     * prints throughput and latency percentiles of each operation of run
+     *
+     * @param run
+     * @param out
+     */
+    static void report(LoadRun run, PrintStream out) {
+        out.println();
+        out.println(String.format(Locale.ROOT, "connections=%d threads=%d elapsed=%.1fs throughput=%.1f ops/s",
+                run.getConnections(), run.getThreads(), run.getElapsedNanos() / 1e9, run.getThroughput()));
+        out.println(String.format(Locale.ROOT, "%-10s %10s %8s %10s %10s %10s %10s %10s %10s",
+                "operation", "count", "errors", "ops/s", "mean(us)", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+        for (LoadRun.Operation op : LoadRun.Operation.values()) {
+            Histogram latency = run.getLatencyMicros(op);
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            out.println(String.format(Locale.ROOT, "%-10s %10d %8d %10.1f %10.0f %10d %10d %10d %10d",
+                    op.name().toLowerCase(Locale.ROOT), latency.getCount(), run.getErrors(op), run.getThroughput(op),
+                    latency.getMean(), latency.getP50(), latency.getP99(), latency.getP999(), latency.getMax()));
+        }
+    }
+
+    /**
+     * prints one row per run with total throughput and p99 of each operation
+     *
+     * @param runs
+     * @param out
+     */
+    static void scaling(List<LoadRun> runs, PrintStream out) {
+        out.println();
+        out.println("scaling, p99 in us");
+        StringBuilder header = new StringBuilder(String.format(Locale.ROOT, "%11s %7s %10s", "connections", "threads", "ops/s"));
+        for (LoadRun.Operation op : LoadRun.Operation.values()) {
+            header.append(String.format(Locale.ROOT, " %10s", op.name().toLowerCase(Locale.ROOT)));
+        }
+        out.println(header);
+        for (LoadRun run : runs) {
+            StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%11d %7d %10.1f",
+                    run.getConnections(), run.getThreads(), run.getThroughput()));
+            for (LoadRun.Operation op : LoadRun.Operation.values()) {
+                Histogram latency = run.getLatencyMicros(op);
+                row.append(latency.getCount() == 0 ? String.format(Locale.ROOT, " %10s", "-")
+                        : String.format(Locale.ROOT, " %10d", latency.getP99()));
+            }
+            out.println(row);
+        }
+    }
+
+    /**
+     * writes one row per run and operation to file
+     *
+     * @param runs
+     * @param file
+     * @throws IOException
+     */
+    static void csv(List<LoadRun> runs, String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("connections,threads,operation,count,errors,opsPerSecond,meanMicros,p50Micros,p99Micros,p999Micros,maxMicros");
+            for (LoadRun run : runs) {
+                for (LoadRun.Operation op : LoadRun.Operation.values()) {
+                    Histogram latency = run.getLatencyMicros(op);
+                    out.println(String.format(Locale.ROOT, "%d,%d,%s,%d,%d,%.3f,%.1f,%d,%d,%d,%d",
+                            run.getConnections(), run.getThreads(), op.name().toLowerCase(Locale.ROOT),
+                            latency.getCount(), run.getErrors(op), run.getThroughput(op), latency.getMean(),
+                            latency.getP50(), latency.getP99(), latency.getP999(), latency.getMax()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.sesame.client.Histogram;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.GraphQuery;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * a single load generator run; threads workers issue a weighted mix of operations
+ * on connections shared round robin, until the duration has passed or the
+ * operation count is reached, recording latency per operation type.
+ *
+ * Without a rate workers run closed loop, each starting its next operation when
+ * the last one completes. With a rate, operations are scheduled at fixed intervals
+ * and latency is measured from the scheduled start, so a stalled server shows up
+ * in the percentiles instead of lowering the offered load.
+ */
+final class LoadRun {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadRun.class);
+
+    static final String CONTEXT = "http://marklogic.com/perf/load";
+
+    private static final String NS = "http://marklogic.com/perf/";
+    private static final int PREDICATES = 10;
+    private static final int PRELOAD_BATCH = 1000;
+
+    /**
+     * operations of the mix
+     */
+    enum Operation {
+        SELECT, CONSTRUCT, ASK, ADD, REMOVE
+    }
+
+    private final MarkLogicRepository repository;
+    private final LoadSettings settings;
+    private final int connectionCount;
+    private final int threads;
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Operation[] choices;
+
+    private MarkLogicRepositoryConnection[] connections;
+    private URI context;
+    private long elapsedNanos;
+
+    /**
+     * constructor
+     *
+     * @param repository
+     * @param settings
+     * @param connections number of connections
+     * @param threads number of workers
+     */
+    LoadRun(MarkLogicRepository repository, LoadSettings settings, int connections, int threads) {
+        this.repository = repository;
+        this.settings = settings;
+        this.connectionCount = connections;
+        this.threads = threads;
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new Histogram());
+            errors.put(op, new AtomicLong());
+        }
+        this.choices = settings.choices();
+    }
+
+    /**
+     * opens connections, loads data, warms up and runs the measured load; clears
+     * the data and closes connections afterwards
+     *
+     * @throws Exception
+     */
+    void run() throws Exception {
+        connections = new MarkLogicRepositoryConnection[connectionCount];
+        Workers workers = new Workers(threads);
+        try {
+            for (int i = 0; i < connectionCount; i++) {
+                connections[i] = repository.getConnection();
+            }
+            context = repository.getValueFactory().createURI(CONTEXT);
+            preload();
+            if (settings.getWarmupMillis() > 0) {
+                generate(workers, settings.getWarmupMillis(), 0);
+                for (Operation op : Operation.values()) {
+                    latencies.get(op).reset();
+                    errors.get(op).set(0);
+                }
+            }
+            elapsedNanos = generate(workers, settings.getDurationMillis(), settings.getOperations());
+        } finally {
+            workers.shutdown();
+            if (connections[0] != null) {
+                connections[0].clear(context);
+            }
+            for (MarkLogicRepositoryConnection conn : connections) {
+                if (conn != null) {
+                    conn.close();
+                }
+            }
+        }
+    }
+
+    int getConnections() {
+        return connectionCount;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    Histogram getLatencyMicros(Operation op) {
+        return latencies.get(op);
+    }
+
+    long getErrors(Operation op) {
+        return errors.get(op).get();
+    }
+
+    /**
+     * returns operations completed per second, of all types
+     *
+     * @return double
+     */
+    double getThroughput() {
+        long count = 0;
+        for (Histogram histogram : latencies.values()) {
+            count += histogram.getCount();
+        }
+        return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * returns operations of type op completed per second
+     *
+     * @param op
+     * @return double
+     */
+    double getThroughput(Operation op) {
+        return elapsedNanos == 0 ? 0 : latencies.get(op).getCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * adds preload statements, PREDICATES per subject
+     *
+     * @throws Exception
+     */
+    private void preload() throws Exception {
+        MarkLogicRepositoryConnection conn = connections[0];
+        ValueFactory f = conn.getValueFactory();
+        conn.clear(context);
+        for (int i = 0; i < settings.getPreload(); i++) {
+            conn.add(f.createURI(NS + "s" + (i / PREDICATES)), f.createURI(NS + "p" + (i % PREDICATES)), f.createLiteral((long) i), context);
+            if (i % PRELOAD_BATCH == PRELOAD_BATCH - 1) {
+                conn.sync();
+            }
+        }
+        conn.sync();
+    }
+
+    /**
+     * runs workers until millis have passed or operations are done, whichever is first
+     *
+     * @param workers
+     * @param millis 0 or less for no time limit
+     * @param operations 0 or less for no operation limit
+     * @return elapsed nanoseconds
+     * @throws Exception
+     */
+    private long generate(Workers workers, long millis, long operations) throws Exception {
+        final long start = System.nanoTime();
+        final long deadline = millis > 0 ? start + TimeUnit.MILLISECONDS.toNanos(millis) : Long.MAX_VALUE;
+        final AtomicLong remaining = new AtomicLong(operations > 0 ? operations : Long.MAX_VALUE);
+        final long interval = settings.getRate() > 0 ? (long) (threads * 1e9 / settings.getRate()) : 0;
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                MarkLogicRepositoryConnection conn = connections[worker % connections.length];
+                Deque<List<Statement>> added = new ArrayDeque<>();
+                long scheduled = start + interval * worker / threads;
+                while (remaining.getAndDecrement() > 0) {
+                    long begin = System.nanoTime();
+                    if (interval > 0) {
+                        scheduled += interval;
+                        while ((begin = System.nanoTime()) < scheduled) {
+                            LockSupport.parkNanos(scheduled - begin);
+                        }
+                        begin = scheduled;
+                    }
+                    if (begin >= deadline) {
+                        break;
+                    }
+                    Operation op = choices[ThreadLocalRandom.current().nextInt(choices.length)];
+                    if (op == Operation.REMOVE && added.isEmpty()) {
+                        op = Operation.ADD;
+                    }
+                    try {
+                        execute(op, conn, worker, added);
+                    } catch (Exception e) {
+                        if (errors.get(op).getAndIncrement() == 0) {
+                            logger.warn("{} failed", op, e);
+                        }
+                    }
+                    latencies.get(op).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin));
+                }
+            }
+        });
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * runs a single operation against a random preloaded subject
+     *
+     * @param op
+     * @param conn
+     * @param worker
+     * @param added batches added by this worker and not yet removed
+     * @throws Exception
+     */
+    private void execute(Operation op, MarkLogicRepositoryConnection conn, int worker, Deque<List<Statement>> added) throws Exception {
+        ValueFactory f = conn.getValueFactory();
+        int subjects = Math.max(1, settings.getPreload() / PREDICATES);
+        URI subject = f.createURI(NS + "s" + ThreadLocalRandom.current().nextInt(subjects));
+        switch (op) {
+            case SELECT:
+                TupleQuery select = conn.prepareTupleQuery(QueryLanguage.SPARQL,
+                        "SELECT ?p ?o WHERE { GRAPH <" + CONTEXT + "> { ?s ?p ?o } }");
+                select.setBinding("s", subject);
+                TupleQueryResult rows = select.evaluate();
+                try {
+                    while (rows.hasNext()) {
+                        rows.next();
+                    }
+                } finally {
+                    rows.close();
+                }
+                break;
+            case CONSTRUCT:
+                GraphQuery construct = conn.prepareGraphQuery(QueryLanguage.SPARQL,
+                        "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + CONTEXT + "> { ?s ?p ?o } }");
+                construct.setBinding("s", subject);
+                GraphQueryResult statements = construct.evaluate();
+                try {
+                    while (statements.hasNext()) {
+                        statements.next();
+                    }
+                } finally {
+                    statements.close();
+                }
+                break;
+            case ASK:
+                BooleanQuery ask = conn.prepareBooleanQuery(QueryLanguage.SPARQL,
+                        "ASK { GRAPH <" + CONTEXT + "> { ?s <" + NS + "p0> ?o } }");
+                ask.setBinding("s", subject);
+                ask.evaluate();
+                break;
+            case ADD:
+                List<Statement> batch = AddBenchmark.statements(f, worker, settings.getBatchSize(), sequence);
+                conn.add(batch, context);
+                conn.sync();
+                added.add(batch);
+                break;
+            case REMOVE:
+                conn.remove(added.poll(), context);
+                conn.sync();
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + op + ".");
+        }
+    }
+}
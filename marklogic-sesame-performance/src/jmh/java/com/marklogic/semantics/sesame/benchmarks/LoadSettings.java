@@ -0,0 +1,190 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * settings of the load generator, parsed from name=value arguments; connections
+ * and threads take comma separated lists, every combination is one run
+ */
+final class LoadSettings {
+
+    static final String USAGE = "arguments, all optional:\n"
+            + "  mix=select:60,construct:10,ask:10,add:15,remove:5  weight of each operation\n"
+            + "  connections=1          comma separated connection counts\n"
+            + "  threads=1,2,4,8        comma separated thread counts\n"
+            + "  duration=30            seconds measured per run, 0 for no limit\n"
+            + "  operations=0           operations per run, 0 for no limit\n"
+            + "  warmup=5               seconds of unmeasured load before each run\n"
+            + "  rate=0                 operations per second of all threads, 0 for closed loop\n"
+            + "  batchSize=10           statements per add and remove\n"
+            + "  preload=10000          statements loaded before each run\n"
+            + "  csv=                   file to write one row per run and operation";
+
+    private final Map<LoadRun.Operation, Integer> mix = new EnumMap<>(LoadRun.Operation.class);
+    private List<Integer> connections = Collections.singletonList(1);
+    private List<Integer> threads = list("1,2,4,8");
+    private long durationMillis = 30000;
+    private long operations = 0;
+    private long warmupMillis = 5000;
+    private double rate = 0;
+    private int batchSize = 10;
+    private int preload = 10000;
+    private String csv;
+
+    /**
+     * constructor
+     *
+     * @param args name=value arguments
+     */
+    LoadSettings(String... args) {
+        mix("select:60,construct:10,ask:10,add:15,remove:5");
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected name=value, not " + arg + ".");
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "mix":
+                    mix(value);
+                    break;
+                case "connections":
+                    connections = list(value);
+                    break;
+                case "threads":
+                    threads = list(value);
+                    break;
+                case "duration":
+                    durationMillis = (long) (Double.parseDouble(value) * 1000);
+                    break;
+                case "operations":
+                    operations = Long.parseLong(value);
+                    break;
+                case "warmup":
+                    warmupMillis = (long) (Double.parseDouble(value) * 1000);
+                    break;
+                case "rate":
+                    rate = Double.parseDouble(value);
+                    break;
+                case "batchSize":
+                    batchSize = Integer.parseInt(value);
+                    break;
+                case "preload":
+                    preload = Integer.parseInt(value);
+                    break;
+                case "csv":
+                    csv = value.isEmpty() ? null : value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting " + entry.getKey() + ".");
+            }
+        }
+        if (durationMillis <= 0 && operations <= 0) {
+            throw new IllegalArgumentException("duration or operations must be positive.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive.");
+        }
+    }
+
+    List<Integer> getConnections() {
+        return connections;
+    }
+
+    List<Integer> getThreads() {
+        return threads;
+    }
+
+    long getDurationMillis() {
+        return durationMillis;
+    }
+
+    long getOperations() {
+        return operations;
+    }
+
+    long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    double getRate() {
+        return rate;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getPreload() {
+        return preload;
+    }
+
+    String getCsv() {
+        return csv;
+    }
+
+    /**
+     * returns operations repeated by weight, for drawing uniformly at random
+     *
+     * @return Operation[]
+     */
+    LoadRun.Operation[] choices() {
+        List<LoadRun.Operation> choices = new ArrayList<>();
+        for (Map.Entry<LoadRun.Operation, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                choices.add(entry.getKey());
+            }
+        }
+        return choices.toArray(new LoadRun.Operation[choices.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return "mix=" + mix + " duration=" + durationMillis + "ms operations=" + operations
+                + " warmup=" + warmupMillis + "ms rate=" + rate + " batchSize=" + batchSize + " preload=" + preload;
+    }
+
+    private void mix(String value) {
+        mix.clear();
+        for (String part : value.split(",")) {
+            String[] weight = part.split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight, not " + part + ".");
+            }
+            int w = Integer.parseInt(weight[1].trim());
+            if (w < 0) {
+                throw new IllegalArgumentException("Weight of " + weight[0] + " must not be negative.");
+            }
+            mix.put(LoadRun.Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), w);
+        }
+        int total = 0;
+        for (int w : mix.values()) {
+            total += w;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("mix must have a positive weight.");
+        }
+    }
+
+    private static List<Integer> list(String value) {
+        List<Integer> counts = new ArrayList<>();
+        for (String part : value.split(",")) {
+            int count = Integer.parseInt(part.trim());
+            if (count < 1) {
+                throw new IllegalArgumentException("Counts must be positive, not " + count + ".");
+            }
+            counts.add(count);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,102 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.standin.StandInServer;
+import org.openrdf.repository.RepositoryException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * MarkLogic connection settings of the benchmarks, read once from gradle.properties
+ * in the working directory; system properties of the same name override them.
+ *
+ * With -Dstandin=true the benchmarks run against an embedded stand-in instead,
+ * with standinLatencyMillis and standinBytesPerSecond simulating the network.
+ */
+final class PerfSettings {
+
+    static final String TESTDATA_DIR = "src/jmh/resources/testdata";
+
+    private static Properties properties;
+    private static StandInServer standIn;
+
+    private PerfSettings() {
+    }
+
+    /**
+     * returns initialized repository for the MarkLogic instance under test
+     *
+     * @return MarkLogicRepository
+     * @throws RepositoryException
+     */
+    static MarkLogicRepository newRepository() throws RepositoryException {
+        if (Boolean.getBoolean("standin")) {
+            MarkLogicRepository repository = new MarkLogicRepository("127.0.0.1", standIn().getPort(), "admin", "admin", "DIGEST");
+            repository.initialize();
+            return repository;
+        }
+        Properties props = properties();
+        MarkLogicRepository repository = new MarkLogicRepository(
+                get(props, "mlHost"),
+                Integer.parseInt(get(props, "mlRestPort")),
+                get(props, "mlUsername"),
+                get(props, "mlPassword"),
+                "DIGEST");
+        repository.initialize();
+        return repository;
+    }
+
+    /**
+     * returns file in the benchmark test data directory
+     *
+     * @param name
+     * @return File
+     */
+    static File testData(String name) {
+        File file = new File(TESTDATA_DIR, name);
+        if (!file.isFile()) {
+            throw new IllegalStateException("Missing benchmark test data " + file.getAbsolutePath() + ".");
+        }
+        return file;
+    }
+
+    private static synchronized StandInServer standIn() throws RepositoryException {
+        if (standIn == null) {
+            StandInServer server = new StandInServer();
+            server.setLatencyMillis(Long.getLong("standinLatencyMillis", 0));
+            server.setBytesPerSecond(Long.getLong("standinBytesPerSecond", 0));
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new RepositoryException("Cannot start stand-in.", e);
+            }
+            standIn = server;
+        }
+        return standIn;
+    }
+
+    private static synchronized Properties properties() {
+        if (properties == null) {
+            Properties props = new Properties();
+            try (InputStream in = new FileInputStream("gradle.properties")) {
+                props.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read gradle.properties from " + new File(".").getAbsolutePath() + ".", e);
+            }
+            properties = props;
+        }
+        return properties;
+    }
+
+    private static String get(Properties props, String name) {
+        String value = System.getProperty(name, props.getProperty(name));
+        if (value == null) {
+            throw new IllegalStateException("Missing benchmark setting " + name + ".");
+        }
+        return value;
+    }
+}
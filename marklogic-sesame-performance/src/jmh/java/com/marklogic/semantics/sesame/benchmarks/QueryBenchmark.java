@@ -0,0 +1,156 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.sesame.query.MarkLogicBooleanQuery;
+import com.marklogic.semantics.sesame.query.MarkLogicGraphQuery;
+import com.marklogic.semantics.sesame.query.MarkLogicTupleQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Resource;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.TupleQueryResult;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * time to run SELECT, CONSTRUCT and ASK queries and read every result, on
+ * threads connections at once, against ROWS statements loaded once per
+ * trial; requires MarkLogic
+ *
+ * The client always receives SPARQL JSON and N-Triples, resultFormat picks
+ * how they are parsed: pull on the calling thread or background with
+ * batchSize results handed over at once. ASK results are not streamed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueryBenchmark {
+
+    static final String CONTEXT = "http://marklogic.com/perf/query";
+
+    static final int ROWS = 10000;
+
+    private static final String SELECT = "select ?s ?p ?o where { graph <" + CONTEXT + "> { ?s ?p ?o } } limit 1000";
+    private static final String CONSTRUCT = "construct { ?s ?p ?o } where { graph <" + CONTEXT + "> { ?s ?p ?o } } limit 1000";
+    private static final String ASK = "ask where { graph <" + CONTEXT + "> { ?s ?p \"" + (ROWS / 2) + "\"^^<http://www.w3.org/2001/XMLSchema#long> } }";
+
+    @Param({"pull", "background"})
+    public String resultFormat;
+
+    @Param({"64", "512"})
+    public int batchSize;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    private MarkLogicRepository repository;
+    private MarkLogicRepositoryConnection[] connections;
+    private Workers workers;
+    private long[] consumed;
+    private boolean pullParsing;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (!"pull".equals(resultFormat) && !"background".equals(resultFormat)) {
+            throw new IllegalArgumentException("Unknown resultFormat " + resultFormat + ".");
+        }
+        pullParsing = "pull".equals(resultFormat);
+        repository = PerfSettings.newRepository();
+        connections = new MarkLogicRepositoryConnection[threads];
+        for (int i = 0; i < threads; i++) {
+            connections[i] = repository.getConnection();
+            connections[i].configureResultBatching(batchSize, 4);
+        }
+        MarkLogicRepositoryConnection conn = connections[0];
+        Resource context = conn.getValueFactory().createURI(CONTEXT);
+        conn.clear(context);
+        conn.add(AddBenchmark.statements(conn.getValueFactory(), 0, ROWS, new AtomicLong()), context);
+        conn.sync();
+        workers = new Workers(threads);
+        consumed = new long[threads];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workers.shutdown();
+        connections[0].clear(connections[0].getValueFactory().createURI(CONTEXT));
+        for (MarkLogicRepositoryConnection conn : connections) {
+            conn.close();
+        }
+        repository.shutDown();
+    }
+
+    @Benchmark
+    public long select() throws Exception {
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                MarkLogicTupleQuery query = connections[worker].prepareTupleQuery(SELECT);
+                query.setPullParsing(pullParsing);
+                TupleQueryResult result = query.evaluate();
+                try {
+                    long hash = 0;
+                    while (result.hasNext()) {
+                        hash += result.next().hashCode();
+                    }
+                    consumed[worker] = hash;
+                } finally {
+                    result.close();
+                }
+            }
+        });
+        return sum(consumed);
+    }
+
+    @Benchmark
+    public long construct() throws Exception {
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                MarkLogicGraphQuery query = connections[worker].prepareGraphQuery(CONSTRUCT);
+                query.setPullParsing(pullParsing);
+                GraphQueryResult result = query.evaluate();
+                try {
+                    long hash = 0;
+                    while (result.hasNext()) {
+                        hash += result.next().hashCode();
+                    }
+                    consumed[worker] = hash;
+                } finally {
+                    result.close();
+                }
+            }
+        });
+        return sum(consumed);
+    }
+
+    @Benchmark
+    public long ask() throws Exception {
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                MarkLogicBooleanQuery query = connections[worker].prepareBooleanQuery(ASK);
+                consumed[worker] = query.evaluate() ? 1 : 0;
+            }
+        });
+        return sum(consumed);
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,99 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.client.BatchingQueueCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.http.client.QueueCursor;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.ListBindingSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares per row handoff (Sesame QueueCursor) against BatchingQueueCursor
+ * between a producer thread and the consumer, no server required
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueueCursorBenchmark {
+
+    private static final int ROWS = 100000;
+
+    @Param({"256", "512", "1024"})
+    public int batchSize;
+
+    @Param({"4"})
+    public int queueCapacity;
+
+    private BindingSet[] rows;
+    private ExecutorService producer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ValueFactory f = new ValueFactoryImpl();
+        List<String> names = Arrays.asList("s", "p", "o");
+        rows = new BindingSet[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new ListBindingSet(names,
+                    f.createURI("http://example.org/s" + i),
+                    f.createURI("http://example.org/p"),
+                    f.createLiteral(i));
+        }
+        producer = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        producer.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void perRowQueueCursor(Blackhole bh) throws Exception {
+        drain(new QueueCursor<BindingSet>(10), bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void batchingQueueCursor(Blackhole bh) throws Exception {
+        drain(new BatchingQueueCursor<BindingSet>(batchSize, queueCapacity), bh);
+    }
+
+    private void drain(final QueueCursor<BindingSet> cursor, Blackhole bh) throws Exception {
+        producer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (BindingSet row : rows) {
+                        cursor.put(row);
+                    }
+                } catch (InterruptedException e) {
+                    cursor.toss(e);
+                } finally {
+                    cursor.done();
+                }
+            }
+        });
+        while (cursor.hasNext()) {
+            bh.consume(cursor.next());
+        }
+        cursor.close();
+    }
+}
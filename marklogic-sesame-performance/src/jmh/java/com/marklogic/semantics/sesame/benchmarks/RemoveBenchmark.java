@@ -0,0 +1,95 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * time to remove batchSize statements and sync, on threads connections at
+ * once; statements are added before each invocation, outside the
+ * measurement; requires MarkLogic
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RemoveBenchmark {
+
+    static final String CONTEXT = "http://marklogic.com/perf/remove";
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private MarkLogicRepository repository;
+    private MarkLogicRepositoryConnection[] connections;
+    private List<List<Statement>> batches;
+    private Workers workers;
+    private Resource context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        repository = PerfSettings.newRepository();
+        connections = new MarkLogicRepositoryConnection[threads];
+        for (int i = 0; i < threads; i++) {
+            connections[i] = repository.getConnection();
+        }
+        batches = new ArrayList<>(threads);
+        context = repository.getValueFactory().createURI(CONTEXT);
+        connections[0].clear(context);
+        workers = new Workers(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void addBatches() throws Exception {
+        batches.clear();
+        for (int i = 0; i < threads; i++) {
+            MarkLogicRepositoryConnection conn = connections[i];
+            List<Statement> batch = AddBenchmark.statements(conn.getValueFactory(), i, batchSize, sequence);
+            batches.add(batch);
+            conn.add(batch, context);
+            conn.sync();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workers.shutdown();
+        connections[0].clear(context);
+        for (MarkLogicRepositoryConnection conn : connections) {
+            conn.close();
+        }
+        repository.shutDown();
+    }
+
+    @Benchmark
+    public void remove() throws Exception {
+        workers.run(new Workers.Task() {
+            @Override
+            public void run(int worker) throws Exception {
+                MarkLogicRepositoryConnection conn = connections[worker];
+                conn.remove(batches.get(worker), context);
+                conn.sync();
+            }
+        });
+    }
+}
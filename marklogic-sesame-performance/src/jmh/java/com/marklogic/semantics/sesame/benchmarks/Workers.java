@@ -0,0 +1,95 @@
+package com.marklogic.semantics.sesame.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * runs one task per worker concurrently and waits for all of them, so a
+ * benchmark invocation covers threads concurrent operations; a single
+ * worker runs on the benchmark thread
+ */
+final class Workers {
+
+    /**
+     * work of a single worker
+     */
+    interface Task {
+        void run(int worker) throws Exception;
+    }
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * constructor
+     *
+     * @param threads number of workers
+     */
+    Workers(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive.");
+        }
+        this.threads = threads;
+        this.executor = threads == 1 ? null : Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * returns number of workers
+     *
+     * @return int
+     */
+    int size() {
+        return threads;
+    }
+
+    /**
+     * runs task on every worker, rethrowing the first failure
+     *
+     * @param task
+     * @throws Exception
+     */
+    void run(final Task task) throws Exception {
+        if (executor == null) {
+            task.run(0);
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int worker = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    task.run(worker);
+                    return null;
+                }
+            }));
+        }
+        Exception failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * stops worker threads
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.marklogic.semantics.sesame.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * builds the INSERT DATA and DELETE DATA payloads of a full write or delete cache
+ * flush against a no-op client, no server required; run with -prof gc for bytes
+ * allocated per flush
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CacheFlushBenchmark {
+
+    @Param({"100", "750", "5000"})
+    public int statements;
+
+    @Param({"1", "10"})
+    public int graphs;
+
+    private NoOpMarkLogicClient client;
+    private TripleCache writeCache;
+    private TripleCache deleteCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = new NoOpMarkLogicClient();
+        List<Statement> cached = statements(ValueFactoryImpl.getInstance(), statements, graphs);
+        writeCache = new RetainedWriteCache(client, cached);
+        deleteCache = new RetainedDeleteCache(client, cached);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public int writeCacheFlush() throws Exception {
+        writeCache.forceRun();
+        return client.getLastLength();
+    }
+
+    @Benchmark
+    public int deleteCacheFlush() throws Exception {
+        deleteCache.forceRun();
+        return client.getLastLength();
+    }
+
+    /**
+     * returns statements spread over graphs, with IRI, blank node, plain, typed and
+     * language tagged terms in the proportions of a typical load
+     *
+     * @param f
+     * @param count
+     * @param graphs
+     * @return List
+     */
+    static List<Statement> statements(ValueFactory f, int count, int graphs) {
+        List<Statement> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Resource subject = i % 10 == 0
+                    ? f.createBNode("b" + i)
+                    : f.createURI("http://example.org/resource/" + (i / 5));
+            Resource graph = f.createURI("http://example.org/graph/" + (i % graphs));
+            switch (i % 4) {
+                case 0:
+                    statements.add(f.createStatement(subject, f.createURI("http://example.org/p/link"),
+                            f.createURI("http://example.org/resource/" + i), graph));
+                    break;
+                case 1:
+                    statements.add(f.createStatement(subject, f.createURI("http://example.org/p/label"),
+                            f.createLiteral("label \"" + i + "\"\nwith escapes"), graph));
+                    break;
+                case 2:
+                    statements.add(f.createStatement(subject, f.createURI("http://example.org/p/count"),
+                            f.createLiteral(Integer.toString(i), XMLSchema.INT), graph));
+                    break;
+                default:
+                    statements.add(f.createStatement(subject, f.createURI("http://example.org/p/name"),
+                            f.createLiteral("name " + i, "en"), graph));
+                    break;
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * model keeping its statements when cleared, so every flush builds the same payload
+     */
+    private static class RetainedModel extends LinkedHashModel {
+
+        private static final long serialVersionUID = 1L;
+
+        RetainedModel(Collection<Statement> statements) {
+            super(statements);
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        // LinkedHashModel declares a raw Iterator
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<Statement> iterator() {
+            return super.iterator();
+        }
+    }
+
+    private static class RetainedWriteCache extends TripleWriteCache {
+
+        RetainedWriteCache(MarkLogicClient client, Collection<Statement> statements) {
+            super(client, Long.MAX_VALUE);
+            cache = new RetainedModel(statements);
+        }
+    }
+
+    private static class RetainedDeleteCache extends TripleDeleteCache {
+
+        RetainedDeleteCache(MarkLogicClient client, Collection<Statement> statements) {
+            super(client, Long.MAX_VALUE);
+            cache = new RetainedModel(statements);
+        }
+    }
+}
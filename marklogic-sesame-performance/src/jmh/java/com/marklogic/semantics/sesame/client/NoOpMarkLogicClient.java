@@ -0,0 +1,44 @@
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import org.openrdf.repository.sparql.query.SPARQLQueryBindingSet;
+
+/**
+ * MarkLogicClient that drops updates instead of sending them, keeping the length
+ * of the last update; its DatabaseClient never connects, so no server is required
+ */
+class NoOpMarkLogicClient extends MarkLogicClient {
+
+    private final DatabaseClient databaseClient;
+
+    private long updates = 0;
+    private int lastLength = 0;
+
+    NoOpMarkLogicClient() {
+        this(DatabaseClientFactory.newClient("localhost", 8000, "admin", "admin", DatabaseClientFactory.Authentication.DIGEST));
+    }
+
+    private NoOpMarkLogicClient(DatabaseClient databaseClient) {
+        super(databaseClient);
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    void sendCacheFlush(String queryString, SPARQLQueryBindingSet bindings) {
+        updates++;
+        lastLength = queryString.length();
+    }
+
+    DatabaseClient getDatabaseClient() {
+        return databaseClient;
+    }
+
+    long getUpdates() {
+        return updates;
+    }
+
+    int getLastLength() {
+        return lastLength;
+    }
+}
@@ -0,0 +1,80 @@
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.impl.SPARQLBindingsImpl;
+import com.marklogic.client.semantics.SPARQLQueryDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * encodes a single add or remove; object binding and blank node skolemization,
+ * no server required; run with -prof gc for bytes allocated per value
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValueEncodingBenchmark {
+
+    @Param({"uri", "plain", "typed", "lang", "bnode"})
+    public String value;
+
+    private NoOpMarkLogicClient client;
+    private SPARQLQueryDefinition qdef;
+    private Value object;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ValueFactory f = ValueFactoryImpl.getInstance();
+        switch (value) {
+            case "uri":
+                object = f.createURI("http://example.org/resource/1");
+                break;
+            case "plain":
+                object = f.createLiteral("a plain literal");
+                break;
+            case "typed":
+                object = f.createLiteral("42", XMLSchema.INT);
+                break;
+            case "lang":
+                object = f.createLiteral("a literal", "en");
+                break;
+            case "bnode":
+                object = f.createBNode("b1");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown value " + value + ".");
+        }
+        client = new NoOpMarkLogicClient();
+        qdef = client.getDatabaseClient().newSPARQLQueryManager()
+                .newQueryDefinition("INSERT DATA { GRAPH ?ctx { ?s ?p ?o } }");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public SPARQLQueryDefinition bindObject() throws Exception {
+        qdef.setBindings(new SPARQLBindingsImpl());
+        return MarkLogicClientImpl.bindObject(qdef, "o", object);
+    }
+
+    @Benchmark
+    public Value skolemize() {
+        return client.skolemize(object);
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+import org.openrdf.rio.nquads.NQuadsWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import static com.marklogic.semantics.sesame.client.MarkLogicClient.DEFAULT_GRAPH_URI;
+
+/**
+ * exports graphs with one CONSTRUCT per graph, running up to parallelism
+ * graphs at once on the client async executor.
+ *
+ * toNQuads spools each graph to a temporary N-Quads file and appends the files
+ * to the output in graph order, so the merged stream is the same whatever order
+ * graphs complete in; statements of the default graph are written without a
+ * context. toFiles writes one gzipped N-Triples file per graph.
+ *
+ * @author James Fuller
+ */
+class GraphExport {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphExport.class);
+
+    static final String NTRIPLES_GZIP_SUFFIX = ".nt.gz";
+
+    private static final int MAX_FILE_NAME_LENGTH = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MarkLogicRepositoryConnection conn;
+    private final MarkLogicClient client;
+    private final boolean includeInferred;
+    private final int parallelism;
+
+    /**
+     * constructor
+     *
+     * @param conn
+     * @param client
+     * @param includeInferred
+     * @param parallelism maximum number of graphs exported at once
+     */
+    GraphExport(MarkLogicRepositoryConnection conn, MarkLogicClient client, boolean includeInferred, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        this.conn = conn;
+        this.client = client;
+        this.includeInferred = includeInferred;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * writes graphs to out as N-Quads, in the order given
+     *
+     * @param graphs
+     * @param out not closed
+     * @return number of bytes written
+     * @throws RepositoryException
+     */
+    long toNQuads(List<Resource> graphs, final OutputStream out) throws RepositoryException {
+        final WritableByteChannel target = Channels.newChannel(out);
+        final long[] total = new long[1];
+        run(graphs, new GraphTask<File>() {
+            @Override
+            File export(Resource graph) throws Exception {
+                return spool(graph);
+            }
+
+            @Override
+            void done(Resource graph, File spooled) throws IOException {
+                try {
+                    total[0] += append(spooled, target);
+                } finally {
+                    delete(spooled);
+                }
+            }
+
+            @Override
+            void discard(File spooled) {
+                delete(spooled);
+            }
+        });
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
+        return total[0];
+    }
+
+    /**
+     * writes each graph to a gzipped N-Triples file in directory; if the export
+     * fails the files written so far are deleted
+     *
+     * @param graphs
+     * @param directory
+     * @return files by graph, in the order given
+     * @throws RepositoryException
+     */
+    Map<Resource, File> toFiles(List<Resource> graphs, final File directory) throws RepositoryException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new RepositoryException("Cannot create export directory " + directory + ".");
+        }
+        final Map<Resource, File> files = new LinkedHashMap<>();
+        boolean complete = false;
+        try {
+            run(graphs, new GraphTask<File>() {
+                @Override
+                File export(Resource graph) throws Exception {
+                    File file = new File(directory, fileName(graph));
+                    boolean exported = false;
+                    OutputStream out = new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+                    try {
+                        conn.exportStatements(null, null, null, includeInferred, out, RDFFormat.NTRIPLES, graph);
+                        exported = true;
+                    } finally {
+                        out.close();
+                        if (!exported) {
+                            delete(file);
+                        }
+                    }
+                    return file;
+                }
+
+                @Override
+                void done(Resource graph, File file) {
+                    files.put(graph, file);
+                }
+
+                @Override
+                void discard(File file) {
+                    delete(file);
+                }
+            });
+            complete = true;
+        } finally {
+            if (!complete) {
+                for (File file : files.values()) {
+                    delete(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * returns file name for graph, the URL encoded graph IRI or its SHA-1 hash if that is too long
+     *
+     * @param graph
+     * @return String
+     */
+    static String fileName(Resource graph) {
+        String name;
+        try {
+            name = URLEncoder.encode(graph.stringValue(), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if (name.length() > MAX_FILE_NAME_LENGTH) {
+            name = Hashing.sha1().hashString(graph.stringValue(), Charsets.UTF_8).toString();
+        }
+        return name + NTRIPLES_GZIP_SUFFIX;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * runs task for each graph, keeping at most parallelism graphs in flight and
+     * handing results to task.done() in graph order; once run fails, results of
+     * graphs not handed over are passed to task.discard() instead, including
+     * those of tasks still running
+     *
+     * @param graphs
+     * @param task
+     * @throws RepositoryException
+     */
+    private <T> void run(List<Resource> graphs, final GraphTask<T> task) throws RepositoryException {
+        final AtomicBoolean abandoned = new AtomicBoolean(false);
+        List<ListenableFuture<T>> futures = new ArrayList<>(graphs.size());
+        int consumed = 0;
+        try {
+            for (int i = 0; i < graphs.size(); i++) {
+                while (futures.size() < graphs.size() && futures.size() < i + parallelism) {
+                    final Resource graph = graphs.get(futures.size());
+                    futures.add(client.submit(new Callable<T>() {
+                        @Override
+                        public T call() throws Exception {
+                            if (abandoned.get()) {
+                                return null;
+                            }
+                            logger.debug("exporting graph {}", graph);
+                            T result = task.export(graph);
+                            // set before futures are cancelled, so a result the cancelled future drops is discarded here
+                            if (abandoned.get()) {
+                                task.discard(result);
+                                return null;
+                            }
+                            return result;
+                        }
+                    }));
+                }
+                T result = futures.get(i).get();
+                consumed++;
+                task.done(graphs.get(i), result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            }
+            throw new RepositoryException(cause);
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        } finally {
+            abandoned.set(true);
+            for (int i = consumed; i < futures.size(); i++) {
+                ListenableFuture<T> future = futures.get(i);
+                future.cancel(true);
+                Futures.addCallback(future, new FutureCallback<T>() {
+                    @Override
+                    public void onSuccess(T result) {
+                        if (result != null) {
+                            task.discard(result);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * exports graph to a temporary N-Quads file
+     *
+     * @param graph
+     * @return File
+     * @throws IOException
+     * @throws RepositoryException
+     * @throws RDFHandlerException
+     */
+    private File spool(Resource graph) throws IOException, RepositoryException, RDFHandlerException {
+        File spooled = File.createTempFile("marklogic-sesame-export", ".nq");
+        boolean exported = false;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(spooled), BUFFER_SIZE);
+        try {
+            Resource context = DEFAULT_GRAPH_URI.equals(graph.stringValue()) ? null : graph;
+            conn.exportStatements(null, null, null, includeInferred, new ContextHandler(new NQuadsWriter(out), conn.getValueFactory(), context), graph);
+            exported = true;
+        } finally {
+            out.close();
+            if (!exported) {
+                delete(spooled);
+            }
+        }
+        return spooled;
+    }
+
+    /**
+     * appends file to target channel
+     *
+     * @param file
+     * @param target
+     * @return number of bytes appended
+     * @throws IOException
+     */
+    private static long append(File file, WritableByteChannel target) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel source = in.getChannel();
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * deletes file, logging failures
+     *
+     * @param file
+     */
+    private static void delete(File file) {
+        if (file != null && !file.delete()) {
+            logger.warn("could not delete export file {}", file);
+        }
+    }
+
+    /**
+     * export of a single graph
+     */
+    private abstract static class GraphTask<T> {
+
+        abstract T export(Resource graph) throws Exception;
+
+        abstract void done(Resource graph, T result) throws IOException;
+
+        void discard(T result) {
+        }
+    }
+
+    /**
+     * sets context of every statement passed on to the wrapped handler
+     */
+    private static class ContextHandler extends RDFHandlerWrapper {
+
+        private final ValueFactory vf;
+        private final Resource context;
+
+        ContextHandler(NQuadsWriter writer, ValueFactory vf, Resource context) {
+            super(writer);
+            this.vf = vf;
+            this.context = context;
+        }
+
+        @Override
+        public void handleStatement(Statement st) throws RDFHandlerException {
+            super.handleStatement(vf.createStatement(st.getSubject(), st.getPredicate(), st.getObject(), context));
+        }
+    }
+}
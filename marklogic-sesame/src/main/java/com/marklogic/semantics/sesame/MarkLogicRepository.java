@@ -20,10 +20,19 @@
  */
 package com.marklogic.semantics.sesame;
 
+import com.google.common.base.Supplier;
 import com.marklogic.client.DatabaseClient;
-import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.sesame.client.DatabaseClientRegistry;
+import com.marklogic.semantics.sesame.client.HttpTransportSettings;
 import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import com.marklogic.semantics.sesame.client.MarkLogicClientMetrics;
 import com.marklogic.semantics.sesame.client.MarkLogicClientDependent;
+import com.marklogic.semantics.sesame.client.MarkLogicClientPool;
+import com.marklogic.semantics.sesame.client.GraphCatalog;
+import com.marklogic.semantics.sesame.client.GraphStatistics;
+import com.marklogic.semantics.sesame.client.InterningValueFactory;
+import com.marklogic.semantics.sesame.client.QueryResultCache;
+import com.marklogic.semantics.sesame.client.RequestListener;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.repository.Repository;
@@ -34,6 +43,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -57,6 +67,7 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
     private String user;
     private String password;
     private String auth;
+    private String database;
 
     private boolean quadMode;
 
@@ -64,6 +75,34 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
 
     private DatabaseClient databaseClient;
 
+    // false if databaseClient was supplied by the caller, who then releases it
+    private boolean ownsDatabaseClient = true;
+
+    private QueryResultCache queryResultCache;
+
+    private GraphStatistics graphStatistics;
+
+    private GraphCatalog graphCatalog;
+
+    private ExecutorService asyncExecutor;
+
+    private MarkLogicClientPool clientPool;
+
+    private HttpTransportSettings httpTransportSettings;
+
+    private MarkLogicClientMetrics metrics;
+
+    private RequestListener requestListener;
+
+    private final Supplier<MarkLogicClient> clientFactory = new Supplier<MarkLogicClient>() {
+        @Override
+        public MarkLogicClient get() {
+            return newMarkLogicClient();
+        }
+    };
+
+    private final PreparedQueryCache preparedQueryCache = new PreparedQueryCache();
+
     /**
      * constructor inited with connection URL
      *
@@ -80,7 +119,6 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
         this.user = cred[0];
         this.password = cred[1];
         this.auth = "DIGEST";
-        this.client = getMarkLogicClient();
     }
 
     /**
@@ -94,6 +132,21 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
      * @param auth
      */
     public MarkLogicRepository(String host, int port, String user, String password, String auth) {
+        this(host, port, user, password, auth, null);
+    }
+
+    /**
+     *
+     * constructor inited with connection vars to a database on MarkLogic server
+     *
+     * @param host
+     * @param port
+     * @param user
+     * @param password
+     * @param auth
+     * @param database null for the database of the REST server
+     */
+    public MarkLogicRepository(String host, int port, String user, String password, String auth, String database) {
         super();
         this.f = new ValueFactoryImpl();
         this.quadMode = true;
@@ -102,8 +155,7 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
         this.user = user;
         this.password = password;
         this.auth = auth;
-        this.databaseClient = DatabaseClientFactory.newClient(host,port,user,password,DatabaseClientFactory.Authentication.valueOf(auth));
-        this.client = new MarkLogicClient(databaseClient);
+        this.database = database;
     }
 
     /**
@@ -122,7 +174,8 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
         this.user = databaseClient.getUser();
         this.password = databaseClient.getPassword();
         this.auth = databaseClient.getAuthentication().name();
-        this.client = new MarkLogicClient(databaseClient);
+        this.database = databaseClient.getDatabase();
+        this.ownsDatabaseClient = false;
     }
     
     /**
@@ -143,6 +196,199 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
         this.f=f;
     }
 
+    /**
+     * returns true if the value factory interns repeated terms
+     *
+     * @return boolean
+     */
+    public boolean isInterning() {
+        return this.f instanceof InterningValueFactory;
+    }
+
+    /**
+     * installs an InterningValueFactory shared by connections created afterwards, so parsed
+     * results share URI and short literal instances; false restores a plain ValueFactoryImpl
+     *
+     * @param interning
+     */
+    public void setInterning(boolean interning) {
+        if (interning != isInterning()) {
+            this.f = interning ? new InterningValueFactory() : new ValueFactoryImpl();
+        }
+    }
+
+    /**
+     * gets the query result cache shared by connections, null if caching is disabled
+     *
+     * @return QueryResultCache
+     */
+    public QueryResultCache getQueryResultCache() {
+        return this.queryResultCache;
+    }
+
+    /**
+     * sets the query result cache shared by connections created afterwards, null disables caching
+     *
+     * @param queryResultCache
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * gets the graph statistics shared by connections, null if disabled
+     *
+     * @return GraphStatistics
+     */
+    public GraphStatistics getGraphStatistics() {
+        return this.graphStatistics;
+    }
+
+    /**
+     * sets the graph statistics answering size() for connections created afterwards, null disables them;
+     * counts are only kept up to date by clears, graphs that statements are added to or removed from
+     * are recounted on the next size() and other writes recount all graphs
+     *
+     * @param graphStatistics
+     */
+    public void setGraphStatistics(GraphStatistics graphStatistics) {
+        this.graphStatistics = graphStatistics;
+    }
+
+    /**
+     * gets the graph catalog shared by connections, null if disabled
+     *
+     * @return GraphCatalog
+     */
+    public GraphCatalog getGraphCatalog() {
+        return this.graphCatalog;
+    }
+
+    /**
+     * sets the graph catalog answering getContextIDs() for connections created afterwards, null disables it
+     *
+     * @param graphCatalog
+     */
+    public void setGraphCatalog(GraphCatalog graphCatalog) {
+        this.graphCatalog = graphCatalog;
+    }
+
+    /**
+     * gets the executor running async queries and updates, null if the shared default pool is used
+     *
+     * @return ExecutorService
+     */
+    public ExecutorService getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /**
+     * sets the executor running async queries and updates of connections created afterwards,
+     * null uses the shared default pool
+     *
+     * @param asyncExecutor
+     */
+    public void setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * gets the pool of clients reused by connections, null if every connection gets a new client
+     *
+     * @return MarkLogicClientPool
+     */
+    public MarkLogicClientPool getClientPool() {
+        return this.clientPool;
+    }
+
+    /**
+     * sets the pool of clients reused by connections created afterwards, null gives every
+     * connection a new client; a pool replaced here is closed once its clients are returned
+     *
+     * @param clientPool
+     */
+    public synchronized void setClientPool(MarkLogicClientPool clientPool) {
+        MarkLogicClientPool previous = this.clientPool;
+        this.clientPool = clientPool;
+        if (previous != null && previous != clientPool) {
+            previous.close();
+        }
+    }
+
+    /**
+     * gets the HTTP transport settings of the DatabaseClient, null for java api client defaults
+     *
+     * @return HttpTransportSettings
+     */
+    public HttpTransportSettings getHttpTransportSettings() {
+        return this.httpTransportSettings;
+    }
+
+    /**
+     * sets the HTTP transport settings applied when initialize() builds the DatabaseClient;
+     * not applied to a DatabaseClient passed to the constructor
+     *
+     * @param httpTransportSettings
+     */
+    public void setHttpTransportSettings(HttpTransportSettings httpTransportSettings) {
+        this.httpTransportSettings = httpTransportSettings;
+    }
+
+    /**
+     * gets the metrics shared by connections, null if disabled
+     *
+     * @return MarkLogicClientMetrics
+     */
+    public MarkLogicClientMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * sets the metrics recorded by connections created afterwards, null disables them;
+     * metrics are registered as a JMX MBean named after host, port and database while
+     * the repository is initialized
+     *
+     * @param metrics
+     */
+    public synchronized void setMetrics(MarkLogicClientMetrics metrics) {
+        MarkLogicClientMetrics previous = this.metrics;
+        this.metrics = metrics;
+        if (previous != null && previous != metrics) {
+            previous.unregisterMBean();
+        }
+        if (metrics != null && isInitialized()) {
+            metrics.registerMBean(getMetricsName());
+        }
+    }
+
+    /**
+     * gets the listener called around every request sent to MarkLogic, null if none
+     *
+     * @return RequestListener
+     */
+    public RequestListener getRequestListener() {
+        return this.requestListener;
+    }
+
+    /**
+     * sets the listener called around every request sent to MarkLogic by connections
+     * created afterwards, null for none
+     *
+     * @param requestListener
+     */
+    public void setRequestListener(RequestListener requestListener) {
+        this.requestListener = requestListener;
+    }
+
+    /**
+     * gets the cache of detected query forms shared by connections
+     *
+     * @return PreparedQueryCache
+     */
+    PreparedQueryCache getPreparedQueryCache() {
+        return this.preparedQueryCache;
+    }
+
     /**
      * @deprecated
      * implemented to honor Repository interface
@@ -152,8 +398,15 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
     @Override
     @Deprecated
     protected void initializeInternal() throws RepositoryException {
-        this.databaseClient = DatabaseClientFactory.newClient(host,port,user,password,DatabaseClientFactory.Authentication.valueOf(auth));
+        if (ownsDatabaseClient) {
+            this.databaseClient = DatabaseClientRegistry.getInstance().acquire(host, port, database, user, password, auth, httpTransportSettings);
+        }
         this.client = new MarkLogicClient(databaseClient);
+        synchronized (this) {
+            if (metrics != null) {
+                metrics.registerMBean(getMetricsName());
+            }
+        }
     }
 
     /**
@@ -165,7 +418,20 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
     @Override
     @Deprecated
     protected void shutDownInternal() throws RepositoryException {
-        client.release();
+        if (clientPool != null) {
+            clientPool.close();
+        }
+        synchronized (this) {
+            if (metrics != null) {
+                metrics.unregisterMBean();
+            }
+        }
+        client.stopTimer();
+        client.close();
+        if (ownsDatabaseClient && databaseClient != null) {
+            DatabaseClientRegistry.getInstance().release(databaseClient);
+            this.databaseClient = null;
+        }
     }
 
     /**
@@ -220,6 +486,10 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
         if (!isInitialized()) {
             throw new RepositoryException("MarkLogicRepository not initialized.");
         }
+        MarkLogicClientPool pool = this.clientPool;
+        if (pool != null) {
+            return new MarkLogicRepositoryConnection(this, pool.checkout(clientFactory), quadMode, pool);
+        }
         return new MarkLogicRepositoryConnection(this, getMarkLogicClient(), quadMode);
     }
 
@@ -230,11 +500,7 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
      */
     @Override
     public synchronized MarkLogicClient getMarkLogicClient() {
-        if(null != databaseClient){
-            this.client = new MarkLogicClient(databaseClient);
-        }else{
-            this.client = new MarkLogicClient(host, port, user, password, auth);
-        }
+        this.client = newMarkLogicClient();
         return this.client;
     }
 
@@ -265,4 +531,30 @@ public class MarkLogicRepository extends RepositoryBase implements Repository,Ma
     public void setQuadMode(boolean quadMode) {
         this.quadMode = quadMode;
     }
-}
\ No newline at end of file
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns name metrics are registered under, eg. localhost:8000/Documents
+     *
+     * @return String
+     */
+    private String getMetricsName() {
+        return host + ":" + port + (database == null ? "" : "/" + database);
+    }
+
+    /**
+     * creates MarkLogicClient on the repository DatabaseClient, or on connection vars if there is none
+     *
+     * @return MarkLogicClient
+     */
+    private MarkLogicClient newMarkLogicClient() {
+        if(null != databaseClient){
+            return new MarkLogicClient(databaseClient);
+        }else{
+            return new MarkLogicClient(host, port, user, password, auth);
+        }
+    }
+}
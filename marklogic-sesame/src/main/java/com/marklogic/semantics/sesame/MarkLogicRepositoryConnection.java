@@ -22,7 +22,10 @@ package com.marklogic.semantics.sesame;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.sesame.client.GraphCatalog;
+import com.marklogic.semantics.sesame.client.GraphStatistics;
 import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import com.marklogic.semantics.sesame.client.MarkLogicClientPool;
 import com.marklogic.semantics.sesame.query.*;
 import info.aduna.iteration.*;
 import org.openrdf.IsolationLevel;
@@ -31,7 +34,6 @@ import org.openrdf.model.*;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.query.*;
 import org.openrdf.query.impl.DatasetImpl;
-import org.openrdf.query.parser.QueryParserUtil;
 import org.openrdf.query.parser.sparql.SPARQLUtil;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
@@ -49,11 +51,19 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.openrdf.query.QueryLanguage.SPARQL;
+import static com.marklogic.semantics.sesame.client.MarkLogicClient.DEFAULT_GRAPH_URI;
 
 /**
  * RepositoryConnection to MarkLogic triplestore
@@ -64,12 +74,14 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicRepositoryConnection.class);
 
-    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
-
     private static final String EVERYTHING = "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }";
 
     private static final String SOMETHING = "ASK { ?s ?p ?o }";
 
+    private static final String ANY_TRIPLE = "ASK { GRAPH ?g { ?s ?p ?o } }";
+
+    private static final String COUNT_PER_GRAPH = "SELECT ?g (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g";
+
     private static final String COUNT_EVERYTHING = "SELECT (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o } }";
 
     private static final String ALL_GRAPH_URIS = "SELECT ?g { GRAPH ?g {} filter (?g != IRI(\"http://marklogic.com/semantics#graphs\"))}";
@@ -84,6 +96,12 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
     private SPARQLRuleset[] defaultRulesets;
     private QueryDefinition defaultQueryDef;
 
+    private final PreparedQueryCache preparedQueries;
+
+    private final MarkLogicClientPool clientPool;
+
+    private final StatementPatterns statementPatterns = new StatementPatterns();
+
     /**
      * constructor
      *
@@ -92,11 +110,31 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
      * @param quadMode
      */
     public MarkLogicRepositoryConnection(MarkLogicRepository repository, MarkLogicClient client, boolean quadMode) {
+        this(repository, client, quadMode, null);
+    }
+
+    /**
+     * constructor with client checked out of pool, which gets it back on close
+     *
+     * @param repository
+     * @param client
+     * @param quadMode
+     * @param clientPool
+     */
+    MarkLogicRepositoryConnection(MarkLogicRepository repository, MarkLogicClient client, boolean quadMode, MarkLogicClientPool clientPool) {
         super(repository);
+        this.clientPool = clientPool;
         this.client = client;
         this.quadMode = true;
         this.defaultGraphPerms = client.emptyGraphPerms();
         client.setValueFactory(repository.getValueFactory());
+        client.setQueryResultCache(repository.getQueryResultCache());
+        client.setGraphStatistics(repository.getGraphStatistics());
+        client.setGraphCatalog(repository.getGraphCatalog());
+        client.setAsyncExecutor(repository.getAsyncExecutor());
+        client.setMetrics(repository.getMetrics());
+        client.setRequestListener(repository.getRequestListener());
+        this.preparedQueries = repository.getPreparedQueryCache();
     }
 
     /**
@@ -128,14 +166,23 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         throws RepositoryException
     {
         if(this.isOpen()){
-            sync();
-            if (this.isActive()) {
-                logger.debug("rollback open transaction on closing connection.");
-                client.rollbackTransaction();
+            try {
+                sync();
+                if (this.isActive()) {
+                    logger.debug("rollback open transaction on closing connection.");
+                    client.rollbackTransaction();
+                }
+            } finally {
+                if (clientPool != null) {
+                    clientPool.checkin(client);
+                    super.close();
+                }
+            }
+            if (clientPool == null) {
+                client.stopTimer();
+                client.close();
+                super.close();
             }
-            client.stopTimer();
-            client.close();
-            super.close();
         }
     }
     
@@ -198,11 +245,11 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
     {
         // function routing based on query form
         if (SPARQL.equals(queryLanguage)) {
-            String queryStringWithoutProlog = QueryParserUtil.removeSPARQLQueryProlog(queryString).toUpperCase();
-            if (queryStringWithoutProlog.startsWith("SELECT")) {
+            PreparedQueryCache.QueryType queryType = preparedQueries.getQueryType(queryString);
+            if (queryType == PreparedQueryCache.QueryType.TUPLE) {
                 return prepareTupleQuery(queryLanguage, queryString, baseURI);   //must be a TupleQuery
             }
-            else if (queryStringWithoutProlog.startsWith("ASK")) {
+            else if (queryType == PreparedQueryCache.QueryType.BOOLEAN) {
                 return prepareBooleanQuery(queryLanguage, queryString, baseURI); //must be a BooleanQuery
             }
             else {
@@ -451,12 +498,17 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
     }
 
     /**
-     * returns list of graph names as Resource
+     * returns list of graph names as Resource, from the repository graph catalog if one is set
      *
      * @throws RepositoryException
      */
     @Override
     public RepositoryResult<Resource> getContextIDs() throws RepositoryException {
+        GraphCatalog catalog = getClient().getGraphCatalog();
+        if (catalog != null && !isActive()) {
+            return new RepositoryResult<Resource>(
+                    new CloseableIteratorIteration<Resource, RepositoryException>(getCatalogGraphs(catalog).iterator()));
+        }
         try{
             TupleQuery tupleQuery = prepareTupleQuery(QueryLanguage.SPARQL, ALL_GRAPH_URIS);
             TupleQueryResult result = tupleQuery.evaluate();
@@ -613,6 +665,55 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         }
     }
 
+    /**
+     * returns statements matching each of many (subject, predicate, object) patterns,
+     * fetching all patterns with as few requests as possible
+     *
+     * patterns are sent as a SPARQL VALUES block, split into several requests when
+     * large; null subject, predicate or object match anything and a pattern with a
+     * context is only matched in that graph, otherwise contexts apply as in getStatements
+     *
+     * @param patterns
+     * @param includeInferred
+     * @param contexts
+     * @return List of matching statements for each pattern, in the order of patterns
+     * @throws RepositoryException
+     */
+    public List<List<Statement>> getStatements(List<? extends Statement> patterns, boolean includeInferred, Resource... contexts) throws RepositoryException {
+        if(!this.isOpen()){throw new RepositoryException("Connection is closed.");}
+        List<List<Statement>> statements = new ArrayList<>(patterns.size());
+        for (int i = 0; i < patterns.size(); i++) {
+            statements.add(new ArrayList<Statement>());
+        }
+        try {
+            for (String values : statementPatterns.valuesBlocks(patterns, contexts)) {
+                MarkLogicTupleQuery query = prepareTupleQuery("SELECT ?idx ?s ?p ?o ?ctx WHERE { " + values + " GRAPH ?ctx { ?s ?p ?o } }");
+                query.setIncludeInferred(includeInferred);
+                TupleQueryResult result = query.evaluate();
+                try {
+                    while (result.hasNext()) {
+                        BindingSet b = result.next();
+                        URI ctx = (URI) b.getValue("ctx");
+                        if (ctx.stringValue().equals(DEFAULT_GRAPH_URI)) {
+                            ctx = null;
+                        }
+                        statements.get(Integer.parseInt(b.getValue("idx").stringValue())).add(
+                                getValueFactory().createStatement((Resource) b.getValue("s"), (URI) b.getValue("p"), b.getValue("o"), ctx));
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+        }
+        catch (MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
+        catch (QueryEvaluationException e) {
+            throw new RepositoryException(e);
+        }
+        return statements;
+    }
+
     // all statements
 
     /**
@@ -686,6 +787,50 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         }
     }
 
+    /**
+     * returns for each statement whether it exists in repository / context, checking
+     * many statements per request
+     *
+     * statements are sent as a SPARQL VALUES block, split into several requests when
+     * large; null subject, predicate or object match anything and a statement with a
+     * context is only checked in that graph, otherwise contexts apply as in hasStatement
+     *
+     * @param statements
+     * @param includeInferred
+     * @param contexts
+     * @return boolean[] in the order of statements
+     * @throws RepositoryException
+     */
+    public boolean[] hasStatements(Iterable<? extends Statement> statements, boolean includeInferred, Resource... contexts) throws RepositoryException {
+        if(!this.isOpen()){throw new RepositoryException("Connection is closed.");}
+        List<Statement> patterns = new ArrayList<>();
+        for (Statement st : statements) {
+            patterns.add(st);
+        }
+        boolean[] found = new boolean[patterns.size()];
+        try {
+            for (String values : statementPatterns.valuesBlocks(patterns, contexts)) {
+                MarkLogicTupleQuery query = prepareTupleQuery("SELECT DISTINCT ?idx WHERE { " + values + " GRAPH ?ctx { ?s ?p ?o } }");
+                query.setIncludeInferred(includeInferred);
+                TupleQueryResult result = query.evaluate();
+                try {
+                    while (result.hasNext()) {
+                        found[Integer.parseInt(result.next().getValue("idx").stringValue())] = true;
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+        }
+        catch (MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
+        catch (QueryEvaluationException e) {
+            throw new RepositoryException(e);
+        }
+        return found;
+    }
+
     /**
      * exports statements via RDFHandler
      *
@@ -698,7 +843,39 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
      */
     @Override
     public void export(RDFHandler handler, Resource... contexts) throws RepositoryException, RDFHandlerException {
-        exportStatements(null, null, null, true, handler);
+        exportStatements(null, null, null, true, handler, contexts);
+    }
+
+    /**
+     * exports graphs to out as N-Quads, running one CONSTRUCT per graph with up to
+     * parallelism graphs exported at once; graphs are written in the order given
+     *
+     * @param out not closed
+     * @param parallelism
+     * @param includeInferred
+     * @param contexts graphs to export, all graphs if none given
+     * @return number of bytes written
+     * @throws RepositoryException
+     */
+    public long exportGraphs(OutputStream out, int parallelism, boolean includeInferred, Resource... contexts) throws RepositoryException {
+        GraphExport export = new GraphExport(this, getClient(), includeInferred, parallelism);
+        return export.toNQuads(getExportGraphs(contexts), out);
+    }
+
+    /**
+     * exports each graph to a gzipped N-Triples file in directory, running up to
+     * parallelism graph exports at once
+     *
+     * @param directory
+     * @param parallelism
+     * @param includeInferred
+     * @param contexts graphs to export, all graphs if none given
+     * @return files by graph
+     * @throws RepositoryException
+     */
+    public Map<Resource, File> exportGraphs(File directory, int parallelism, boolean includeInferred, Resource... contexts) throws RepositoryException {
+        GraphExport export = new GraphExport(this, getClient(), includeInferred, parallelism);
+        return export.toFiles(getExportGraphs(contexts), directory);
     }
 
     /**
@@ -718,49 +895,10 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
     @Override
     public void exportStatements(Resource subject, URI predicate, Value object, boolean includeInferred, RDFHandler handler, Resource... contexts) throws RepositoryException, RDFHandlerException {
         try {
-            StringBuilder ob = new StringBuilder();
-            StringBuilder sb = new StringBuilder();
-
-            if(notNull(object) && object instanceof Literal) {
-                if (object instanceof Literal) {
-                    Literal lit = (Literal) object;
-                    ob.append("\"");
-                    ob.append(SPARQLUtil.encodeString(lit.getLabel()));
-                    ob.append("\"");
-                    ob.append("^^<" + lit.getDatatype().stringValue() + ">");
-                    ob.append(" ");
-                } else {
-                    ob.append("<" + object.stringValue() + "> ");
-                }
-                sb.append("CONSTRUCT {?s ?p "+ob.toString()+"} WHERE {");
-                if(notNull(contexts) && contexts.length>0) {
-                    for (int i = 0; i < contexts.length; i++) {
-                        if(notNull(contexts[i])) {
-                            sb.append("GRAPH <" + contexts[i].stringValue() + "> {?s ?p " + ob.toString() + " .} ");
-                        }else{
-                            sb.append("GRAPH <"+DEFAULT_GRAPH_URI+"> {?s ?p "+ob.toString()+" .}");
-                        }
-                    }
-                    sb.append("}");
-                }else{
-                    sb.append("?s ?p "+ob.toString()+" }");
-                }
-            }else{
-                sb.append("CONSTRUCT {?s ?p ?o} WHERE {");
-                if(notNull(contexts) && contexts.length>0) {
-                    for (int i = 0; i < contexts.length; i++) {
-                        if(contexts[i] != null) {
-                            sb.append("GRAPH <" + contexts[i].stringValue() + "> {?s ?p ?o .} ");
-                        }else{
-                            sb.append("GRAPH <"+DEFAULT_GRAPH_URI+"> {?s ?p ?o .}");
-                        }                    }
-                    sb.append("}");
-                }else{
-                    sb.append("?s ?p ?o }");
-                }
-            }
-            logger.debug(sb.toString());
-            MarkLogicGraphQuery query = prepareGraphQuery(sb.toString());
+            String queryString = getExportQueryString(object, contexts);
+            logger.debug(queryString);
+            MarkLogicGraphQuery query = prepareGraphQuery(queryString);
+            query.setIncludeInferred(includeInferred);
             setBindings(query, subject, predicate, object, contexts);
             query.evaluate(handler);
         }
@@ -772,6 +910,37 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         }
     }
 
+    /**
+     * exports statements to out in dataFormat, copying the serialization returned by
+     * MarkLogic without parsing it
+     *
+     * @param subject
+     * @param predicate
+     * @param object
+     * @param includeInferred
+     * @param out not closed
+     * @param dataFormat N-Triples, Turtle, RDF/XML, RDF/JSON or N3
+     * @param contexts
+     * @return number of bytes written
+     * @throws RepositoryException
+     */
+    public long exportStatements(Resource subject, URI predicate, Value object, boolean includeInferred, OutputStream out, RDFFormat dataFormat, Resource... contexts) throws RepositoryException {
+        try {
+            String queryString = getExportQueryString(object, contexts);
+            logger.debug(queryString);
+            MarkLogicGraphQuery query = prepareGraphQuery(queryString);
+            query.setIncludeInferred(includeInferred);
+            setBindings(query, subject, predicate, object, contexts);
+            return query.evaluate(out, dataFormat);
+        }
+        catch (MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
+        catch (QueryEvaluationException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
     /**
      * returns number of triples in the entire triple store
      *
@@ -780,6 +949,14 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
      */
     @Override
     public long size() throws RepositoryException{
+        Map<String, Long> counts = getGraphCounts();
+        if (counts != null) {
+            long total = 0;
+            for (Long count : counts.values()) {
+                total += count;
+            }
+            return total;
+        }
         try {
             MarkLogicTupleQuery tupleQuery = prepareTupleQuery(COUNT_EVERYTHING);
             tupleQuery.setIncludeInferred(false);
@@ -807,6 +984,22 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         if (contexts == null) {
             contexts = new Resource[] { null };
         }
+        Map<String, Long> counts = getGraphCounts();
+        if (counts != null) {
+            Set<String> graphs = new HashSet<>();
+            for (Resource context : contexts) {
+                graphs.add(context == null ? DEFAULT_GRAPH_URI : context.stringValue());
+            }
+            if (graphs.isEmpty()) {
+                graphs.add(DEFAULT_GRAPH_URI);
+            }
+            long total = 0;
+            for (String graph : graphs) {
+                Long count = counts.get(graph);
+                total += count == null ? 0 : count;
+            }
+            return total;
+        }
         try {
             StringBuilder sb = new StringBuilder();
             sb.append("SELECT (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o }");
@@ -877,7 +1070,15 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
      */
     @Override
     public boolean isEmpty() throws RepositoryException {
-        return size() == 0;
+        try {
+            MarkLogicBooleanQuery query = prepareBooleanQuery(ANY_TRIPLE);
+            query.setIncludeInferred(false);
+            query.setRulesets((SPARQLRuleset)null);
+            query.setConstrainingQueryDefinition((QueryDefinition)null);
+            return !query.evaluate();
+        } catch (QueryEvaluationException | MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
     }
 
     @Override
@@ -1376,6 +1577,41 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         client.initTimer(initDelay, delayCache,cacheSize);
     }
 
+    /**
+     * customise how background parsed query results are handed to the caller.
+     *
+     * @param batchSize - number of results handed over at once, 1 disables batching
+     * @param queueCapacity - number of batches buffered before the parser blocks
+     *
+     */
+    @Override
+    public void configureResultBatching(int batchSize, int queueCapacity){
+        client.setResultBatching(batchSize, queueCapacity);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * utility for merging Resource varargs, prepending o unless it is null
+     *
+     * @param o
+     * @param arr
+     * @return Resource[]
+     */
+    static Resource[] mergeResource(Resource o, Resource... arr) {
+        if(o != null) {
+            Resource[] newArray = new Resource[arr.length + 1];
+            newArray[0] = o;
+            System.arraycopy(arr, 0, newArray, 1, arr.length);
+            return newArray;
+        }else{
+            return arr;
+        }
+
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // private ////////////////////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -1440,25 +1676,6 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         return quadMode;
     }
 
-    /**
-     * private utility for merging Resource varargs
-     *
-     * @param o
-     * @param arr
-     * @return
-     */
-    private static Resource[] mergeResource(Resource o, Resource... arr) {
-        if(o != null) {
-            Resource[] newArray = new Resource[arr.length + 1];
-            newArray[0] = o;
-            System.arraycopy(arr, 0, newArray, 1, arr.length);
-            return newArray;
-        }else{
-            return arr;
-        }
-
-    }
-
     /**
      * convert bindings
      *
@@ -1484,6 +1701,179 @@ public class MarkLogicRepositoryConnection extends RepositoryConnectionBase impl
         };
     }
 
+    /**
+     * returns graphs to export, all graphs if contexts is empty and the default graph for a null context
+     *
+     * @param contexts
+     * @return List
+     * @throws RepositoryException
+     */
+    private List<Resource> getExportGraphs(Resource... contexts) throws RepositoryException {
+        List<Resource> graphs = new ArrayList<Resource>();
+        if (notNull(contexts) && contexts.length > 0) {
+            for (Resource context : contexts) {
+                graphs.add(notNull(context) ? context : getValueFactory().createURI(DEFAULT_GRAPH_URI));
+            }
+        } else {
+            RepositoryResult<Resource> result = getContextIDs();
+            try {
+                while (result.hasNext()) {
+                    graphs.add(result.next());
+                }
+            } finally {
+                result.close();
+            }
+        }
+        return graphs;
+    }
+
+    /**
+     * builds CONSTRUCT query used to export statements, binding ?s ?p and ?o
+     *
+     * @param object
+     * @param contexts
+     * @return String
+     */
+    private String getExportQueryString(Value object, Resource... contexts) {
+        StringBuilder ob = new StringBuilder();
+        StringBuilder sb = new StringBuilder();
+
+        if(notNull(object) && object instanceof Literal) {
+            if (object instanceof Literal) {
+                Literal lit = (Literal) object;
+                ob.append("\"");
+                ob.append(SPARQLUtil.encodeString(lit.getLabel()));
+                ob.append("\"");
+                ob.append("^^<" + lit.getDatatype().stringValue() + ">");
+                ob.append(" ");
+            } else {
+                ob.append("<" + object.stringValue() + "> ");
+            }
+            sb.append("CONSTRUCT {?s ?p "+ob.toString()+"} WHERE {");
+            if(notNull(contexts) && contexts.length>0) {
+                for (int i = 0; i < contexts.length; i++) {
+                    if(notNull(contexts[i])) {
+                        sb.append("GRAPH <" + contexts[i].stringValue() + "> {?s ?p " + ob.toString() + " .} ");
+                    }else{
+                        sb.append("GRAPH <"+DEFAULT_GRAPH_URI+"> {?s ?p "+ob.toString()+" .}");
+                    }
+                }
+                sb.append("}");
+            }else{
+                sb.append("?s ?p "+ob.toString()+" }");
+            }
+        }else{
+            sb.append("CONSTRUCT {?s ?p ?o} WHERE {");
+            if(notNull(contexts) && contexts.length>0) {
+                for (int i = 0; i < contexts.length; i++) {
+                    if(contexts[i] != null) {
+                        sb.append("GRAPH <" + contexts[i].stringValue() + "> {?s ?p ?o .} ");
+                    }else{
+                        sb.append("GRAPH <"+DEFAULT_GRAPH_URI+"> {?s ?p ?o .}");
+                    }                    }
+                sb.append("}");
+            }else{
+                sb.append("?s ?p ?o }");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * returns graphs from repository catalog, populating it if needed
+     *
+     * @param catalog
+     * @return List
+     * @throws RepositoryException
+     */
+    private List<Resource> getCatalogGraphs(GraphCatalog catalog) throws RepositoryException {
+        List<Resource> graphs = catalog.getGraphs();
+        if (graphs != null) {
+            return graphs;
+        }
+        long generation = catalog.getGeneration();
+        graphs = new ArrayList<>();
+        try {
+            TupleQueryResult result = prepareTupleQuery(QueryLanguage.SPARQL, ALL_GRAPH_URIS).evaluate();
+            try {
+                while (result.hasNext()) {
+                    graphs.add((Resource) result.next().getValue("g"));
+                }
+            } finally {
+                result.close();
+            }
+        } catch (MalformedQueryException | QueryEvaluationException e) {
+            throw new RepositoryException(e);
+        }
+        catalog.populate(graphs, generation);
+        return graphs;
+    }
+
+    /**
+     * returns triple count per graph from repository statistics, seeding them or
+     * recounting graphs written to if needed, or null if statistics are disabled, a
+     * transaction is active or a write raced the count
+     *
+     * @return Map
+     * @throws RepositoryException
+     */
+    private Map<String, Long> getGraphCounts() throws RepositoryException {
+        GraphStatistics statistics = getClient().getGraphStatistics();
+        if (statistics == null || isActive()) {
+            return null;
+        }
+        Map<String, Long> counts = statistics.getCounts();
+        if (counts != null) {
+            return counts;
+        }
+        long generation = statistics.getGeneration();
+        Set<String> stale = statistics.getStaleGraphs();
+        counts = new HashMap<>();
+        try {
+            MarkLogicTupleQuery tupleQuery = prepareTupleQuery(stale == null ? COUNT_PER_GRAPH : getCountGraphsQueryString(stale));
+            tupleQuery.setIncludeInferred(false);
+            tupleQuery.setRulesets((SPARQLRuleset)null);
+            tupleQuery.setConstrainingQueryDefinition((QueryDefinition)null);
+            TupleQueryResult qRes = tupleQuery.evaluate();
+            try {
+                while (qRes.hasNext()) {
+                    BindingSet result = qRes.next();
+                    counts.put(result.getValue("g").stringValue(), ((Literal) result.getValue("ct")).longValue());
+                }
+            } finally {
+                qRes.close();
+            }
+        } catch (QueryEvaluationException | MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
+        if (stale == null) {
+            statistics.seed(counts, generation);
+            return counts;
+        }
+        statistics.recount(counts, stale, generation);
+        return statistics.getCounts();
+    }
+
+    /**
+     * builds query counting triples per graph of graphs
+     *
+     * @param graphs
+     * @return String
+     */
+    private static String getCountGraphsQueryString(Set<String> graphs) {
+        StringBuilder sb = new StringBuilder("SELECT ?g (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o } filter (?g IN (");
+        boolean first = true;
+        for (String graph : graphs) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append("<").append(graph).append(">");
+        }
+        sb.append(")) } GROUP BY ?g");
+        return sb.toString();
+    }
+
     /**
      * private utility method that tests if an object is null
      *
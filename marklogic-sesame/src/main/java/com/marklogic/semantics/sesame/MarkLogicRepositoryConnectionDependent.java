@@ -68,4 +68,6 @@ interface MarkLogicRepositoryConnectionDependent {
 
     void configureWriteCache(long initDelay, long delayCache, long cacheSize);
 
+    void configureResultBatching(int batchSize, int queueCapacity);
+
 }
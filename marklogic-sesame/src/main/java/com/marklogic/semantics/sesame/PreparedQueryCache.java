@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame;
+
+import org.openrdf.query.parser.QueryParserUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded LRU cache of the query form detected for a query string, so
+ * repeatedly prepared queries skip prolog removal and form detection.
+ *
+ * @author James Fuller
+ */
+class PreparedQueryCache {
+
+    static final int DEFAULT_CAPACITY = 1000;
+
+    enum QueryType { TUPLE, BOOLEAN, GRAPH }
+
+    private final Map<String, QueryType> queryTypes;
+
+    /**
+     * constructor with default capacity
+     */
+    PreparedQueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * constructor
+     *
+     * @param capacity maximum number of cached query strings
+     */
+    PreparedQueryCache(final int capacity) {
+        this.queryTypes = new LinkedHashMap<String, QueryType>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryType> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * returns query form of SPARQL query string
+     *
+     * @param queryString
+     * @return QueryType
+     */
+    QueryType getQueryType(String queryString) {
+        synchronized (queryTypes) {
+            QueryType type = queryTypes.get(queryString);
+            if (type != null) {
+                return type;
+            }
+        }
+        QueryType type = detectQueryType(queryString);
+        synchronized (queryTypes) {
+            queryTypes.put(queryString, type);
+        }
+        return type;
+    }
+
+    /**
+     * returns number of cached query strings
+     *
+     * @return int
+     */
+    int size() {
+        synchronized (queryTypes) {
+            return queryTypes.size();
+        }
+    }
+
+    /**
+     * detects query form from first keyword after the prolog, without copying the query
+     *
+     * @param queryString
+     * @return QueryType
+     */
+    static QueryType detectQueryType(String queryString) {
+        String query = QueryParserUtil.removeSPARQLQueryProlog(queryString);
+        if (query.regionMatches(true, 0, "SELECT", 0, 6)) {
+            return QueryType.TUPLE;
+        } else if (query.regionMatches(true, 0, "ASK", 0, 3)) {
+            return QueryType.BOOLEAN;
+        }
+        return QueryType.GRAPH;
+    }
+}
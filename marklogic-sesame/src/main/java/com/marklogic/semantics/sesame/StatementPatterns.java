@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.marklogic.semantics.sesame.client.MarkLogicClient.DEFAULT_GRAPH_URI;
+
+/**
+ * renders (s,p,o,ctx) patterns as SPARQL VALUES blocks binding ?idx ?s ?p ?o ?ctx,
+ * split into chunks so each request stays below a pattern count and size limit.
+ *
+ * Null subject, predicate or object match anything. A pattern with a context is
+ * matched in that graph only; one without is matched in the supplied contexts,
+ * following hasStatement: null contexts is the default graph and an empty array
+ * any graph. ?idx is the position of the pattern in the input list.
+ *
+ * @author James Fuller
+ */
+class StatementPatterns {
+
+    static final int DEFAULT_MAX_PATTERNS = 1000;
+    static final int DEFAULT_MAX_CHARS = 256 * 1024;
+
+    private static final String SKOLEM_PREFIX = "http://marklogic.com/semantics/blank/";
+
+    private static final String UNDEF = "UNDEF";
+
+    private final int maxPatterns;
+    private final int maxChars;
+
+    /**
+     * constructor with default limits
+     */
+    StatementPatterns() {
+        this(DEFAULT_MAX_PATTERNS, DEFAULT_MAX_CHARS);
+    }
+
+    /**
+     * constructor
+     *
+     * @param maxPatterns maximum number of patterns per VALUES block
+     * @param maxChars maximum size of a VALUES block, a single larger pattern gets a block of its own
+     */
+    StatementPatterns(int maxPatterns, int maxChars) {
+        if (maxPatterns < 1) {
+            throw new IllegalArgumentException("maxPatterns must be positive.");
+        }
+        this.maxPatterns = maxPatterns;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * builds VALUES blocks covering all patterns
+     *
+     * @param patterns
+     * @param contexts applied to patterns without a context
+     * @return List of VALUES blocks
+     */
+    List<String> valuesBlocks(List<? extends Statement> patterns, Resource... contexts) {
+        List<String> blocks = new ArrayList<>();
+        String[] graphs = graphs(contexts);
+        StringBuilder block = null;
+        int count = 0;
+        StringBuilder rows = new StringBuilder();
+        for (int idx = 0; idx < patterns.size(); idx++) {
+            rows.setLength(0);
+            appendRows(rows, idx, patterns.get(idx), graphs);
+            if (block != null && (count == maxPatterns || block.length() + rows.length() + 1 > maxChars)) {
+                blocks.add(block.append("}").toString());
+                block = null;
+            }
+            if (block == null) {
+                block = new StringBuilder("VALUES (?idx ?s ?p ?o ?ctx) {\n");
+                count = 0;
+            }
+            block.append(rows);
+            count++;
+        }
+        if (block != null) {
+            blocks.add(block.append("}").toString());
+        }
+        return blocks;
+    }
+
+    /**
+     * renders value as SPARQL term, blank nodes as the IRIs they are stored under, null as UNDEF
+     *
+     * @param value
+     * @return String
+     */
+    static String toSPARQL(Value value) {
+        if (value == null) {
+            return UNDEF;
+        }
+        if (value instanceof BNode) {
+            return "<" + SKOLEM_PREFIX + value.toString() + ">";
+        }
+        StringBuilder sb = new StringBuilder();
+        try {
+            NTriplesUtil.append(value, sb, true, false);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * appends one VALUES row per graph the pattern is matched in
+     *
+     * @param sb
+     * @param idx
+     * @param pattern
+     * @param graphs
+     */
+    private static void appendRows(StringBuilder sb, int idx, Statement pattern, String[] graphs) {
+        String spo = toSPARQL(pattern.getSubject()) + " " + toSPARQL(pattern.getPredicate()) + " " + toSPARQL(pattern.getObject());
+        if (pattern.getContext() != null) {
+            appendRow(sb, idx, spo, toSPARQL(pattern.getContext()));
+            return;
+        }
+        for (String graph : graphs) {
+            appendRow(sb, idx, spo, graph);
+        }
+    }
+
+    /**
+     * appends a single VALUES row
+     *
+     * @param sb
+     * @param idx
+     * @param spo
+     * @param graph
+     */
+    private static void appendRow(StringBuilder sb, int idx, String spo, String graph) {
+        sb.append("(").append(idx).append(" ").append(spo).append(" ").append(graph).append(")\n");
+    }
+
+    /**
+     * renders contexts argument as graph terms
+     *
+     * @param contexts
+     * @return String[]
+     */
+    private static String[] graphs(Resource... contexts) {
+        if (contexts == null) {
+            return new String[] { "<" + DEFAULT_GRAPH_URI + ">" };
+        }
+        if (contexts.length == 0) {
+            return new String[] { UNDEF };
+        }
+        String[] graphs = new String[contexts.length];
+        for (int i = 0; i < contexts.length; i++) {
+            graphs[i] = contexts[i] == null ? "<" + DEFAULT_GRAPH_URI + ">" : toSPARQL(contexts[i]);
+        }
+        return graphs;
+    }
+}
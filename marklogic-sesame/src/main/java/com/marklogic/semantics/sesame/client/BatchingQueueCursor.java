@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.openrdf.http.client.QueueCursor;
+import org.openrdf.query.QueryEvaluationException;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueueCursor that hands results from the background parser thread to the
+ * consumer in arrays of batchSize elements, so the queue lock is taken once
+ * per batch instead of once per element.
+ *
+ * put() and done() must be called from a single producer thread,
+ * getNextElement() from a single consumer thread.
+ *
+ * @author James Fuller
+ */
+public class BatchingQueueCursor<E> extends QueueCursor<E> {
+
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    private static final Object[] AFTER_LAST = new Object[0];
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final int batchSize;
+    private final BlockingQueue<Object[]> batches;
+
+    private volatile boolean done = false;
+    private volatile boolean closed = false;
+
+    // producer side
+    private Object[] current;
+    private int currentSize = 0;
+
+    // consumer side
+    private Object[] consumed;
+    private int consumedPos = 0;
+
+    /**
+     * constructor with default batch size and queue capacity
+     */
+    public BatchingQueueCursor() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * constructor
+     *
+     * @param batchSize number of elements handed over at once
+     * @param queueCapacity number of batches that may be queued before the producer blocks
+     */
+    public BatchingQueueCursor(int batchSize, int queueCapacity) {
+        super(1);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive.");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive.");
+        }
+        this.batchSize = batchSize;
+        this.batches = new ArrayBlockingQueue<>(queueCapacity);
+        this.current = new Object[batchSize];
+    }
+
+    /**
+     * returns batch size
+     *
+     * @return int
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * adds element to current batch, handing the batch over once full
+     *
+     * @param o
+     * @throws InterruptedException
+     */
+    @Override
+    public void put(E o) throws InterruptedException {
+        if (done || closed) {
+            return;
+        }
+        current[currentSize++] = o;
+        if (currentSize == batchSize) {
+            Object[] batch = current;
+            current = new Object[batchSize];
+            currentSize = 0;
+            offer(batch);
+        }
+    }
+
+    /**
+     * hands over any partial batch and marks end of results
+     */
+    @Override
+    public void done() {
+        if (done) {
+            return;
+        }
+        done = true;
+        try {
+            if (currentSize > 0) {
+                Object[] batch = Arrays.copyOf(current, currentSize);
+                current = null;
+                currentSize = 0;
+                offer(batch);
+            }
+            offer(AFTER_LAST);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * returns next element, taking the next batch when the current one is used up
+     *
+     * @return E or null if no more results
+     * @throws QueryEvaluationException
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E getNextElement() throws QueryEvaluationException {
+        checkException();
+        if (consumed == null || consumedPos >= consumed.length) {
+            try {
+                consumed = batches.take();
+                consumedPos = 0;
+            } catch (InterruptedException e) {
+                checkException();
+                throw new QueryEvaluationException(e);
+            }
+        }
+        if (consumed == AFTER_LAST) {
+            // leave marker for any later call
+            batches.offer(AFTER_LAST);
+            checkException();
+            return null;
+        }
+        Object next = consumed[consumedPos];
+        consumed[consumedPos++] = null;
+        return (E) next;
+    }
+
+    /**
+     * releases queued batches and unblocks producer
+     *
+     * @throws QueryEvaluationException
+     */
+    @Override
+    public void handleClose() throws QueryEvaluationException {
+        closed = true;
+        done = true;
+        batches.clear();
+        consumed = null;
+        batches.offer(AFTER_LAST);
+        super.handleClose();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * blocks until batch is queued or cursor is closed
+     *
+     * @param batch
+     * @throws InterruptedException
+     */
+    private void offer(Object[] batch) throws InterruptedException {
+        while (!closed) {
+            if (batches.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * reference counted DatabaseClient objects shared by repositories connecting
+ * with the same host, port, database, user, password, authentication and
+ * transport settings, so they share one HTTP connection pool.
+ *
+ * Each acquire() must be matched by a release(); the DatabaseClient is
+ * released once its last user releases it.
+ *
+ * @author James Fuller
+ */
+public class DatabaseClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseClientRegistry.class);
+
+    private static final DatabaseClientRegistry INSTANCE = new DatabaseClientRegistry();
+
+    private final Map<List<Object>, Entry> entries = new HashMap<>();
+    private final Map<DatabaseClient, List<Object>> keys = new IdentityHashMap<>();
+
+    /**
+     * returns registry shared by all repositories
+     *
+     * @return DatabaseClientRegistry
+     */
+    public static DatabaseClientRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * returns shared DatabaseClient, creating it on first use
+     *
+     * @param host
+     * @param port
+     * @param database null for the database of the REST server
+     * @param user
+     * @param password
+     * @param auth
+     * @return DatabaseClient
+     */
+    public DatabaseClient acquire(String host, int port, String database, String user, String password, String auth) {
+        return acquire(host, port, database, user, password, auth, null);
+    }
+
+    /**
+     * returns shared DatabaseClient with transport settings applied, creating it on first use
+     *
+     * @param host
+     * @param port
+     * @param database null for the database of the REST server
+     * @param user
+     * @param password
+     * @param auth
+     * @param transport null for java api client defaults
+     * @return DatabaseClient
+     */
+    public synchronized DatabaseClient acquire(String host, int port, String database, String user, String password, String auth, HttpTransportSettings transport) {
+        List<Object> key = Arrays.<Object>asList(host, port, database, user, password, auth, transport == null ? null : transport.values());
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            logger.debug("creating shared DatabaseClient for {}:{}", host, port);
+            DatabaseClientFactory.Authentication authentication = DatabaseClientFactory.Authentication.valueOf(auth);
+            DatabaseClient databaseClient = database == null
+                    ? DatabaseClientFactory.newClient(host, port, user, password, authentication)
+                    : DatabaseClientFactory.newClient(host, port, database, user, password, authentication);
+            if (transport != null) {
+                transport.apply(databaseClient);
+            }
+            entry = new Entry(databaseClient);
+            entries.put(key, entry);
+            keys.put(databaseClient, key);
+        }
+        entry.references++;
+        return entry.databaseClient;
+    }
+
+    /**
+     * drops a reference to databaseClient, releasing it when none are left
+     *
+     * @param databaseClient acquired from this registry
+     */
+    public void release(DatabaseClient databaseClient) {
+        DatabaseClient released = null;
+        synchronized (this) {
+            List<Object> key = keys.get(databaseClient);
+            if (key == null) {
+                throw new IllegalArgumentException("DatabaseClient was not acquired from this registry.");
+            }
+            Entry entry = entries.get(key);
+            if (--entry.references == 0) {
+                entries.remove(key);
+                keys.remove(databaseClient);
+                released = databaseClient;
+            }
+        }
+        if (released != null) {
+            logger.debug("releasing shared DatabaseClient for {}:{}", released.getHost(), released.getPort());
+            released.release();
+        }
+    }
+
+    /**
+     * returns number of references held to databaseClient, 0 if it is not registered
+     *
+     * @param databaseClient
+     * @return int
+     */
+    public synchronized int getReferences(DatabaseClient databaseClient) {
+        List<Object> key = keys.get(databaseClient);
+        return key == null ? 0 : entries.get(key).references;
+    }
+
+    /**
+     * returns number of shared DatabaseClient objects
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final DatabaseClient databaseClient;
+        private int references = 0;
+
+        Entry(DatabaseClient databaseClient) {
+            this.databaseClient = databaseClient;
+        }
+    }
+}
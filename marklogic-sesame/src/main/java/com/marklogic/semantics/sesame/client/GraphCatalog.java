@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * client side catalog of graph URIs, shared by all connections of a repository
+ * so listing graphs does not query the server each time.
+ *
+ * The catalog is populated by a single query and then kept up to date as
+ * statements are added to and graphs cleared through a client using it.
+ * Loads without explicit contexts and SPARQL updates invalidate it, as does
+ * reaching refreshMillis since population; graphs emptied by removing single
+ * statements, or written by other applications, are picked up on refresh.
+ * invalidate() forces the next listing to query the server.
+ *
+ * @author James Fuller
+ */
+public class GraphCatalog {
+
+    public static final long DEFAULT_REFRESH_MILLIS = 300000;
+
+    private static final ValueFactory vf = ValueFactoryImpl.getInstance();
+
+    private final long refreshMillis;
+
+    private Map<String, Resource> graphs;
+    private long populated;
+    private long generation = 0;
+
+    /**
+     * constructor with default refresh interval
+     */
+    public GraphCatalog() {
+        this(DEFAULT_REFRESH_MILLIS);
+    }
+
+    /**
+     * constructor
+     *
+     * @param refreshMillis catalog is repopulated after this interval, 0 or less never
+     */
+    public GraphCatalog(long refreshMillis) {
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * returns refresh interval
+     *
+     * @return long
+     */
+    public long getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    /**
+     * returns copy of graph URIs, or null if the catalog needs populating
+     *
+     * @return List
+     */
+    public synchronized List<Resource> getGraphs() {
+        if (graphs == null || (refreshMillis > 0 && System.currentTimeMillis() - populated > refreshMillis)) {
+            return null;
+        }
+        return new ArrayList<>(graphs.values());
+    }
+
+    /**
+     * returns current generation, changed by every write and invalidation
+     *
+     * @return long
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * sets graphs read from the server, ignored if anything was written since generation
+     *
+     * @param graphs
+     * @param generation generation read before graphs were queried
+     */
+    public synchronized void populate(Collection<? extends Resource> graphs, long generation) {
+        if (generation == this.generation) {
+            this.graphs = new LinkedHashMap<>();
+            for (Resource graph : graphs) {
+                this.graphs.put(graph.stringValue(), graph);
+            }
+            this.populated = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * discards catalog, the next listing repopulates it
+     */
+    public synchronized void invalidate() {
+        generation++;
+        graphs = null;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * records graphs written to, no contexts being the default graph
+     *
+     * @param contexts
+     */
+    synchronized void added(Resource... contexts) {
+        generation++;
+        if (graphs == null) {
+            return;
+        }
+        if (contexts == null || contexts.length == 0) {
+            addGraph(null);
+            return;
+        }
+        for (Resource context : contexts) {
+            addGraph(context);
+        }
+    }
+
+    /**
+     * removes graphs that were cleared, null contexts being the default graph
+     *
+     * @param contexts
+     */
+    synchronized void cleared(Resource... contexts) {
+        generation++;
+        if (graphs == null) {
+            return;
+        }
+        if (contexts == null) {
+            graphs.remove(MarkLogicClient.DEFAULT_GRAPH_URI);
+            return;
+        }
+        for (Resource context : contexts) {
+            graphs.remove(context == null ? MarkLogicClient.DEFAULT_GRAPH_URI : context.stringValue());
+        }
+    }
+
+    /**
+     * removes all graphs
+     */
+    synchronized void clearedAll() {
+        generation++;
+        if (graphs != null) {
+            graphs.clear();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * adds graph if not yet known
+     *
+     * @param context null for the default graph
+     */
+    private void addGraph(Resource context) {
+        String uri = context == null ? MarkLogicClient.DEFAULT_GRAPH_URI : context.stringValue();
+        if (!graphs.containsKey(uri)) {
+            graphs.put(uri, context == null ? vf.createURI(uri) : context);
+        }
+    }
+}
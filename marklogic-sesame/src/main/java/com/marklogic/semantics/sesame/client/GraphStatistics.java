@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.openrdf.model.Resource;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.marklogic.semantics.sesame.client.MarkLogicClient.DEFAULT_GRAPH_URI;
+
+/**
+ * client side statistics of the number of triples in each graph, shared by
+ * all connections of a repository.
+ *
+ * Counts are seeded from a single query and then adjusted by clears sent through
+ * a client using these statistics, the only writes whose effect on the counts is
+ * known. Adding or removing statements does not update the counts, as an added
+ * statement may already exist and a removed one may be absent, and neither is
+ * reported by the server; the graphs written to are marked stale instead and
+ * recounted on the next read, while other graphs keep their counts. Loads without
+ * explicit contexts, removes across all graphs and SPARQL updates invalidate all
+ * counts. Reaching refreshMillis since seeding also invalidates them, which picks
+ * up external writers.
+ *
+ * @author James Fuller
+ */
+public class GraphStatistics {
+
+    public static final long DEFAULT_REFRESH_MILLIS = 300000;
+
+    private final long refreshMillis;
+
+    private Map<String, Long> counts;
+    private final Set<String> stale = new HashSet<>();
+    private long seeded;
+    private long generation = 0;
+
+    /**
+     * constructor with default refresh interval
+     */
+    public GraphStatistics() {
+        this(DEFAULT_REFRESH_MILLIS);
+    }
+
+    /**
+     * constructor
+     *
+     * @param refreshMillis counts are reseeded after this interval, 0 or less never
+     */
+    public GraphStatistics(long refreshMillis) {
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * returns refresh interval
+     *
+     * @return long
+     */
+    public long getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    /**
+     * returns copy of triple count per graph URI, or null if counts need seeding
+     * or stale graphs recounting
+     *
+     * @return Map
+     */
+    public synchronized Map<String, Long> getCounts() {
+        if (!isSeeded() || !stale.isEmpty()) {
+            return null;
+        }
+        return Collections.unmodifiableMap(new HashMap<>(counts));
+    }
+
+    /**
+     * returns copy of graph URIs written to since they were counted, or null if
+     * all counts need seeding
+     *
+     * @return Set
+     */
+    public synchronized Set<String> getStaleGraphs() {
+        if (!isSeeded()) {
+            return null;
+        }
+        return new HashSet<>(stale);
+    }
+
+    /**
+     * returns current generation, changed by every write and invalidation
+     *
+     * @return long
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * sets counts read from the server, ignored if anything was written since generation
+     *
+     * @param counts triple count per graph URI
+     * @param generation generation read before counts were queried
+     */
+    public synchronized void seed(Map<String, Long> counts, long generation) {
+        if (generation == this.generation) {
+            this.counts = new HashMap<>(counts);
+            this.stale.clear();
+            this.seeded = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * sets counts of stale graphs read from the server, ignored if anything was
+     * written since generation
+     *
+     * @param counts triple count per graph URI, graphs without triples may be left out
+     * @param graphs stale graph URIs that were counted
+     * @param generation generation read before counts were queried
+     */
+    public synchronized void recount(Map<String, Long> counts, Set<String> graphs, long generation) {
+        if (generation != this.generation || this.counts == null) {
+            return;
+        }
+        for (String graph : graphs) {
+            Long count = counts.get(graph);
+            if (count == null || count == 0) {
+                this.counts.remove(graph);
+            } else {
+                this.counts.put(graph, count);
+            }
+            stale.remove(graph);
+        }
+    }
+
+    /**
+     * discards counts, the next read reseeds them
+     */
+    public synchronized void invalidate() {
+        generation++;
+        counts = null;
+        stale.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * marks graphs statements were added to or removed from as stale, null or no
+     * contexts being the default graph
+     *
+     * @param contexts
+     */
+    synchronized void written(Resource... contexts) {
+        generation++;
+        if (counts != null) {
+            for (String graph : graphs(contexts)) {
+                stale.add(graph);
+            }
+        }
+    }
+
+    /**
+     * zeroes graphs that were cleared, null contexts being the default graph
+     *
+     * @param contexts
+     */
+    synchronized void cleared(Resource... contexts) {
+        generation++;
+        if (counts != null && (contexts == null || contexts.length > 0)) {
+            for (String graph : graphs(contexts)) {
+                counts.remove(graph);
+                stale.remove(graph);
+            }
+        }
+    }
+
+    /**
+     * zeroes all graphs
+     */
+    synchronized void clearedAll() {
+        generation++;
+        if (counts != null) {
+            counts.clear();
+            stale.clear();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns true if counts are seeded and not due for refresh; caller holds the lock
+     *
+     * @return boolean
+     */
+    private boolean isSeeded() {
+        return counts != null && (refreshMillis <= 0 || System.currentTimeMillis() - seeded <= refreshMillis);
+    }
+
+    /**
+     * returns graph URIs of contexts
+     *
+     * @param contexts
+     * @return String[]
+     */
+    private static String[] graphs(Resource... contexts) {
+        if (contexts == null || contexts.length == 0) {
+            return new String[] { DEFAULT_GRAPH_URI };
+        }
+        String[] graphs = new String[contexts.length];
+        for (int i = 0; i < contexts.length; i++) {
+            graphs[i] = contexts[i] == null ? DEFAULT_GRAPH_URI : contexts[i].stringValue();
+        }
+        return graphs;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * lock free histogram of non-negative values, eg. latencies or flush sizes
+ *
+ * Values are counted in log-linear buckets, 8 per power of two, so percentiles
+ * are accurate to within 12.5%; count, mean and max are exact. Getters read
+ * the live buckets, values recorded meanwhile may or may not be included.
+ *
+ * @author James Fuller
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * records value, negative values are recorded as 0
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * returns number of values recorded
+     *
+     * @return long
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * returns mean of values recorded, 0 if none
+     *
+     * @return double
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * returns largest value recorded, 0 if none
+     *
+     * @return long
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * returns median
+     *
+     * @return long
+     */
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * returns 95th percentile
+     *
+     * @return long
+     */
+    public long getP95() {
+        return getPercentile(95);
+    }
+
+    /**
+     * returns 99th percentile
+     *
+     * @return long
+     */
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * returns 99.9th percentile
+     *
+     * @return long
+     */
+    public long getP999() {
+        return getPercentile(99.9);
+    }
+
+    /**
+     * returns upper bound of the bucket holding the given percentile, capped at max; 0 if empty
+     *
+     * @param percentile between 0 and 100
+     * @return long
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100.");
+        }
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * clears recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + getCount() + ", mean=" + getMean() + ", p50=" + getP50()
+                + ", p99=" + getP99() + ", max=" + getMax() + "]";
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns bucket of value; values below SUB_BUCKETS have their own bucket, larger values
+     * share one of SUB_BUCKETS buckets per power of two
+     *
+     * @param value
+     * @return int
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * returns largest value of bucket
+     *
+     * @param bucket
+     * @return long
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (SUB_BUCKETS + sub) << shift;
+        return lower + ((1L << shift) - 1);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.DatabaseClient;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HTTP transport settings applied to the Apache HttpClient underneath a
+ * DatabaseClient; connection pool size, timeouts, socket buffers and keep-alive.
+ *
+ * Unset (null) settings leave the java api client defaults in place.
+ * DatabaseClient objects with different settings are not shared by
+ * DatabaseClientRegistry.
+ *
+ * The java api builds its DatabaseClient on the HttpClient 4.x API deprecated
+ * since 4.3 (HttpParams, ClientConnectionManager, AbstractHttpClient), so the
+ * settings can only be applied through that API until the java api moves to
+ * HttpClientBuilder. Deprecated types are written fully qualified in apply,
+ * as javac before Java 9 warns on their imports regardless of suppression.
+ *
+ * @author James Fuller
+ */
+public class HttpTransportSettings {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpTransportSettings.class);
+
+    private Integer maxConnections;
+    private Integer maxConnectionsPerRoute;
+    private Integer connectTimeoutMillis;
+    private Integer socketTimeoutMillis;
+    private Integer socketBufferSize;
+    private Boolean tcpNoDelay;
+    private Long keepAliveMillis;
+
+    /**
+     * returns maximum number of pooled connections
+     *
+     * @return Integer
+     */
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * sets maximum number of pooled connections
+     *
+     * @param maxConnections
+     */
+    public void setMaxConnections(Integer maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * returns maximum number of pooled connections to the MarkLogic host
+     *
+     * @return Integer
+     */
+    public Integer getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * sets maximum number of pooled connections to the MarkLogic host
+     *
+     * @param maxConnectionsPerRoute
+     */
+    public void setMaxConnectionsPerRoute(Integer maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * returns connect timeout, 0 is infinite
+     *
+     * @return Integer
+     */
+    public Integer getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * sets connect timeout, 0 is infinite
+     *
+     * @param connectTimeoutMillis
+     */
+    public void setConnectTimeoutMillis(Integer connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * returns socket read timeout, 0 is infinite
+     *
+     * @return Integer
+     */
+    public Integer getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * sets socket read timeout, 0 is infinite
+     *
+     * @param socketTimeoutMillis
+     */
+    public void setSocketTimeoutMillis(Integer socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    /**
+     * returns socket buffer size in bytes
+     *
+     * @return Integer
+     */
+    public Integer getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    /**
+     * sets socket buffer size in bytes
+     *
+     * @param socketBufferSize
+     */
+    public void setSocketBufferSize(Integer socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    /**
+     * returns whether Nagle's algorithm is disabled
+     *
+     * @return Boolean
+     */
+    public Boolean getTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * sets whether Nagle's algorithm is disabled
+     *
+     * @param tcpNoDelay
+     */
+    public void setTcpNoDelay(Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * returns maximum time an idle connection is kept alive
+     *
+     * @return Long
+     */
+    public Long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * sets maximum time an idle connection is kept alive, a shorter Keep-Alive timeout
+     * sent by the server wins; 0 or less keeps connections until the server closes them
+     *
+     * @param keepAliveMillis
+     */
+    public void setKeepAliveMillis(Long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * applies settings to the HttpClient of databaseClient
+     *
+     * @param databaseClient
+     */
+    @SuppressWarnings("deprecation")
+    public void apply(DatabaseClient databaseClient) {
+        Object implementation = databaseClient.getClientImplementation();
+        if (!(implementation instanceof HttpClient)) {
+            logger.warn("cannot apply transport settings to {}", implementation);
+            return;
+        }
+        HttpClient client = (HttpClient) implementation;
+        HttpRoute route = new HttpRoute(new HttpHost(databaseClient.getHost(), databaseClient.getPort()));
+        org.apache.http.conn.ClientConnectionManager manager = client.getConnectionManager();
+        if (manager instanceof org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager) {
+            org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager pool =
+                    (org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager) manager;
+            if (maxConnections != null) {
+                pool.setMaxTotal(maxConnections);
+            }
+            if (maxConnectionsPerRoute != null) {
+                pool.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+                pool.setMaxForRoute(route, maxConnectionsPerRoute);
+            }
+        } else if (manager instanceof org.apache.http.impl.conn.PoolingClientConnectionManager) {
+            org.apache.http.impl.conn.PoolingClientConnectionManager pool =
+                    (org.apache.http.impl.conn.PoolingClientConnectionManager) manager;
+            if (maxConnections != null) {
+                pool.setMaxTotal(maxConnections);
+            }
+            if (maxConnectionsPerRoute != null) {
+                pool.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+                pool.setMaxPerRoute(route, maxConnectionsPerRoute);
+            }
+        } else if (maxConnections != null || maxConnectionsPerRoute != null) {
+            logger.warn("cannot size connection pool of {}", manager);
+        }
+        org.apache.http.params.HttpParams params = client.getParams();
+        if (connectTimeoutMillis != null) {
+            org.apache.http.params.HttpConnectionParams.setConnectionTimeout(params, connectTimeoutMillis);
+        }
+        if (socketTimeoutMillis != null) {
+            org.apache.http.params.HttpConnectionParams.setSoTimeout(params, socketTimeoutMillis);
+        }
+        if (socketBufferSize != null) {
+            org.apache.http.params.HttpConnectionParams.setSocketBufferSize(params, socketBufferSize);
+        }
+        if (tcpNoDelay != null) {
+            org.apache.http.params.HttpConnectionParams.setTcpNoDelay(params, tcpNoDelay);
+        }
+        if (keepAliveMillis != null) {
+            if (client instanceof org.apache.http.impl.client.AbstractHttpClient) {
+                ((org.apache.http.impl.client.AbstractHttpClient) client)
+                        .setKeepAliveStrategy(new MaxKeepAliveStrategy(keepAliveMillis));
+            } else {
+                logger.warn("cannot set keep-alive of {}", client);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HttpTransportSettings && values().equals(((HttpTransportSettings) o).values());
+    }
+
+    @Override
+    public int hashCode() {
+        return values().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpTransportSettings" + values();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns snapshot of settings, for equality and registry keys
+     *
+     * @return List
+     */
+    List<Object> values() {
+        return Arrays.<Object>asList(maxConnections, maxConnectionsPerRoute, connectTimeoutMillis,
+                socketTimeoutMillis, socketBufferSize, tcpNoDelay, keepAliveMillis);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * caps the keep-alive duration announced by the server
+     */
+    private static class MaxKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final long maxMillis;
+
+        MaxKeepAliveStrategy(long maxMillis) {
+            this.maxMillis = maxMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            if (maxMillis <= 0) {
+                return announced;
+            }
+            return announced > 0 ? Math.min(announced, maxMillis) : maxMillis;
+        }
+    }
+}
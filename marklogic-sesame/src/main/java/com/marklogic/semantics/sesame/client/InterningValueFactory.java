@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ValueFactory that returns canonical instances for repeated URIs and
+ * short literals, so results parsed with it share term objects.
+ *
+ * Terms are held in a bounded LRU cache split into independently locked
+ * segments; a single instance is safe to share across connections of a
+ * repository, which MarkLogicRepository.setInterning(true) installs.
+ *
+ * @author James Fuller
+ */
+public class InterningValueFactory extends ValueFactoryImpl {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_MAX_LITERAL_LENGTH = 64;
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int maxLiteralLength;
+
+    /**
+     * constructor with default capacity and maximum literal length
+     */
+    public InterningValueFactory() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LITERAL_LENGTH);
+    }
+
+    /**
+     * constructor
+     *
+     * @param capacity maximum number of interned terms
+     * @param maxLiteralLength literals with longer labels are not interned, 0 disables literal interning
+     */
+    public InterningValueFactory(int capacity, int maxLiteralLength) {
+        super();
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+        this.maxLiteralLength = maxLiteralLength;
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * returns canonical URI for uri string
+     *
+     * @param uri
+     * @return URI
+     */
+    @Override
+    public URI createURI(String uri) {
+        URI canonical = (URI) segmentFor(uri).get(uri);
+        if (canonical == null) {
+            canonical = (URI) segmentFor(uri).intern(uri, super.createURI(uri));
+        }
+        return canonical;
+    }
+
+    /**
+     * returns canonical URI for namespace and local name
+     *
+     * @param namespace
+     * @param localName
+     * @return URI
+     */
+    @Override
+    public URI createURI(String namespace, String localName) {
+        return createURI(namespace + localName);
+    }
+
+    /**
+     * returns canonical plain literal
+     *
+     * @param value
+     * @return Literal
+     */
+    @Override
+    public Literal createLiteral(String value) {
+        return intern(super.createLiteral(value));
+    }
+
+    /**
+     * returns canonical language tagged literal
+     *
+     * @param value
+     * @param language
+     * @return Literal
+     */
+    @Override
+    public Literal createLiteral(String value, String language) {
+        return intern(super.createLiteral(value, language));
+    }
+
+    /**
+     * returns canonical typed literal
+     *
+     * @param value
+     * @param datatype
+     * @return Literal
+     */
+    @Override
+    public Literal createLiteral(String value, URI datatype) {
+        return intern(super.createLiteral(value, datatype == null ? null : createURI(datatype.stringValue())));
+    }
+
+    /**
+     * returns number of interned terms
+     *
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * removes all interned terms
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns canonical literal if label is short enough to intern
+     *
+     * @param literal
+     * @return Literal
+     */
+    private Literal intern(Literal literal) {
+        if (literal.getLabel().length() > maxLiteralLength) {
+            return literal;
+        }
+        return (Literal) segmentFor(literal).intern(literal, literal);
+    }
+
+    /**
+     * selects segment by key hash
+     *
+     * @param key
+     * @return Segment
+     */
+    private Segment segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * access ordered map evicting least recently used term
+     */
+    private static class Segment extends LinkedHashMap<Object, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized Object get(Object key) {
+            return super.get(key);
+        }
+
+        synchronized Object intern(Object key, Object value) {
+            Object existing = super.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            super.put(key, value);
+            return value;
+        }
+
+        @Override
+        public synchronized int size() {
+            return super.size();
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > capacity;
+        }
+    }
+}
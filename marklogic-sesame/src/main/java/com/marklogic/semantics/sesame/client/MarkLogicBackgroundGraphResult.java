@@ -19,6 +19,8 @@ import org.openrdf.http.client.BackgroundGraphResult;
 import org.openrdf.http.client.QueueCursor;
 import org.openrdf.model.Statement;
 import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
+import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.Future;
 
 /**
  * wrapper on Sesame BackgroundGraphResult
@@ -33,10 +36,16 @@ import java.nio.charset.Charset;
  * @author James Fuller
  */
 
-class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
+class MarkLogicBackgroundGraphResult extends BackgroundGraphResult implements MarkLogicQueryResult
 {
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicBackgroundGraphResult.class);
 
+    private final InputStream response;
+    private final QueryTimings timings;
+
+    private volatile boolean cancelled = false;
+    private volatile Future<?> timer;
+
     /**
      *  constructor
      *
@@ -47,6 +56,8 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      */
     public MarkLogicBackgroundGraphResult(RDFParser parser, InputStream in, Charset charset, String baseURI) {
         super(parser, in, charset, baseURI);
+        this.response = in;
+        this.timings = new QueryTimings(null, null);
     }
 
     /**
@@ -59,7 +70,24 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      * @param baseURI
      */
     public MarkLogicBackgroundGraphResult(QueueCursor<Statement> queue, RDFParser parser, InputStream in, Charset charset, String baseURI) {
+        this(queue, parser, in, in, charset, baseURI, new QueryTimings(null, null));
+    }
+
+    /**
+     * constructor
+     *
+     * @param queue
+     * @param parser
+     * @param in
+     * @param response stream aborted on cancel, which in reads from
+     * @param charset
+     * @param baseURI
+     * @param timings of the request in is the response of
+     */
+    public MarkLogicBackgroundGraphResult(QueueCursor<Statement> queue, RDFParser parser, InputStream in, InputStream response, Charset charset, String baseURI, QueryTimings timings) {
         super(queue, parser, in, charset, baseURI);
+        this.response = response;
+        this.timings = timings;
     }
 
     /**
@@ -68,17 +96,94 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      */
     @Override
     public boolean hasNext()
-        throws QueryEvaluationException
+            throws QueryEvaluationException
     {
+        checkCancelled();
         try {
-            return super.hasNext();
-
+            boolean hasNext = super.hasNext();
+            if (!hasNext) {
+                checkCancelled();
+            }
+            return hasNext;
         }catch(QueryEvaluationException e){
+            checkCancelled();
             logger.info("MarkLogicBackgroundGraphResult hasNext() stream closed");
             return false;
         }
     }
 
+    /**
+     * next result, throws if cancelled
+     *
+     */
+    @Override
+    public Statement next()
+            throws QueryEvaluationException
+    {
+        checkCancelled();
+        return super.next();
+    }
+
+    /**
+     * aborts HTTP stream, which ends the background parser, and releases queued results
+     *
+     */
+    @Override
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        MarkLogicClientImpl.abortStream(response);
+        try {
+            close();
+        } catch (QueryEvaluationException e) {
+            logger.debug("MarkLogicBackgroundGraphResult cancel() close exception", e);
+        }
+    }
+
+    /**
+     * returns true if cancelled
+     *
+     */
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * returns phase timings
+     *
+     */
+    @Override
+    public QueryTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * cancels timer once this result is closed
+     *
+     * @param timer
+     */
+    @Override
+    public void cancelOnClose(Future<?> timer) {
+        this.timer = timer;
+        if (isClosed()) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * records that the parser has handed over the last result
+     *
+     */
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        super.endRDF();
+        timings.lastResult();
+        MarkLogicClientImpl.streamParsed(response);
+    }
+
     /**
      * wrap exception, debug log
      *
@@ -90,7 +195,27 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
         }catch(Exception e){
             logger.error("MarkLogicBackgroundGraphResult handleClose() stream closed exception",e);
             throw new QueryEvaluationException(e);
+        } finally {
+            timings.closed();
+            Future<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
         }
     }
 
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * throws if result has been cancelled
+     *
+     * @throws QueryInterruptedException
+     */
+    private void checkCancelled() throws QueryInterruptedException {
+        if (cancelled) {
+            throw new QueryInterruptedException("Query result cancelled or maximum execution time exceeded.");
+        }
+    }
 }
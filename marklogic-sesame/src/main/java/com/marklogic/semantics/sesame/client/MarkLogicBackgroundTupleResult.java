@@ -19,21 +19,30 @@ import org.openrdf.http.client.BackgroundTupleResult;
 import org.openrdf.http.client.QueueCursor;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
+import org.openrdf.query.TupleQueryResultHandlerException;
 import org.openrdf.query.resultio.TupleQueryResultParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.util.concurrent.Future;
 
 /**
  * wrapper on Sesame BackgroundTupleResult
  *
  * @author James Fuller
  */
-class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
+class MarkLogicBackgroundTupleResult extends BackgroundTupleResult implements MarkLogicQueryResult {
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicBackgroundGraphResult.class);
 
+    private final InputStream response;
+    private final QueryTimings timings;
+
+    private volatile boolean cancelled = false;
+    private volatile Future<?> timer;
+
     /**
      *  constructor
      *
@@ -42,6 +51,8 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
      */
     public MarkLogicBackgroundTupleResult(TupleQueryResultParser parser, InputStream in) {
         super(parser, in);
+        this.response = in;
+        this.timings = new QueryTimings(null, null);
     }
 
     /**
@@ -52,7 +63,22 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
      * @param in
      */
     public MarkLogicBackgroundTupleResult(QueueCursor<BindingSet> queue, TupleQueryResultParser parser, InputStream in) {
+        this(queue, parser, in, in, new QueryTimings(null, null));
+    }
+
+    /**
+     * constructor
+     *
+     * @param queue
+     * @param parser
+     * @param in
+     * @param response stream aborted on cancel, which in reads from
+     * @param timings of the request in is the response of
+     */
+    public MarkLogicBackgroundTupleResult(QueueCursor<BindingSet> queue, TupleQueryResultParser parser, InputStream in, InputStream response, QueryTimings timings) {
         super(queue, parser, in);
+        this.response = response;
+        this.timings = timings;
     }
 
     /**
@@ -63,14 +89,92 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
     public boolean hasNext()
             throws QueryEvaluationException
     {
+        checkCancelled();
         try {
-            return super.hasNext();
+            boolean hasNext = super.hasNext();
+            if (!hasNext) {
+                checkCancelled();
+            }
+            return hasNext;
         }catch(Exception e){
+            checkCancelled();
             logger.info("MarkLogicBackgroundTupleResult hasNext() stream closed");
             return false;
         }
     }
 
+    /**
+     * next result, throws if cancelled
+     *
+     */
+    @Override
+    public BindingSet next()
+            throws QueryEvaluationException
+    {
+        checkCancelled();
+        return super.next();
+    }
+
+    /**
+     * aborts HTTP stream, which ends the background parser, and releases queued results
+     *
+     */
+    @Override
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        MarkLogicClientImpl.abortStream(response);
+        try {
+            close();
+        } catch (QueryEvaluationException e) {
+            logger.debug("MarkLogicBackgroundTupleResult cancel() close exception", e);
+        }
+    }
+
+    /**
+     * returns true if cancelled
+     *
+     */
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * returns phase timings
+     *
+     */
+    @Override
+    public QueryTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * cancels timer once this result is closed
+     *
+     * @param timer
+     */
+    @Override
+    public void cancelOnClose(Future<?> timer) {
+        this.timer = timer;
+        if (isClosed()) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * records that the parser has handed over the last result
+     *
+     */
+    @Override
+    public void endQueryResult() throws TupleQueryResultHandlerException {
+        super.endQueryResult();
+        timings.lastResult();
+        MarkLogicClientImpl.streamParsed(response);
+    }
+
     /**
      * wrap exception, debug log
      *
@@ -82,6 +186,27 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
         }catch(Exception e){
             logger.error("MarkLogicBackgroundTupleResult handleClose() stream closed exception",e);
             throw new QueryEvaluationException(e);
+        } finally {
+            timings.closed();
+            Future<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * throws if result has been cancelled
+     *
+     * @throws QueryInterruptedException
+     */
+    private void checkCancelled() throws QueryInterruptedException {
+        if (cancelled) {
+            throw new QueryInterruptedException("Query result cancelled or maximum execution time exceeded.");
         }
     }
 }
@@ -20,6 +20,10 @@
 package com.marklogic.semantics.sesame.client;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.Transaction;
 import com.marklogic.client.query.QueryDefinition;
@@ -28,8 +32,10 @@ import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.sesame.MarkLogicSesameException;
 import com.marklogic.semantics.sesame.MarkLogicTransactionException;
 import org.apache.commons.io.input.ReaderInputStream;
+import org.openrdf.http.client.QueueCursor;
 import org.openrdf.http.protocol.UnauthorizedException;
 import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
@@ -45,13 +51,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An internal class that straddles Sesame and MarkLogic Java API client.
@@ -67,20 +89,56 @@ public class MarkLogicClient {
 
 	protected static final TupleQueryResultFormat format = TupleQueryResultFormat.JSON;
 	protected static final RDFFormat rdfFormat = RDFFormat.NTRIPLES;
+
+	// formats MarkLogic can serialize CONSTRUCT results in
+	private static final Set<RDFFormat> PASSTHROUGH_FORMATS = new HashSet<>(Arrays.asList(
+			RDFFormat.NTRIPLES, RDFFormat.TURTLE, RDFFormat.RDFXML, RDFFormat.RDFJSON, RDFFormat.N3));
+
+	private static final long COPY_CHUNK_SIZE = 1024 * 1024;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
 	private MarkLogicClientImpl _client;
 
 	private final Executor executor = Executors.newCachedThreadPool();
 
+	/**
+	 * graph MarkLogic stores triples added without a context in
+	 */
+	public static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
+	public static final int DEFAULT_ASYNC_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+	private ListeningExecutorService asyncExecutor;
+
 	private ValueFactory f;
 
 	private ParserConfig parserConfig = new ParserConfig();
 
 	private Transaction tx = null;
 
+	private volatile boolean released = false;
+
+	// caches and their timers are created by the first write and stopped once idle
+	private final Object cacheLock = new Object();
 	private TripleWriteCache timerWriteCache;
 	private Timer writeTimer;
 	private TripleDeleteCache timerDeleteCache;
 	private Timer deleteTimer;
+	private long cacheInitialDelay = TripleCache.DEFAULT_INITIAL_DELAY;
+	private long cachePeriod = TripleCache.DEFAULT_CACHE_MILLIS;
+	private long cacheSize = TripleCache.DEFAULT_CACHE_SIZE;
+	private boolean customCacheSize = false;
+	private long cacheIdleMillis = TripleCache.DEFAULT_IDLE_MILLIS;
+
+	private QueryResultCache queryResultCache;
+
+	private GraphStatistics graphStatistics;
+
+	private GraphCatalog graphCatalog;
+
+	private volatile MarkLogicClientMetrics metrics;
+
+	private int resultBatchSize = BatchingQueueCursor.DEFAULT_BATCH_SIZE;
+	private int resultQueueCapacity = BatchingQueueCursor.DEFAULT_QUEUE_CAPACITY;
 
 	private static boolean WRITE_CACHE_ENABLED = true;
 	private static boolean DELETE_CACHE_ENABLED = false;
@@ -110,55 +168,123 @@ public class MarkLogicClient {
 	}
 
 	/**
-	 * start Timer task (write cache)
+	 * configures write and delete caches with defaults; their timers are started
+	 * by the first add or remove
 	 */
 	public void initTimer(){
-		stopTimer();
-		if(this.WRITE_CACHE_ENABLED) {
-			logger.debug("configuring write cache with defaults");
-			timerWriteCache = new TripleWriteCache(this);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, TripleWriteCache.DEFAULT_INITIAL_DELAY, TripleWriteCache.DEFAULT_CACHE_MILLIS);
-		}
-		if(this.DELETE_CACHE_ENABLED) {
-			logger.debug("configuring delete cache with defaults");
-			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, TripleDeleteCache.DEFAULT_INITIAL_DELAY, TripleDeleteCache.DEFAULT_CACHE_MILLIS);
-		}
+		initTimer(TripleCache.DEFAULT_INITIAL_DELAY, TripleCache.DEFAULT_CACHE_MILLIS, TripleCache.DEFAULT_CACHE_SIZE);
 	}
 
+	/**
+	 * configures write and delete caches; their timers are started by the first add or remove
+	 *
+	 * @param initDelay
+	 * @param delayCache
+	 * @param cacheSize
+	 */
 	public void initTimer(long initDelay, long delayCache, long cacheSize ){
 		stopTimer();
-		if(this.WRITE_CACHE_ENABLED) {
-			logger.debug("configuring write cache");
-			timerWriteCache = new TripleWriteCache(this,cacheSize);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, initDelay, delayCache);
-		}
-		if(this.DELETE_CACHE_ENABLED) {
-			logger.debug("configuring delete cache");
-			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, initDelay, delayCache);
+		synchronized (cacheLock) {
+			this.cacheInitialDelay = initDelay;
+			this.cachePeriod = delayCache;
+			this.cacheSize = cacheSize;
+			this.customCacheSize = cacheSize != TripleCache.DEFAULT_CACHE_SIZE;
+		}
+	}
+
+	/**
+	 * sets time without writes after which the write and delete cache timers are stopped,
+	 * 0 or less keeps them running until stopTimer()
+	 *
+	 * @param cacheIdleMillis
+	 */
+	public void setCacheIdleMillis(long cacheIdleMillis) {
+		synchronized (cacheLock) {
+			this.cacheIdleMillis = cacheIdleMillis;
+			if (timerWriteCache != null) {
+				timerWriteCache.setIdleMillis(cacheIdleMillis);
+			}
+			if (timerDeleteCache != null) {
+				timerDeleteCache.setIdleMillis(cacheIdleMillis);
+			}
+		}
+	}
+
+	/**
+	 * returns delay before the first flush check of the write and delete caches
+	 *
+	 * @return long
+	 */
+	public long getCacheInitialDelay() {
+		synchronized (cacheLock) {
+			return this.cacheInitialDelay;
+		}
+	}
+
+	/**
+	 * returns period of the write and delete cache flush checks
+	 *
+	 * @return long
+	 */
+	public long getCachePeriod() {
+		synchronized (cacheLock) {
+			return this.cachePeriod;
+		}
+	}
+
+	/**
+	 * returns number of statements which triggers a write cache flush
+	 *
+	 * @return long
+	 */
+	public long getCacheSize() {
+		synchronized (cacheLock) {
+			return this.cacheSize;
+		}
+	}
+
+	/**
+	 * returns time without writes after which the cache timers are stopped
+	 *
+	 * @return long
+	 */
+	public long getCacheIdleMillis() {
+		synchronized (cacheLock) {
+			return this.cacheIdleMillis;
+		}
+	}
+
+	/**
+	 * returns true if the write or delete cache timer is running
+	 *
+	 * @return boolean
+	 */
+	public boolean isTimerRunning() {
+		synchronized (cacheLock) {
+			return writeTimer != null || deleteTimer != null;
 		}
 	}
+
 	/**
 	 * stop Timer task (write cache)
 	 */
 	public void stopTimer() {
-		if(this.WRITE_CACHE_ENABLED) {
+		synchronized (cacheLock) {
 			if(timerWriteCache != null) {
 				timerWriteCache.cancel();
+				timerWriteCache = null;
 			}
 			if(writeTimer != null){
 				writeTimer.cancel();
+				writeTimer = null;
 			}
 			if(timerDeleteCache != null) {
 				timerDeleteCache.cancel();
+				timerDeleteCache = null;
 			}
 			if(deleteTimer != null){
 				deleteTimer.cancel();
+				deleteTimer = null;
 			}
 		}
 	}
@@ -169,10 +295,16 @@ public class MarkLogicClient {
 	 * @throws MarkLogicSesameException
 	 */
 	public void sync() throws MarkLogicSesameException {
-		if(WRITE_CACHE_ENABLED && timerWriteCache != null)
-			timerWriteCache.forceRun();
-		if(DELETE_CACHE_ENABLED && timerDeleteCache != null)
-			timerDeleteCache.forceRun();
+		TripleWriteCache writeCache;
+		TripleDeleteCache deleteCache;
+		synchronized (cacheLock) {
+			writeCache = timerWriteCache;
+			deleteCache = timerDeleteCache;
+		}
+		if(WRITE_CACHE_ENABLED && writeCache != null)
+			writeCache.forceRun();
+		if(DELETE_CACHE_ENABLED && deleteCache != null)
+			deleteCache.forceRun();
 	}
 
 	/**
@@ -210,17 +342,42 @@ public class MarkLogicClient {
 	 */
 	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI) throws RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
-		InputStream stream = null;
+		return sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, false);
+	}
+
+	/**
+	 * TupleQuery, optionally parsing results on the calling thread
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param start
+	 * @param pageLength
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param pullParsing if true results are parsed incrementally on the calling thread
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, boolean pullParsing) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		QueryResultCache cache = getCacheIfUsable();
+		if (cache == null) {
+			return performTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, pullParsing);
+		}
+		QueryResultCache.Key key = QueryResultCache.key("tuple", queryString, bindings, getRulesets(), getConstrainingQueryDefinition(), includeInferred, baseURI, start, pageLength);
+		TupleQueryResult cached = cache.getTupleResult(key);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = cache.getGeneration();
+		TupleQueryResult result = performTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, pullParsing);
 		try {
-			stream = getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI);
-		} catch (JsonProcessingException e) {
-			logger.error(e.getLocalizedMessage());
-			throw new MarkLogicSesameException("Issue processing json.");
+			return cache.cacheTupleResult(key, generation, result);
+		} catch (QueryEvaluationException e) {
+			throw new MarkLogicSesameException(e);
 		}
-		TupleQueryResultParser parser = QueryResultIO.createParser(format, getValueFactory());
-		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(parser,stream);
-		execute(tRes);
-		return tRes;
 	}
 
 	/**
@@ -234,26 +391,85 @@ public class MarkLogicClient {
 	 * @throws IOException
 	 */
 	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, MarkLogicSesameException {
-		InputStream stream = getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		return sendGraphQuery(queryString, bindings, includeInferred, baseURI, false);
+	}
+
+	/**
+	 * GraphQuery, optionally parsing results on the calling thread
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param pullParsing if true results are parsed incrementally on the calling thread
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, boolean pullParsing) throws IOException, MarkLogicSesameException {
+		long start = System.nanoTime();
+		boolean success = false;
+		QueryTimings timings = new QueryTimings(OperationType.CONSTRUCT, metrics);
+		InputStream response;
+		try {
+			response = getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.CONSTRUCT, start, success);
+		}
+		timings.firstByte();
+		InputStream stream = timings.track(response);
 
 		RDFParser parser = Rio.createParser(rdfFormat, getValueFactory());
 		parser.setParserConfig(getParserConfig());
 		parser.setParseErrorListener(new ParseErrorLogger());
 		parser.setPreserveBNodeIDs(true);
 
-		MarkLogicBackgroundGraphResult gRes;
-
 		// fixup - baseURI cannot be null
-		if(baseURI != null){
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,baseURI);
-		}else{
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,"");
+		String parserBaseURI = baseURI != null ? baseURI : "";
+		if (pullParsing) {
+			return new MarkLogicPullGraphResult(stream, response, parser, charset, parserBaseURI, timings);
 		}
 
+		MarkLogicBackgroundGraphResult gRes = new MarkLogicBackgroundGraphResult(this.<Statement>newQueueCursor(),parser,stream,response,charset,parserBaseURI,timings);
+
 		execute(gRes);
 		return gRes;
 	}
 
+	/**
+	 * GraphQuery, copying results in dataFormat straight from the response to out
+	 * without parsing them
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param dataFormat one of the formats MarkLogic returns CONSTRUCT results in
+	 * @param out not closed
+	 * @return number of bytes copied
+	 * @throws IOException
+	 * @throws UnsupportedRDFormatException
+	 */
+	public long sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, RDFFormat dataFormat, OutputStream out) throws IOException, MarkLogicSesameException {
+		if (!PASSTHROUGH_FORMATS.contains(dataFormat)) {
+			throw new UnsupportedRDFormatException("MarkLogic does not return CONSTRUCT results as " + dataFormat.getName() + ".");
+		}
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			InputStream stream = getClient().performGraphQuery(queryString, bindings, dataFormat, this.tx, includeInferred, baseURI);
+			try {
+				long copied = copy(stream, out);
+				success = true;
+				return copied;
+			} finally {
+				stream.close();
+			}
+		} finally {
+			requestCompleted(OperationType.CONSTRUCT, start, success);
+		}
+	}
+
 	/**
 	 * BooleanQuery
 	 *
@@ -270,7 +486,19 @@ public class MarkLogicClient {
 	 */
 	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
-		return getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		QueryResultCache cache = getCacheIfUsable();
+		if (cache == null) {
+			return performBooleanQuery(queryString, bindings, includeInferred, baseURI);
+		}
+		QueryResultCache.Key key = QueryResultCache.key("boolean", queryString, bindings, getRulesets(), getConstrainingQueryDefinition(), includeInferred, baseURI, 0, 0);
+		Boolean cached = cache.getBooleanResult(key);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = cache.getGeneration();
+		boolean result = performBooleanQuery(queryString, bindings, includeInferred, baseURI);
+		cache.cacheBooleanResult(key, generation, result);
+		return result;
 	}
 
 	/**
@@ -287,7 +515,8 @@ public class MarkLogicClient {
 	 * @throws UpdateExecutionException
 	 */
 	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
-		getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		invalidateGraphState();
+		performUpdate(queryString, bindings, includeInferred, baseURI);
 	}
 
 	/**
@@ -300,7 +529,16 @@ public class MarkLogicClient {
 	 * @throws RDFParseException
 	 */
 	public void sendAdd(File file, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException {
-		getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
+		graphsLoaded(contexts);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.ADD, start, success);
+			invalidateCache();
+		}
 	}
 
 	/**
@@ -312,7 +550,16 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendAdd(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicSesameException {
-		getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
+		graphsLoaded(contexts);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.ADD, start, success);
+			invalidateCache();
+		}
 	}
 
 	/**
@@ -325,7 +572,16 @@ public class MarkLogicClient {
 	 */
 	public void sendAdd(Reader in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicSesameException {
 		//TBD- must deal with char encoding
-		getClient().performAdd(new ReaderInputStream(in), baseURI, dataFormat, this.tx, contexts);
+		graphsLoaded(contexts);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			getClient().performAdd(new ReaderInputStream(in), baseURI, dataFormat, this.tx, contexts);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.ADD, start, success);
+			invalidateCache();
+		}
 	}
 
 	/**
@@ -338,10 +594,21 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendAdd(String baseURI, Resource subject, URI predicate, Value object, Resource... contexts) throws MarkLogicSesameException {
+		statementAdded(contexts);
 		if (WRITE_CACHE_ENABLED) {
-			timerWriteCache.add(subject, predicate, object, contexts);
+			synchronized (cacheLock) {
+				writeCache().add(subject, predicate, object, contexts);
+			}
 		} else {
-			getClient().performAdd(baseURI, (Resource) skolemize(subject), (URI) skolemize(predicate), skolemize(object), this.tx, contexts);
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				getClient().performAdd(baseURI, (Resource) skolemize(subject), (URI) skolemize(predicate), skolemize(object), this.tx, contexts);
+				success = true;
+			} finally {
+				requestCompleted(OperationType.ADD, start, success);
+				invalidateCache();
+			}
 		}
 	}
 
@@ -355,12 +622,23 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendRemove(String baseURI, Resource subject,URI predicate, Value object, Resource... contexts) throws MarkLogicSesameException {
+		statementRemoved(contexts);
 		if (DELETE_CACHE_ENABLED) {
-			timerDeleteCache.add(subject, predicate, object, contexts);
+			synchronized (cacheLock) {
+				deleteCache().add(subject, predicate, object, contexts);
+			}
 		} else {
 			if (WRITE_CACHE_ENABLED)
 				sync();
-			getClient().performRemove(baseURI, (Resource) skolemize(subject), (URI) skolemize(predicate), skolemize(object), this.tx, contexts);
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				getClient().performRemove(baseURI, (Resource) skolemize(subject), (URI) skolemize(predicate), skolemize(object), this.tx, contexts);
+				success = true;
+			} finally {
+				requestCompleted(OperationType.REMOVE, start, success);
+				invalidateCache();
+			}
 		}
 	}
 
@@ -370,7 +648,16 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendClear(Resource... contexts) throws MarkLogicSesameException {
-		getClient().performClear(this.tx, contexts);
+		graphsCleared(contexts);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			getClient().performClear(this.tx, contexts);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.CLEAR, start, success);
+			invalidateCache();
+		}
 	}
 
 	/**
@@ -378,7 +665,16 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void sendClearAll() throws MarkLogicSesameException {
-		getClient().performClearAll(this.tx);
+		allGraphsCleared();
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			getClient().performClearAll(this.tx);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.CLEAR, start, success);
+			invalidateCache();
+		}
 	}
 
 	/**
@@ -388,7 +684,14 @@ public class MarkLogicClient {
 	 */
 	public void openTransaction() throws MarkLogicTransactionException {
 		if (!isActiveTransaction()) {
-			this.tx = getClient().getDatabaseClient().openTransaction();
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				this.tx = getClient().getDatabaseClient().openTransaction();
+				success = true;
+			} finally {
+				requestCompleted(OperationType.OPEN_TRANSACTION, start, success);
+			}
 		}else{
 			throw new MarkLogicTransactionException("Only one active transaction allowed.");
 		}
@@ -403,8 +706,17 @@ public class MarkLogicClient {
 		if (isActiveTransaction()) {
 			try {
 				sync();
-				this.tx.commit();
+				long start = System.nanoTime();
+				boolean success = false;
+				try {
+					this.tx.commit();
+					success = true;
+				} finally {
+					requestCompleted(OperationType.COMMIT, start, success);
+				}
 				this.tx=null;
+				invalidateCache();
+				invalidateGraphState();
 			} catch (MarkLogicSesameException e) {
 				logger.error(e.getLocalizedMessage());
 				throw new MarkLogicTransactionException(e);
@@ -426,8 +738,16 @@ public class MarkLogicClient {
 			} catch (MarkLogicSesameException e) {
 				throw new MarkLogicTransactionException(e);
 			}
-			this.tx.rollback();
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				this.tx.rollback();
+				success = true;
+			} finally {
+				requestCompleted(OperationType.ROLLBACK, start, success);
+			}
 			this.tx = null;
+			invalidateGraphState();
 		}else{
 			throw new MarkLogicTransactionException("No active transaction to rollback.");
 		}
@@ -536,19 +856,308 @@ public class MarkLogicClient {
 		return _client.getDatabaseClient().newGraphManager().newGraphPermissions();
 	}
 
+	/**
+	 * sets query result cache, null disables caching
+	 *
+	 * @param queryResultCache
+	 */
+	public void setQueryResultCache(QueryResultCache queryResultCache){
+		this.queryResultCache = queryResultCache;
+	}
+
+	/**
+	 * getter for query result cache
+	 *
+	 * @return
+	 */
+	public QueryResultCache getQueryResultCache(){
+		return this.queryResultCache;
+	}
+
+	/**
+	 * setter for graph statistics, null disables them
+	 *
+	 * @param graphStatistics
+	 */
+	public void setGraphStatistics(GraphStatistics graphStatistics){
+		this.graphStatistics = graphStatistics;
+	}
+
+	/**
+	 * getter for graph statistics
+	 *
+	 * @return
+	 */
+	public GraphStatistics getGraphStatistics(){
+		return this.graphStatistics;
+	}
+
+	/**
+	 * setter for graph catalog, null disables it
+	 *
+	 * @param graphCatalog
+	 */
+	public void setGraphCatalog(GraphCatalog graphCatalog){
+		this.graphCatalog = graphCatalog;
+	}
+
+	/**
+	 * getter for graph catalog
+	 *
+	 * @return
+	 */
+	public GraphCatalog getGraphCatalog(){
+		return this.graphCatalog;
+	}
+
+	/**
+	 * setter for metrics, null disables them
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics(MarkLogicClientMetrics metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * getter for metrics
+	 *
+	 * @return
+	 */
+	public MarkLogicClientMetrics getMetrics(){
+		return this.metrics;
+	}
+
+	/**
+	 * setter for listener called around every request sent to MarkLogic, null for none
+	 *
+	 * @param requestListener
+	 */
+	public void setRequestListener(RequestListener requestListener){
+		getClient().setRequestListener(requestListener);
+	}
+
+	/**
+	 * getter for request listener
+	 *
+	 * @return
+	 */
+	public RequestListener getRequestListener(){
+		return getClient().getRequestListener();
+	}
+
+	/**
+	 * sets executor running async queries and updates, null uses a shared default pool
+	 * of DEFAULT_ASYNC_THREADS daemon threads
+	 *
+	 * @param asyncExecutor
+	 */
+	public void setAsyncExecutor(ExecutorService asyncExecutor){
+		this.asyncExecutor = asyncExecutor == null ? null : MoreExecutors.listeningDecorator(asyncExecutor);
+	}
+
+	/**
+	 * submits task to async executor
+	 *
+	 * @param task
+	 * @return
+	 */
+	public <T> ListenableFuture<T> submit(Callable<T> task){
+		ListeningExecutorService service = this.asyncExecutor;
+		if (service == null) {
+			service = DefaultAsyncExecutor.INSTANCE;
+		}
+		return service.submit(task);
+	}
+
+	/**
+	 * cancels result once delay has passed unless it has been closed, a delay of 0 or less cancels at once
+	 *
+	 * the returned timer is handed to the result, which cancels it when closed
+	 *
+	 * @param result
+	 * @param delayMillis
+	 * @return timer, null if the result was cancelled at once
+	 */
+	public ScheduledFuture<?> cancelAfter(final MarkLogicQueryResult result, long delayMillis){
+		if (delayMillis <= 0) {
+			result.cancel();
+			return null;
+		}
+		final WeakReference<MarkLogicQueryResult> ref = new WeakReference<>(result);
+		ScheduledFuture<?> timer = Watchdog.INSTANCE.schedule(new Runnable() {
+			@Override
+			public void run() {
+				MarkLogicQueryResult pending = ref.get();
+				if (pending != null && !pending.isCancelled()) {
+					logger.debug("maximum execution time exceeded, cancelling query result");
+					pending.cancel();
+				}
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+		result.cancelOnClose(timer);
+		return timer;
+	}
+
+	/**
+	 * sets how background parsed results are handed to the consumer
+	 *
+	 * a batchSize of 1 hands over one result at a time
+	 *
+	 * @param batchSize number of results handed over at once
+	 * @param queueCapacity number of batches queued before the parser blocks
+	 */
+	public void setResultBatching(int batchSize, int queueCapacity){
+		if (batchSize < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("batchSize and queueCapacity must be positive.");
+		}
+		this.resultBatchSize = batchSize;
+		this.resultQueueCapacity = queueCapacity;
+	}
+
+	/**
+	 * getter for result batch size
+	 *
+	 * @return
+	 */
+	public int getResultBatchSize(){
+		return this.resultBatchSize;
+	}
+
+	/**
+	 * getter for result queue capacity, in batches
+	 *
+	 * @return
+	 */
+	public int getResultQueueCapacity(){
+		return this.resultQueueCapacity;
+	}
+
 	/**
 	 *exec
 	 * @param command
 	 */
-	protected void execute(Runnable command) {
-		executor.execute(command);
+	protected void execute(final Runnable command) {
+		final MarkLogicClientMetrics current = this.metrics;
+		if (current == null) {
+			executor.execute(command);
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				current.parserStarted();
+				try {
+					command.run();
+				} finally {
+					current.parserFinished();
+				}
+			}
+		});
+	}
+
+
+	///////////////////////////////////////////////////////////////////////////////////////////////
+	// package ////////////////////////////////////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * returns blank node as a MarkLogic blank node IRI, other values unchanged
+	 *
+	 * @param s
+	 * @return Value
+	 */
+	Value skolemize(Value s) {
+		if (s instanceof org.openrdf.model.BNode) {
+			return getValueFactory().createURI("http://marklogic.com/semantics/blank/" + s.toString());
+		} else {
+			return s;
+		}
 	}
 
+	/**
+	 * invalidates query result cache once a write has completed, so a query
+	 * running concurrently with the write cannot cache what it read before it
+	 */
+	void invalidateCache(){
+		if (this.queryResultCache != null) {
+			this.queryResultCache.invalidate();
+		}
+	}
+
+	/**
+	 * sends update flushing a triple cache; its statements were recorded in graph
+	 * state when queued, so unlike sendUpdateQuery graph state is left in place
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws UpdateExecutionException
+	 */
+	void sendCacheFlush(String queryString, SPARQLQueryBindingSet bindings) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
+		performUpdate(queryString, bindings, false, null);
+	}
 
 	///////////////////////////////////////////////////////////////////////////////////////////////
 	// private ////////////////////////////////////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * executes update query and invalidates query result cache once it completes
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 */
+	private void performUpdate(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) {
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+			success = true;
+		} finally {
+			requestCompleted(OperationType.UPDATE, start, success);
+			invalidateCache();
+		}
+	}
+
+	/**
+	 * returns write cache, starting it and its timer if needed; caller holds cacheLock
+	 *
+	 * @return
+	 */
+	private TripleWriteCache writeCache(){
+		if (timerWriteCache == null) {
+			logger.debug("starting write cache");
+			timerWriteCache = customCacheSize ? new TripleWriteCache(this, cacheSize) : new TripleWriteCache(this);
+			timerWriteCache.setIdleMillis(cacheIdleMillis);
+			timerWriteCache.setMetrics(metrics);
+			writeTimer = new Timer("marklogic-sesame-write-cache");
+			writeTimer.scheduleAtFixedRate(timerWriteCache, cacheInitialDelay, cachePeriod);
+		}
+		return timerWriteCache;
+	}
+
+	/**
+	 * returns delete cache, starting it and its timer if needed; caller holds cacheLock
+	 *
+	 * @return
+	 */
+	private TripleDeleteCache deleteCache(){
+		if (timerDeleteCache == null) {
+			logger.debug("starting delete cache");
+			timerDeleteCache = new TripleDeleteCache(this);
+			timerDeleteCache.setIdleMillis(cacheIdleMillis);
+			timerDeleteCache.setMetrics(metrics);
+			deleteTimer = new Timer("marklogic-sesame-delete-cache");
+			deleteTimer.scheduleAtFixedRate(timerDeleteCache, cacheInitialDelay, cachePeriod);
+		}
+		return timerDeleteCache;
+	}
+
 	/**
 	 *
 	 * @return
@@ -558,18 +1167,258 @@ public class MarkLogicClient {
 	}
 
 	/**
+	 * executes tuple query, returning streamed results
 	 *
-	 * @param s
 	 * @return
 	 */
-	private Value skolemize(Value s) {
-		if (s instanceof org.openrdf.model.BNode) {
-			return getValueFactory().createURI("http://marklogic.com/semantics/blank/" + s.toString());
+	private TupleQueryResult performTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, boolean pullParsing) throws MarkLogicSesameException {
+		InputStream response = null;
+		long started = System.nanoTime();
+		boolean success = false;
+		QueryTimings timings = new QueryTimings(OperationType.SELECT, metrics);
+		try {
+			response = getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI);
+			success = true;
+		} catch (JsonProcessingException e) {
+			logger.error(e.getLocalizedMessage());
+			throw new MarkLogicSesameException("Issue processing json.");
+		} finally {
+			requestCompleted(OperationType.SELECT, started, success);
+		}
+		timings.firstByte();
+		InputStream stream = timings.track(response);
+		if (pullParsing) {
+			return new MarkLogicPullTupleResult(stream, response, getValueFactory(), timings);
+		}
+		TupleQueryResultParser parser = QueryResultIO.createParser(format, getValueFactory());
+		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(this.<BindingSet>newQueueCursor(),parser,stream,response,timings);
+		execute(tRes);
+		return tRes;
+	}
+
+	/**
+	 * executes boolean query
+	 *
+	 * @return
+	 */
+	private boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) {
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			boolean result = getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+			success = true;
+			return result;
+		} finally {
+			requestCompleted(OperationType.ASK, start, success);
+		}
+	}
+
+	/**
+	 * records request started at start in metrics, if enabled
+	 *
+	 * @param operation
+	 * @param start System.nanoTime() before the request was sent
+	 * @param success
+	 */
+	private void requestCompleted(OperationType operation, long start, boolean success){
+		MarkLogicClientMetrics current = this.metrics;
+		if (current != null) {
+			current.requestCompleted(operation, System.nanoTime() - start, success);
+		}
+	}
+
+	/**
+	 * returns query result cache unless disabled or inside a transaction
+	 *
+	 * @return
+	 */
+	private QueryResultCache getCacheIfUsable(){
+		if (this.queryResultCache == null || isActiveTransaction()) {
+			return null;
+		}
+		return this.queryResultCache;
+	}
+
+	/**
+	 * returns true if graph statistics and catalog can be updated in place, which is
+	 * not the case inside a transaction as it may be rolled back
+	 *
+	 * @return
+	 */
+	private boolean isGraphStateUpdatable(){
+		return (this.graphStatistics != null || this.graphCatalog != null) && !isActiveTransaction();
+	}
+
+	/**
+	 * records single statement add in graph catalog; graph statistics of contexts are
+	 * marked stale, as the statement may already exist
+	 *
+	 * @param contexts
+	 */
+	private void statementAdded(Resource... contexts){
+		if (!isGraphStateUpdatable()) {
+			invalidateGraphState();
+			return;
+		}
+		if (this.graphStatistics != null) {
+			this.graphStatistics.written(contexts);
+		}
+		if (this.graphCatalog != null) {
+			this.graphCatalog.added(contexts);
+		}
+	}
+
+	/**
+	 * marks graph statistics of contexts stale after a remove, as the statement may not
+	 * have existed, all of them if no contexts are given; graphs stay in the catalog
+	 * until refreshed
+	 *
+	 * @param contexts
+	 */
+	private void statementRemoved(Resource... contexts){
+		if (this.graphStatistics == null) {
+			return;
+		}
+		if (isGraphStateUpdatable() && contexts != null && contexts.length > 0) {
+			this.graphStatistics.written(contexts);
 		} else {
-			return s;
+			this.graphStatistics.invalidate();
+		}
+	}
+
+	/**
+	 * records load of a file or stream, which only has a known effect on graph state if contexts are given
+	 *
+	 * @param contexts
+	 */
+	private void graphsLoaded(Resource... contexts){
+		boolean known = isGraphStateUpdatable() && contexts != null && contexts.length > 0;
+		if (this.graphStatistics != null) {
+			if (known) {
+				this.graphStatistics.written(contexts);
+			} else {
+				this.graphStatistics.invalidate();
+			}
+		}
+		if (this.graphCatalog != null) {
+			if (known) {
+				this.graphCatalog.added(contexts);
+			} else {
+				this.graphCatalog.invalidate();
+			}
 		}
 	}
 
+	/**
+	 * records clear of contexts in graph statistics and catalog
+	 *
+	 * @param contexts
+	 */
+	private void graphsCleared(Resource... contexts){
+		if (!isGraphStateUpdatable()) {
+			invalidateGraphState();
+			return;
+		}
+		if (this.graphStatistics != null) {
+			this.graphStatistics.cleared(contexts);
+		}
+		if (this.graphCatalog != null) {
+			this.graphCatalog.cleared(contexts);
+		}
+	}
+
+	/**
+	 * records clear of all graphs in graph statistics and catalog
+	 */
+	private void allGraphsCleared(){
+		if (!isGraphStateUpdatable()) {
+			invalidateGraphState();
+			return;
+		}
+		if (this.graphStatistics != null) {
+			this.graphStatistics.clearedAll();
+		}
+		if (this.graphCatalog != null) {
+			this.graphCatalog.clearedAll();
+		}
+	}
+
+	/**
+	 * invalidates graph statistics and catalog after a write with unknown effect
+	 */
+	private void invalidateGraphState(){
+		if (this.graphStatistics != null) {
+			this.graphStatistics.invalidate();
+		}
+		if (this.graphCatalog != null) {
+			this.graphCatalog.invalidate();
+		}
+	}
+
+	/**
+	 * copies stream to out using channels, transferring directly into the file when out is a FileOutputStream
+	 *
+	 * @param in
+	 * @param out
+	 * @return number of bytes copied
+	 * @throws IOException
+	 */
+	private static long copy(InputStream in, OutputStream out) throws IOException {
+		ReadableByteChannel source = Channels.newChannel(in);
+		if (out instanceof FileOutputStream) {
+			FileChannel target = ((FileOutputStream) out).getChannel();
+			long start = target.position();
+			long position = start;
+			long transferred;
+			while ((transferred = target.transferFrom(source, position, COPY_CHUNK_SIZE)) > 0) {
+				position += transferred;
+			}
+			target.position(position);
+			return position - start;
+		}
+		WritableByteChannel target = Channels.newChannel(out);
+		ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+		long total = 0;
+		while (source.read(buffer) != -1) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				total += target.write(buffer);
+			}
+			buffer.clear();
+		}
+		out.flush();
+		return total;
+	}
+
+	/**
+	 * lazily created pool shared by clients without an async executor
+	 */
+	private static class DefaultAsyncExecutor {
+		static final ListeningExecutorService INSTANCE = MoreExecutors.listeningDecorator(
+				Executors.newFixedThreadPool(DEFAULT_ASYNC_THREADS,
+						new ThreadFactoryBuilder().setDaemon(true).setNameFormat("marklogic-sesame-async-%d").build()));
+	}
+
+	/**
+	 * lazily created timer thread cancelling results that exceed their maximum execution time
+	 */
+	private static class Watchdog {
+		static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("marklogic-sesame-watchdog-%d").build());
+	}
+
+	/**
+	 * creates queue for handing results from background parser to consumer
+	 *
+	 * @return
+	 */
+	private <E> QueueCursor<E> newQueueCursor(){
+		if (resultBatchSize > 1) {
+			return new BatchingQueueCursor<>(resultBatchSize, resultQueueCapacity);
+		}
+		return new QueueCursor<>(resultQueueCapacity);
+	}
+
 	/**
 	 *
 	 */
@@ -580,6 +1429,69 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void release() {
+		released = true;
 		_client.release();
 	}
+
+	/**
+	 * stops cache and its timer if it is still idle, called by the cache timer
+	 *
+	 * @param cache
+	 */
+	void stopIdleCache(TripleCache cache) {
+		synchronized (cacheLock) {
+			if (!cache.isIdle()) {
+				return;
+			}
+			if (cache == timerWriteCache) {
+				logger.debug("stopping idle write cache");
+				timerWriteCache.cancel();
+				writeTimer.cancel();
+				timerWriteCache = null;
+				writeTimer = null;
+			} else if (cache == timerDeleteCache) {
+				logger.debug("stopping idle delete cache");
+				timerDeleteCache.cancel();
+				deleteTimer.cancel();
+				timerDeleteCache = null;
+				deleteTimer = null;
+			}
+		}
+	}
+
+	/**
+	 * returns true if client can be handed to another connection, ie. it has not been
+	 * released, has no open transaction and no statements left in its write or delete
+	 * cache by a failed flush
+	 *
+	 * @return boolean
+	 */
+	public boolean isReusable() {
+		return !released && !isActiveTransaction() && !hasCachedStatements();
+	}
+
+	/**
+	 * clears state set by a connection; rulesets, constraining query, graph permissions,
+	 * result batching and write cache configuration, which go back to their defaults
+	 */
+	public void reset() {
+		setRulesets((SPARQLRuleset[]) null);
+		setConstrainingQueryDefinition(null);
+		setGraphPerms(null);
+		setResultBatching(BatchingQueueCursor.DEFAULT_BATCH_SIZE, BatchingQueueCursor.DEFAULT_QUEUE_CAPACITY);
+		initTimer();
+		setCacheIdleMillis(TripleCache.DEFAULT_IDLE_MILLIS);
+	}
+
+	/**
+	 * returns true if the write or delete cache holds statements not yet flushed
+	 *
+	 * @return boolean
+	 */
+	private boolean hasCachedStatements() {
+		synchronized (cacheLock) {
+			return (timerWriteCache != null && timerWriteCache.getDepth() > 0)
+					|| (timerDeleteCache != null && timerDeleteCache.getDepth() > 0);
+		}
+	}
 }
\ No newline at end of file
@@ -23,16 +23,21 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
+import com.google.common.base.Utf8;
+import com.google.common.io.CountingInputStream;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
 import org.openrdf.query.Binding;
+import org.openrdf.repository.sparql.query.QueryStringUtil;
 import org.openrdf.repository.sparql.query.SPARQLQueryBindingSet;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParseException;
@@ -57,6 +62,8 @@ import com.marklogic.client.semantics.SPARQLQueryManager;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.sesame.MarkLogicSesameException;
 
+import static com.marklogic.semantics.sesame.client.MarkLogicClient.DEFAULT_GRAPH_URI;
+
 /**
  * internal class for interacting with java api client
  *
@@ -66,7 +73,12 @@ class MarkLogicClientImpl {
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicClientImpl.class);
 
-    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+    private static final Map<String, RDFTypes> XSD_TYPES = new HashMap<>();
+    static {
+        for (RDFTypes type : RDFTypes.values()) {
+            XSD_TYPES.put(XMLSchema.NAMESPACE + type.toString(), type);
+        }
+    }
 
     private SPARQLRuleset[] ruleset;
     private QueryDefinition constrainingQueryDef;
@@ -77,6 +89,8 @@ class MarkLogicClientImpl {
 
     private DatabaseClient databaseClient;
 
+    private volatile RequestListener requestListener;
+
     /**
      * constructor
      *
@@ -151,7 +165,7 @@ class MarkLogicClientImpl {
      * @throws JsonProcessingException
      */
     public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings);
         if(notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
         if (notNull(ruleset)){qdef.setRulesets(ruleset);}
         if (notNull(getConstrainingQueryDefinition())) {
@@ -163,13 +177,23 @@ class MarkLogicClientImpl {
         }
         qdef.setIncludeDefaultRulesets(includeInferred);
         if(notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
+        // page length is manager state, so paged queries use their own manager to stay safe under concurrent use
+        SPARQLQueryManager manager = sparqlManager;
         if(pageLength > 0){
-            sparqlManager.setPageLength(pageLength);
-        }else{
-            sparqlManager.clearPageLength();
+            manager = getDatabaseClient().newSPARQLQueryManager();
+            manager.setPageLength(pageLength);
         }
-        sparqlManager.executeSelect(qdef, handle, start, tx);
-        return new BufferedInputStream(handle.get());
+        RequestEvent event = requestStarted(OperationType.SELECT, queryString);
+        boolean success = false;
+        try {
+            manager.executeSelect(qdef, handle, start, tx);
+            success = true;
+        } finally {
+            if (!success) {
+                requestCompleted(event, RequestEvent.Outcome.FAILURE);
+            }
+        }
+        return responseStream(handle.get(), event, true);
     }
 
     /**
@@ -199,20 +223,26 @@ class MarkLogicClientImpl {
      * @throws JsonProcessingException
      */
     public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException  {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (notNull(ruleset)) {qdef.setRulesets(ruleset);}
-        if (notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if(notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.executeDescribe(qdef, handle, tx);
-        return new BufferedInputStream(handle.get());
+        return executeGraphQuery(queryString, bindings, handle, tx, includeInferred, baseURI, true);
+    }
+
+    /**
+     * executes GraphQuery, asking the server for results in dataFormat
+     *
+     * the returned stream is not buffered, as it is meant to be copied in bulk
+     *
+     * @param queryString
+     * @param bindings
+     * @param dataFormat
+     * @param tx
+     * @param includeInferred
+     * @param baseURI
+     * @return
+     * @throws JsonProcessingException
+     */
+    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, RDFFormat dataFormat, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
+        InputStreamHandle handle = new InputStreamHandle().withMimetype(dataFormat.getDefaultMIMEType());
+        return executeGraphQuery(queryString, bindings, handle, tx, includeInferred, baseURI, false);
     }
 
     /**
@@ -226,7 +256,7 @@ class MarkLogicClientImpl {
      * @return
      */
     public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings);
         if(notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
         qdef.setIncludeDefaultRulesets(includeInferred);
         if (notNull(ruleset)) {qdef.setRulesets(ruleset);}
@@ -238,7 +268,15 @@ class MarkLogicClientImpl {
             qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
         	}
         if(notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        return sparqlManager.executeAsk(qdef,tx);
+        RequestEvent event = requestStarted(OperationType.ASK, queryString);
+        boolean success = false;
+        try {
+            boolean result = sparqlManager.executeAsk(qdef,tx);
+            success = true;
+            return result;
+        } finally {
+            requestFinished(event, success);
+        }
     }
 
     /**
@@ -251,13 +289,13 @@ class MarkLogicClientImpl {
      * @param baseURI
      */
     public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings);
         if(notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
         if (notNull(ruleset) ) {qdef.setRulesets(ruleset);}
         if(notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
         qdef.setIncludeDefaultRulesets(includeInferred);
         sparqlManager.clearPageLength();
-        sparqlManager.executeUpdate(qdef, tx);
+        executeUpdate(OperationType.UPDATE, queryString, qdef, tx);
     }
 
     /**
@@ -273,6 +311,8 @@ class MarkLogicClientImpl {
     // performAdd
     // as we use mergeGraphs, baseURI is always file.toURI
     public void performAdd(File file, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException {
+        RequestEvent event = requestStarted(OperationType.ADD, null);
+        boolean success = false;
         try {
             graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
             if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
@@ -290,9 +330,15 @@ class MarkLogicClientImpl {
                     graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(),tx);
                 }
             }
+            success = true;
         } catch (FailedRequestException e) {
             logger.error(e.getLocalizedMessage());
             throw new RDFParseException("Request to MarkLogic server failed, check file and format.");
+        } finally {
+            if (event != null) {
+                event.setBytesOut(file.length());
+            }
+            requestFinished(event, success);
         }
     }
 
@@ -307,6 +353,13 @@ class MarkLogicClientImpl {
      * @throws RDFParseException
      */
     public void performAdd(InputStream in, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException, MarkLogicSesameException {
+        RequestEvent event = requestStarted(OperationType.ADD, null);
+        CountingInputStream counted = null;
+        if (event != null) {
+            counted = new CountingInputStream(in);
+            in = counted;
+        }
+        boolean success = false;
         try {
             graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
             if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
@@ -325,12 +378,18 @@ class MarkLogicClientImpl {
                 }
             }
             in.close();
+            success = true;
         } catch (FailedRequestException e) {
             logger.error(e.getLocalizedMessage());
             throw new RDFParseException("Request to MarkLogic server failed, check input is valid.");
         } catch (IOException e) {
             logger.error(e.getLocalizedMessage());
             throw new MarkLogicSesameException("IO error");
+        } finally {
+            if (counted != null) {
+                event.setBytesOut(counted.getCount());
+            }
+            requestFinished(event, success);
         }
     }
 
@@ -369,7 +428,7 @@ class MarkLogicClientImpl {
         if(notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        executeUpdate(OperationType.ADD, sb.toString(), qdef, tx);
     }
 
     /**
@@ -405,7 +464,7 @@ class MarkLogicClientImpl {
         if(notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        executeUpdate(OperationType.REMOVE, sb.toString(), qdef, tx);
     }
 
     /**
@@ -415,16 +474,23 @@ class MarkLogicClientImpl {
      * @param contexts
      */
     public void performClear(Transaction tx, Resource... contexts) {
-        if(notNull(contexts)) {
-            for (int i = 0; i < contexts.length; i++) {
-                if (notNull(contexts[i])) {
-                    graphManager.delete(contexts[i].stringValue(), tx);
-                } else {
-                    graphManager.delete(DEFAULT_GRAPH_URI, tx);
+        RequestEvent event = requestStarted(OperationType.CLEAR, null);
+        boolean success = false;
+        try {
+            if(notNull(contexts)) {
+                for (int i = 0; i < contexts.length; i++) {
+                    if (notNull(contexts[i])) {
+                        graphManager.delete(contexts[i].stringValue(), tx);
+                    } else {
+                        graphManager.delete(DEFAULT_GRAPH_URI, tx);
+                    }
                 }
+            }else{
+                graphManager.delete(DEFAULT_GRAPH_URI, tx);
             }
-        }else{
-            graphManager.delete(DEFAULT_GRAPH_URI, tx);
+            success = true;
+        } finally {
+            requestFinished(event, success);
         }
     }
 
@@ -434,7 +500,14 @@ class MarkLogicClientImpl {
      * @param tx
      */
     public void performClearAll(Transaction tx) {
-        graphManager.deleteGraphs(tx);
+        RequestEvent event = requestStarted(OperationType.CLEAR, null);
+        boolean success = false;
+        try {
+            graphManager.deleteGraphs(tx);
+            success = true;
+        } finally {
+            requestFinished(event, success);
+        }
     }
 
     /**
@@ -501,6 +574,24 @@ class MarkLogicClientImpl {
         return this.constrainingQueryDef;
     }
 
+    /**
+     * setter for request listener, null for none
+     *
+     * @param requestListener
+     */
+    public void setRequestListener(RequestListener requestListener) {
+        this.requestListener = requestListener;
+    }
+
+    /**
+     * getter for request listener
+     *
+     * @return
+     */
+    public RequestListener getRequestListener() {
+        return this.requestListener;
+    }
+
     /**
      * close client
      *
@@ -522,21 +613,217 @@ class MarkLogicClientImpl {
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * converts Sesame BindingSet to java api client SPARQLBindings
+     * converts Sesame BindingSet to java api client SPARQLBindings, keeping datatypes and language tags
      *
      * @param bindings
      * @return
+     * @throws MarkLogicSesameException
      */
-    protected SPARQLBindings getSPARQLBindings(SPARQLQueryBindingSet bindings) {
+    protected SPARQLBindings getSPARQLBindings(SPARQLQueryBindingSet bindings) throws MarkLogicSesameException {
         SPARQLBindings sps = new SPARQLBindingsImpl();
         for (Binding binding : bindings) {
-            sps.bind(binding.getName(), binding.getValue().stringValue());
+            bindValue(sps, binding.getName(), binding.getValue());
         }
         return sps;
     }
 
+    /**
+     * creates query definition, sending bindings to the server where they can be expressed as
+     * SPARQLBindings and inlining them into the query string otherwise (eg. blank nodes)
+     *
+     * @param queryString
+     * @param bindings
+     * @return
+     */
+    protected SPARQLQueryDefinition newQueryDefinition(String queryString, SPARQLQueryBindingSet bindings) {
+        if (bindings == null || bindings.size() == 0) {
+            return sparqlManager.newQueryDefinition(queryString);
+        }
+        for (Binding binding : bindings) {
+            if (!isBindable(binding.getValue())) {
+                return sparqlManager.newQueryDefinition(QueryStringUtil.getQueryString(queryString, bindings));
+            }
+        }
+        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+        try {
+            qdef.setBindings(getSPARQLBindings(bindings));
+        } catch (MarkLogicSesameException e) {
+            // isBindable checked every value
+            throw new IllegalStateException(e);
+        }
+        return qdef;
+    }
+
+    /**
+     * aborts the HTTP connection behind a response stream without reading the
+     * rest of the response, which closing the stream would do
+     *
+     * @param in stream returned by performSPARQLQuery or performGraphQuery
+     */
+    static void abortStream(InputStream in) {
+        if (in instanceof ResponseInputStream) {
+            ((ResponseInputStream) in).abort();
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("abortStream() stream closed exception", e);
+        }
+    }
+
+    /**
+     * reports the request behind a response stream as successful once a result
+     * parser has read the whole document, which may end before the stream does
+     *
+     * @param in stream returned by performSPARQLQuery or performGraphQuery
+     */
+    static void streamParsed(InputStream in) {
+        if (in instanceof ResponseInputStream) {
+            ((ResponseInputStream) in).parsed();
+        }
+    }
+
+    /**
+     * completes event and notifies request listener
+     *
+     * @param event null if there was no listener when the request started
+     * @param outcome
+     */
+    void requestCompleted(RequestEvent event, RequestEvent.Outcome outcome) {
+        if (event == null) {
+            return;
+        }
+        event.complete(outcome);
+        RequestListener listener = this.requestListener;
+        if (listener != null) {
+            try {
+                listener.requestCompleted(event);
+            } catch (RuntimeException e) {
+                logger.warn("request listener failed", e);
+            }
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * creates event and notifies request listener, returns null without a listener
+     *
+     * @param operation
+     * @param query
+     * @return
+     */
+    private RequestEvent requestStarted(OperationType operation, String query) {
+        RequestListener listener = this.requestListener;
+        if (listener == null) {
+            return null;
+        }
+        RequestEvent event = new RequestEvent(operation, query);
+        if (query != null) {
+            event.setBytesOut(Utf8.encodedLength(query));
+        }
+        try {
+            listener.requestStarted(event);
+        } catch (RuntimeException e) {
+            logger.warn("request listener failed", e);
+        }
+        return event;
+    }
+
+    /**
+     * completes request without a response body
+     *
+     * @param event
+     * @param success
+     */
+    private void requestFinished(RequestEvent event, boolean success) {
+        if (event != null) {
+            event.firstByte();
+            requestCompleted(event, success ? RequestEvent.Outcome.SUCCESS : RequestEvent.Outcome.FAILURE);
+        }
+    }
+
+    /**
+     * returns response stream completing event once read, which abortStream can abort
+     *
+     * @param in
+     * @param event
+     * @param buffered
+     * @return
+     */
+    private InputStream responseStream(InputStream in, RequestEvent event, boolean buffered) {
+        RequestInputStream request = null;
+        InputStream body = in;
+        if (event != null) {
+            event.firstByte();
+            request = new RequestInputStream(in, event, this);
+            body = request;
+        }
+        if (buffered) {
+            body = new BufferedInputStream(body);
+        }
+        return new ResponseInputStream(body, in, request);
+    }
+
+    /**
+     * executes update query
+     *
+     * @param operation
+     * @param queryString
+     * @param qdef
+     * @param tx
+     */
+    private void executeUpdate(OperationType operation, String queryString, SPARQLQueryDefinition qdef, Transaction tx) {
+        RequestEvent event = requestStarted(operation, queryString);
+        boolean success = false;
+        try {
+            sparqlManager.executeUpdate(qdef, tx);
+            success = true;
+        } finally {
+            requestFinished(event, success);
+        }
+    }
+
+    /**
+     * executes GraphQuery, returning the response stream
+     *
+     * @param queryString
+     * @param bindings
+     * @param handle
+     * @param tx
+     * @param includeInferred
+     * @param baseURI
+     * @param buffered
+     * @return
+     * @throws JsonProcessingException
+     */
+    private InputStream executeGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI, boolean buffered) throws JsonProcessingException  {
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings);
+        if(notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+        if (notNull(ruleset)) {qdef.setRulesets(ruleset);}
+        if (notNull(getConstrainingQueryDefinition())){
+        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
+            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
+            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
+            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
+            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
+        	}
+        if(notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
+        qdef.setIncludeDefaultRulesets(includeInferred);
+        RequestEvent event = requestStarted(OperationType.CONSTRUCT, queryString);
+        boolean success = false;
+        try {
+            sparqlManager.executeDescribe(qdef, handle, tx);
+            success = true;
+        } finally {
+            if (!success) {
+                requestCompleted(event, RequestEvent.Outcome.FAILURE);
+            }
+        }
+        return responseStream(handle.get(), event, buffered);
+    }
+
     /**
      * bind object
      *
@@ -546,35 +833,62 @@ class MarkLogicClientImpl {
      * @return
      * @throws MarkLogicSesameException
      */
-    private static SPARQLQueryDefinition bindObject(SPARQLQueryDefinition qdef, String variableName, Value object) throws MarkLogicSesameException{
+    static SPARQLQueryDefinition bindObject(SPARQLQueryDefinition qdef, String variableName, Value object) throws MarkLogicSesameException{
         SPARQLBindings bindings = qdef.getBindings();
-        if(object != null){
-            if (object instanceof URI) {
-                bindings.bind(variableName, object.stringValue());
-            } else if (object instanceof Literal) {
-                Literal lit = (Literal) object;
-                if (lit.getLanguage() != null) {
-                    String languageTag = lit.getLanguage();
-                    bindings.bind(variableName, lit.getLabel(), Locale.forLanguageTag(languageTag));
-                }else if (((Literal) object).getDatatype() != null) {
-                    try {
-                        String xsdType = lit.getDatatype().toString();
-                        String fragment = new java.net.URI(xsdType).getFragment();
-                        bindings.bind(variableName,lit.getLabel(),RDFTypes.valueOf(fragment.toUpperCase()));
-                    } catch (URISyntaxException e) {
-                        logger.error(e.getLocalizedMessage());
-                        throw new MarkLogicSesameException("Problem with object datatype.");
-                    }
-                }else {
-                    // assume we have a string value
-                    bindings.bind(variableName, lit.getLabel(), RDFTypes.STRING);
-                }
-            }
+        if(object instanceof URI || object instanceof Literal){
+            bindValue(bindings, variableName, object);
             qdef.setBindings(bindings);
         }
         return qdef;
     }
 
+    /**
+     * adds typed binding for URI or literal value
+     *
+     * @param bindings
+     * @param variableName
+     * @param object
+     * @throws MarkLogicSesameException
+     */
+    private static void bindValue(SPARQLBindings bindings, String variableName, Value object) throws MarkLogicSesameException{
+        if (object instanceof URI) {
+            bindings.bind(variableName, object.stringValue());
+        } else if (object instanceof Literal) {
+            Literal lit = (Literal) object;
+            if (lit.getLanguage() != null) {
+                String languageTag = lit.getLanguage();
+                bindings.bind(variableName, lit.getLabel(), Locale.forLanguageTag(languageTag));
+            }else if (lit.getDatatype() != null) {
+                RDFTypes type = XSD_TYPES.get(lit.getDatatype().stringValue());
+                if (type == null) {
+                    throw new MarkLogicSesameException("Problem with object datatype.");
+                }
+                bindings.bind(variableName, lit.getLabel(), type);
+            }else {
+                // assume we have a string value
+                bindings.bind(variableName, lit.getLabel(), RDFTypes.STRING);
+            }
+        } else {
+            throw new MarkLogicSesameException("Cannot bind blank node to variable " + variableName + ".");
+        }
+    }
+
+    /**
+     * tests if value can be sent as a server side binding
+     *
+     * @param object
+     * @return
+     */
+    private static boolean isBindable(Value object) {
+        if (object instanceof URI) {
+            return true;
+        } else if (object instanceof Literal) {
+            Literal lit = (Literal) object;
+            return lit.getLanguage() != null || lit.getDatatype() == null || XSD_TYPES.containsKey(lit.getDatatype().stringValue());
+        }
+        return false;
+    }
+
     /**
      * tedious utility for checking if object is null or not
      *
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.google.common.base.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * request, write cache and parser metrics of the clients of a repository
+ *
+ * Counts requests, errors and latency per OperationType, the number of
+ * statements waiting in write and delete caches, flush sizes and background
+ * parser threads, and the phases of SELECT and CONSTRUCT results, see
+ * QueryTimings. Metrics can be registered as a JMX MXBean and are also
+ * reported to an optional MetricsRegistry.
+ *
+ * @author James Fuller
+ */
+public class MarkLogicClientMetrics implements MarkLogicClientMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicClientMetrics.class);
+
+    public static final String PREFIX = "marklogic.sesame";
+
+    public static final String JMX_DOMAIN = "com.marklogic.semantics.sesame";
+
+    private static final OperationType[] OPERATIONS = OperationType.values();
+
+    private static final OperationType[] QUERY_OPERATIONS = {OperationType.SELECT, OperationType.CONSTRUCT};
+
+    private static final QueryTimings.Phase[] PHASES = QueryTimings.Phase.values();
+
+    private final MetricsRegistry registry;
+
+    private final AtomicLongArray requests = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray errors = new AtomicLongArray(OPERATIONS.length);
+    private final Histogram[] latencies = new Histogram[OPERATIONS.length];
+    private final Histogram[][] phases = new Histogram[OPERATIONS.length][PHASES.length];
+
+    private final Histogram writeFlushSizes = new Histogram();
+    private final Histogram deleteFlushSizes = new Histogram();
+    private final AtomicLong flushErrors = new AtomicLong();
+
+    private final AtomicInteger activeParsers = new AtomicInteger();
+
+    // caches started by clients, dropped once stopped or collected
+    private final Set<TripleCache> caches = Collections.newSetFromMap(new WeakHashMap<TripleCache, Boolean>());
+
+    // metric names, built once
+    private final String[] requestNames = new String[OPERATIONS.length];
+    private final String[] errorNames = new String[OPERATIONS.length];
+    private final String[] latencyNames = new String[OPERATIONS.length];
+    private final String[][] phaseNames = new String[OPERATIONS.length][PHASES.length];
+
+    private ObjectName objectName;
+
+    /**
+     * constructor without a metrics registry
+     */
+    public MarkLogicClientMetrics() {
+        this(null);
+    }
+
+    /**
+     * constructor
+     *
+     * @param registry metrics are also reported to, null for none
+     */
+    public MarkLogicClientMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        for (OperationType operation : OPERATIONS) {
+            int i = operation.ordinal();
+            latencies[i] = new Histogram();
+            requestNames[i] = PREFIX + ".request." + operation.getMetricName() + ".count";
+            errorNames[i] = PREFIX + ".request." + operation.getMetricName() + ".errors";
+            latencyNames[i] = PREFIX + ".request." + operation.getMetricName() + ".latency";
+            for (QueryTimings.Phase phase : PHASES) {
+                phases[i][phase.ordinal()] = new Histogram();
+                phaseNames[i][phase.ordinal()] = PREFIX + ".query." + operation.getMetricName() + "." + phase.getMetricName();
+            }
+        }
+        if (registry != null) {
+            registry.gauge(PREFIX + ".cache.write.depth", new Supplier<Integer>() {
+                @Override
+                public Integer get() {
+                    return getWriteCacheDepth();
+                }
+            });
+            registry.gauge(PREFIX + ".cache.delete.depth", new Supplier<Integer>() {
+                @Override
+                public Integer get() {
+                    return getDeleteCacheDepth();
+                }
+            });
+            registry.gauge(PREFIX + ".parser.active", new Supplier<Integer>() {
+                @Override
+                public Integer get() {
+                    return getActiveParserThreads();
+                }
+            });
+        }
+    }
+
+    /**
+     * returns registry metrics are also reported to, null if none
+     *
+     * @return MetricsRegistry
+     */
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * records a request sent to MarkLogic
+     *
+     * @param operation
+     * @param nanos time taken
+     * @param success false if the request failed
+     */
+    public void requestCompleted(OperationType operation, long nanos, boolean success) {
+        int i = operation.ordinal();
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        requests.incrementAndGet(i);
+        latencies[i].record(micros);
+        if (!success) {
+            errors.incrementAndGet(i);
+        }
+        if (registry != null) {
+            registry.count(requestNames[i], 1);
+            registry.update(latencyNames[i], micros);
+            if (!success) {
+                registry.count(errorNames[i], 1);
+            }
+        }
+    }
+
+    /**
+     * records phases of a closed query result, phases not reached are skipped
+     *
+     * @param timings
+     */
+    public void queryCompleted(QueryTimings timings) {
+        int i = timings.getOperation().ordinal();
+        for (QueryTimings.Phase phase : PHASES) {
+            long nanos = timings.getPhaseNanos(phase);
+            if (nanos < 0) {
+                continue;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            phases[i][phase.ordinal()].record(micros);
+            if (registry != null) {
+                registry.update(phaseNames[i][phase.ordinal()], micros);
+            }
+        }
+    }
+
+    /**
+     * records flush of a write or delete cache
+     *
+     * @param cache
+     * @param size number of statements flushed
+     * @param success false if the flush failed
+     */
+    public void cacheFlushed(TripleCache cache, int size, boolean success) {
+        if (!success) {
+            flushErrors.incrementAndGet();
+            if (registry != null) {
+                registry.count(PREFIX + ".cache.flush.errors", 1);
+            }
+            return;
+        }
+        boolean delete = cache instanceof TripleDeleteCache;
+        (delete ? deleteFlushSizes : writeFlushSizes).record(size);
+        if (registry != null) {
+            registry.update(PREFIX + (delete ? ".cache.delete.flush.size" : ".cache.write.flush.size"), size);
+        }
+    }
+
+    /**
+     * starts counting the statements waiting in cache towards cache depth
+     *
+     * @param cache
+     */
+    public void cacheStarted(TripleCache cache) {
+        synchronized (caches) {
+            caches.add(cache);
+        }
+    }
+
+    /**
+     * stops counting the statements waiting in cache
+     *
+     * @param cache
+     */
+    public void cacheStopped(TripleCache cache) {
+        synchronized (caches) {
+            caches.remove(cache);
+        }
+    }
+
+    /**
+     * records start of a background parser thread
+     */
+    public void parserStarted() {
+        activeParsers.incrementAndGet();
+    }
+
+    /**
+     * records end of a background parser thread
+     */
+    public void parserFinished() {
+        activeParsers.decrementAndGet();
+    }
+
+    /**
+     * returns number of requests of operation
+     *
+     * @param operation
+     * @return long
+     */
+    public long getRequestCount(OperationType operation) {
+        return requests.get(operation.ordinal());
+    }
+
+    /**
+     * returns number of failed requests of operation
+     *
+     * @param operation
+     * @return long
+     */
+    public long getErrorCount(OperationType operation) {
+        return errors.get(operation.ordinal());
+    }
+
+    /**
+     * returns latency histogram of operation, in microseconds
+     *
+     * @param operation
+     * @return Histogram
+     */
+    public Histogram getLatencyMicros(OperationType operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * returns histogram of a phase of operation results, in microseconds
+     *
+     * @param operation
+     * @param phase
+     * @return Histogram
+     */
+    public Histogram getPhaseMicros(OperationType operation, QueryTimings.Phase phase) {
+        return phases[operation.ordinal()][phase.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (OperationType operation : OPERATIONS) {
+            counts.put(operation.getMetricName(), getRequestCount(operation));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (OperationType operation : OPERATIONS) {
+            counts.put(operation.getMetricName(), getErrorCount(operation));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Histogram> getLatencyMicros() {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        for (OperationType operation : OPERATIONS) {
+            histograms.put(operation.getMetricName(), getLatencyMicros(operation));
+        }
+        return histograms;
+    }
+
+    @Override
+    public Map<String, Histogram> getQueryPhaseMicros() {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        for (OperationType operation : QUERY_OPERATIONS) {
+            for (QueryTimings.Phase phase : PHASES) {
+                histograms.put(operation.getMetricName() + "." + phase.getMetricName(), getPhaseMicros(operation, phase));
+            }
+        }
+        return histograms;
+    }
+
+    @Override
+    public int getWriteCacheDepth() {
+        return getCacheDepth(false);
+    }
+
+    @Override
+    public int getDeleteCacheDepth() {
+        return getCacheDepth(true);
+    }
+
+    @Override
+    public Histogram getWriteCacheFlushSizes() {
+        return writeFlushSizes;
+    }
+
+    @Override
+    public Histogram getDeleteCacheFlushSizes() {
+        return deleteFlushSizes;
+    }
+
+    @Override
+    public long getCacheFlushErrors() {
+        return flushErrors.get();
+    }
+
+    @Override
+    public int getActiveParserThreads() {
+        return activeParsers.get();
+    }
+
+    /**
+     * clears counters and histograms; cache depth and active parsers are current values and kept
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            requests.set(i, 0);
+            errors.set(i, 0);
+            latencies[i].reset();
+            for (Histogram phase : phases[i]) {
+                phase.reset();
+            }
+        }
+        writeFlushSizes.reset();
+        deleteFlushSizes.reset();
+        flushErrors.set(0);
+    }
+
+    /**
+     * registers metrics with the platform MBean server in the JMX_DOMAIN domain,
+     * with type MarkLogicClientMetrics and the quoted name; does nothing if that name is taken
+     *
+     * @param name
+     * @return true if registered
+     */
+    public synchronized boolean registerMBean(String name) {
+        unregisterMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName candidate = new ObjectName(JMX_DOMAIN + ":type=MarkLogicClientMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, candidate);
+            this.objectName = candidate;
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            logger.warn("metrics MBean {} is already registered", name);
+            return false;
+        } catch (JMException e) {
+            logger.warn("could not register metrics MBean {}: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * unregisters metrics from the platform MBean server, if registered
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            logger.debug("metrics MBean {} was already unregistered", objectName);
+        } catch (JMException e) {
+            logger.warn("could not unregister metrics MBean {}: {}", objectName, e.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * returns name metrics are registered under, null if not registered
+     *
+     * @return ObjectName
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * sums statements waiting in started write or delete caches
+     *
+     * @param delete
+     * @return int
+     */
+    private int getCacheDepth(boolean delete) {
+        int depth = 0;
+        synchronized (caches) {
+            for (TripleCache cache : caches) {
+                if ((cache instanceof TripleDeleteCache) == delete) {
+                    depth += cache.getDepth();
+                }
+            }
+        }
+        return depth;
+    }
+}
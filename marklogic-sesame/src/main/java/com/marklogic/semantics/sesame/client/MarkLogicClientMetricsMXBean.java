@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import java.util.Map;
+
+/**
+ * JMX view of MarkLogicClientMetrics; maps are keyed by OperationType metric name,
+ * latencies are in microseconds; query phases are keyed operation.phase, e.g. select.server
+ *
+ * @author James Fuller
+ */
+public interface MarkLogicClientMetricsMXBean {
+
+    Map<String, Long> getRequestCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Histogram> getLatencyMicros();
+
+    Map<String, Histogram> getQueryPhaseMicros();
+
+    int getWriteCacheDepth();
+
+    int getDeleteCacheDepth();
+
+    Histogram getWriteCacheFlushSizes();
+
+    Histogram getDeleteCacheFlushSizes();
+
+    long getCacheFlushErrors();
+
+    int getActiveParserThreads();
+
+    void reset();
+}
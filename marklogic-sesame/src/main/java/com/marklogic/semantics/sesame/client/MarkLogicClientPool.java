@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.google.common.base.Supplier;
+import com.marklogic.semantics.sesame.MarkLogicSesameException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * pool of MarkLogicClient objects reused across repository connections, so a
+ * connection does not build its own client, managers, executor and timers.
+ *
+ * At most maxTotal clients are checked out at once; further checkouts wait up
+ * to maxWaitMillis. Returned clients are reset and kept idle, most recently
+ * used first, up to maxIdle; clients idle longer than idleMillis are closed on
+ * the next checkout or checkin, keeping at least minIdle. A client is validated
+ * on checkout and checkin and discarded if it was released, still has an open
+ * transaction or holds statements its caches failed to flush.
+ *
+ * A pool creates clients with the factory of the repository it is set on and
+ * must not be shared between repositories.
+ *
+ * @author James Fuller
+ */
+public class MarkLogicClientPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicClientPool.class);
+
+    public static final int DEFAULT_MIN_IDLE = 0;
+    public static final int DEFAULT_MAX_IDLE = 8;
+    public static final int DEFAULT_MAX_TOTAL = 64;
+    public static final long DEFAULT_IDLE_MILLIS = 60000;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxTotal;
+    private final long idleMillis;
+    private final long maxWaitMillis;
+
+    private final Semaphore permits;
+
+    // most recently returned first
+    private final Deque<Idle> idle = new ArrayDeque<>();
+
+    private boolean closed = false;
+
+    /**
+     * constructor with default limits
+     */
+    public MarkLogicClientPool() {
+        this(DEFAULT_MIN_IDLE, DEFAULT_MAX_IDLE, DEFAULT_MAX_TOTAL, DEFAULT_IDLE_MILLIS, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * constructor
+     *
+     * @param minIdle number of idle clients kept when evicting
+     * @param maxIdle maximum number of idle clients
+     * @param maxTotal maximum number of clients checked out at once
+     * @param idleMillis time after which an idle client is closed, 0 or less never
+     * @param maxWaitMillis time checkout waits for a client once maxTotal are checked out
+     */
+    public MarkLogicClientPool(int minIdle, int maxIdle, int maxTotal, long idleMillis, long maxWaitMillis) {
+        if (maxTotal < 1) {
+            throw new IllegalArgumentException("maxTotal must be positive.");
+        }
+        if (minIdle < 0 || maxIdle < minIdle) {
+            throw new IllegalArgumentException("minIdle must be between 0 and maxIdle.");
+        }
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.maxTotal = maxTotal;
+        this.idleMillis = idleMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxTotal, true);
+    }
+
+    /**
+     * returns an idle client or one created by factory
+     *
+     * @param factory
+     * @return MarkLogicClient
+     * @throws MarkLogicSesameException
+     */
+    public MarkLogicClient checkout(Supplier<MarkLogicClient> factory) throws MarkLogicSesameException {
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new MarkLogicSesameException("Timed out waiting for one of " + maxTotal + " pooled clients.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MarkLogicSesameException(e);
+        }
+        try {
+            List<MarkLogicClient> evicted = new ArrayList<>();
+            MarkLogicClient client = null;
+            synchronized (idle) {
+                if (closed) {
+                    throw new MarkLogicSesameException("Client pool is closed.");
+                }
+                evict(evicted);
+                while (client == null && !idle.isEmpty()) {
+                    MarkLogicClient candidate = idle.pollFirst().client;
+                    if (candidate.isReusable()) {
+                        client = candidate;
+                    } else {
+                        evicted.add(candidate);
+                    }
+                }
+            }
+            destroy(evicted);
+            if (client == null) {
+                logger.debug("creating pooled client");
+                client = factory.get();
+            }
+            return client;
+        } catch (RuntimeException | MarkLogicSesameException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * returns client to pool, closing it if the pool is full or closed
+     *
+     * @param client
+     */
+    public void checkin(MarkLogicClient client) {
+        List<MarkLogicClient> evicted = new ArrayList<>();
+        try {
+            boolean reusable = client.isReusable();
+            if (reusable) {
+                client.reset();
+            }
+            synchronized (idle) {
+                if (reusable && !closed && idle.size() < maxIdle) {
+                    idle.addFirst(new Idle(client));
+                } else {
+                    evicted.add(client);
+                }
+                evict(evicted);
+            }
+        } finally {
+            permits.release();
+        }
+        destroy(evicted);
+    }
+
+    /**
+     * closes idle clients, clients checked out are closed when returned
+     */
+    public void close() {
+        List<MarkLogicClient> evicted = new ArrayList<>();
+        synchronized (idle) {
+            closed = true;
+            for (Idle entry : idle) {
+                evicted.add(entry.client);
+            }
+            idle.clear();
+        }
+        destroy(evicted);
+    }
+
+    /**
+     * returns number of clients checked out
+     *
+     * @return int
+     */
+    public int getNumActive() {
+        return maxTotal - permits.availablePermits();
+    }
+
+    /**
+     * returns number of idle clients
+     *
+     * @return int
+     */
+    public int getNumIdle() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * returns maximum number of clients checked out at once
+     *
+     * @return int
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * moves clients idle longer than idleMillis to evicted, least recently used first,
+     * keeping minIdle; caller holds the idle lock
+     *
+     * @param evicted
+     */
+    private void evict(List<MarkLogicClient> evicted) {
+        if (idleMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Idle> it = idle.descendingIterator();
+        while (idle.size() > minIdle && it.hasNext()) {
+            Idle entry = it.next();
+            if (now - entry.since <= idleMillis) {
+                break;
+            }
+            it.remove();
+            evicted.add(entry.client);
+        }
+    }
+
+    /**
+     * stops timers and closes clients, outside of the idle lock
+     *
+     * @param clients
+     */
+    private static void destroy(List<MarkLogicClient> clients) {
+        for (MarkLogicClient client : clients) {
+            logger.debug("closing pooled client");
+            client.stopTimer();
+            client.close();
+        }
+    }
+
+    private static final class Idle {
+        private final long since = System.currentTimeMillis();
+        private final MarkLogicClient client;
+
+        Idle(MarkLogicClient client) {
+            this.client = client;
+        }
+    }
+}
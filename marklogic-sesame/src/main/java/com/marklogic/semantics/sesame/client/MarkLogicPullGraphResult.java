@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import info.aduna.iteration.LookAheadIteration;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.ParseErrorLogger;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * GraphQueryResult that parses N-Triples incrementally on the calling
+ * thread, one statement per call to hasNext()/next(), instead of handing
+ * them over from a background parser thread.
+ *
+ * Each line is handed to the supplied N-Triples parser, so parser config and
+ * error handling are those of the background parser.
+ *
+ * @author James Fuller
+ */
+class MarkLogicPullGraphResult extends LookAheadIteration<Statement, QueryEvaluationException> implements GraphQueryResult, MarkLogicQueryResult {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicPullGraphResult.class);
+
+    private final InputStream response;
+    private final BufferedReader reader;
+    private final RDFParser parser;
+    private final String baseURI;
+    private final QueryTimings timings;
+
+    // statements parsed from the current line, not yet returned
+    private final LinkedList<Statement> parsed = new LinkedList<>();
+
+    private long lineNo = 0;
+
+    private volatile boolean cancelled = false;
+    private volatile Future<?> timer;
+
+    /**
+     * constructor
+     *
+     * @param in
+     * @param charset
+     * @param f
+     */
+    public MarkLogicPullGraphResult(InputStream in, Charset charset, ValueFactory f) {
+        this(in, in, newParser(f), charset, "", new QueryTimings(null, null));
+    }
+
+    /**
+     * constructor
+     *
+     * @param in
+     * @param response stream aborted on cancel, which in reads from
+     * @param parser N-Triples parser, its RDFHandler is replaced
+     * @param charset
+     * @param baseURI
+     * @param timings of the request in is the response of
+     */
+    public MarkLogicPullGraphResult(InputStream in, InputStream response, RDFParser parser, Charset charset, String baseURI, QueryTimings timings) {
+        super();
+        this.response = response;
+        this.reader = new BufferedReader(new InputStreamReader(in, charset));
+        this.parser = parser;
+        this.baseURI = baseURI;
+        this.timings = timings;
+        parser.setRDFHandler(new StatementCollector(parsed));
+    }
+
+    /**
+     * N-Triples carries no namespaces
+     *
+     * @return empty map
+     */
+    @Override
+    public Map<String, String> getNamespaces() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * parses lines from stream until one yields a statement
+     *
+     * @return Statement or null if no more results
+     * @throws QueryEvaluationException
+     */
+    @Override
+    protected Statement getNextElement() throws QueryEvaluationException {
+        checkCancelled();
+        try {
+            while (parsed.isEmpty()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    timings.lastResult();
+                    MarkLogicClientImpl.streamParsed(response);
+                    return null;
+                }
+                lineNo++;
+                parser.parse(new StringReader(line), baseURI);
+            }
+            return parsed.removeFirst();
+        } catch (IOException e) {
+            checkCancelled();
+            throw new QueryEvaluationException(e);
+        } catch (RDFParseException e) {
+            throw new QueryEvaluationException("Could not parse N-Triples line " + lineNo + ": " + e.getMessage(), e);
+        } catch (RDFHandlerException e) {
+            throw new QueryEvaluationException(e);
+        }
+    }
+
+    /**
+     * aborts HTTP stream, the consumer's next read then fails with QueryInterruptedException
+     */
+    @Override
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        MarkLogicClientImpl.abortStream(response);
+    }
+
+    /**
+     * returns true if cancelled
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * returns phase timings
+     *
+     * @return QueryTimings
+     */
+    @Override
+    public QueryTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * cancels timer once this result is closed
+     *
+     * @param timer
+     */
+    @Override
+    public void cancelOnClose(Future<?> timer) {
+        this.timer = timer;
+        if (isClosed()) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * closes underlying stream
+     *
+     * @throws QueryEvaluationException
+     */
+    @Override
+    protected void handleClose() throws QueryEvaluationException {
+        try {
+            super.handleClose();
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                logger.debug("MarkLogicPullGraphResult handleClose() stream closed exception", e);
+            } finally {
+                timings.closed();
+                Future<?> timer = this.timer;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * throws if result has been cancelled
+     *
+     * @throws QueryInterruptedException
+     */
+    private void checkCancelled() throws QueryInterruptedException {
+        if (cancelled) {
+            throw new QueryInterruptedException("Query result cancelled or maximum execution time exceeded.");
+        }
+    }
+
+    /**
+     * returns N-Triples parser logging errors, keeping blank node ids like the background parser
+     *
+     * @param f
+     * @return RDFParser
+     */
+    private static RDFParser newParser(ValueFactory f) {
+        RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES, f);
+        parser.setParseErrorListener(new ParseErrorLogger());
+        parser.setPreserveBNodeIDs(true);
+        return parser;
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import info.aduna.iteration.LookAheadIteration;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * TupleQueryResult that parses SPARQL JSON results incrementally on the
+ * calling thread, one binding set per call to hasNext()/next(), instead of
+ * handing them over from a background parser thread.
+ *
+ * @author James Fuller
+ */
+class MarkLogicPullTupleResult extends LookAheadIteration<BindingSet, QueryEvaluationException> implements TupleQueryResult, MarkLogicQueryResult {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicPullTupleResult.class);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final InputStream in;
+    private final InputStream response;
+    private final ValueFactory f;
+    private final QueryTimings timings;
+
+    private JsonParser parser;
+
+    private List<String> bindingNames;
+    private Map<String, Integer> bindingIndex;
+
+    // only used if the results array is encountered before the head
+    private LinkedList<BindingSet> buffered;
+
+    private boolean inBindings = false;
+    private boolean finished = false;
+
+    private volatile boolean cancelled = false;
+    private volatile Future<?> timer;
+
+    /**
+     * constructor
+     *
+     * @param in
+     * @param f
+     */
+    public MarkLogicPullTupleResult(InputStream in, ValueFactory f) {
+        this(in, in, f, new QueryTimings(null, null));
+    }
+
+    /**
+     * constructor
+     *
+     * @param in
+     * @param response stream aborted on cancel, which in reads from
+     * @param f
+     * @param timings of the request in is the response of
+     */
+    public MarkLogicPullTupleResult(InputStream in, InputStream response, ValueFactory f, QueryTimings timings) {
+        super();
+        this.in = in;
+        this.response = response;
+        this.f = f;
+        this.timings = timings;
+    }
+
+    /**
+     * returns binding names, reading the result head if not already done
+     *
+     * @return List<String>
+     * @throws QueryEvaluationException
+     */
+    @Override
+    public List<String> getBindingNames() throws QueryEvaluationException {
+        if (bindingNames == null) {
+            try {
+                readUntilBindings();
+            } catch (IOException e) {
+                throw new QueryEvaluationException(e);
+            }
+        }
+        return bindingNames == null ? Collections.<String>emptyList() : bindingNames;
+    }
+
+    /**
+     * parses next binding set from stream, recording when results end
+     *
+     * @return BindingSet or null if no more results
+     * @throws QueryEvaluationException
+     */
+    @Override
+    protected BindingSet getNextElement() throws QueryEvaluationException {
+        BindingSet next = readNextElement();
+        if (next == null) {
+            timings.lastResult();
+            MarkLogicClientImpl.streamParsed(response);
+        }
+        return next;
+    }
+
+    /**
+     * aborts HTTP stream, the consumer's next read then fails with QueryInterruptedException
+     */
+    @Override
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        MarkLogicClientImpl.abortStream(response);
+    }
+
+    /**
+     * returns true if cancelled
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * returns phase timings
+     *
+     * @return QueryTimings
+     */
+    @Override
+    public QueryTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * cancels timer once this result is closed
+     *
+     * @param timer
+     */
+    @Override
+    public void cancelOnClose(Future<?> timer) {
+        this.timer = timer;
+        if (isClosed()) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * closes underlying stream
+     *
+     * @throws QueryEvaluationException
+     */
+    @Override
+    protected void handleClose() throws QueryEvaluationException {
+        try {
+            super.handleClose();
+        } finally {
+            try {
+                if (parser != null) {
+                    parser.close();
+                }
+                in.close();
+            } catch (IOException e) {
+                logger.debug("MarkLogicPullTupleResult handleClose() stream closed exception", e);
+            } finally {
+                timings.closed();
+                Future<?> timer = this.timer;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * throws if result has been cancelled
+     *
+     * @throws QueryInterruptedException
+     */
+    private void checkCancelled() throws QueryInterruptedException {
+        if (cancelled) {
+            throw new QueryInterruptedException("Query result cancelled or maximum execution time exceeded.");
+        }
+    }
+
+    /**
+     * parses next binding set from stream
+     *
+     * @return BindingSet or null if no more results
+     * @throws QueryEvaluationException
+     */
+    private BindingSet readNextElement() throws QueryEvaluationException {
+        checkCancelled();
+        try {
+            if (buffered != null) {
+                return buffered.poll();
+            }
+            if (!inBindings) {
+                readUntilBindings();
+                if (buffered != null) {
+                    return buffered.poll();
+                }
+            }
+            if (finished) {
+                return null;
+            }
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                return readBindingSet();
+            }
+            finished = true;
+            return null;
+        } catch (IOException e) {
+            checkCancelled();
+            throw new QueryEvaluationException(e);
+        }
+    }
+
+    /**
+     * advances parser to the start of results.bindings array, reading head.vars on the way
+     *
+     * @throws IOException
+     */
+    private void readUntilBindings() throws IOException {
+        if (inBindings || finished) {
+            return;
+        }
+        if (parser == null) {
+            parser = jsonFactory.createParser(in);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected SPARQL JSON results, expected object.");
+            }
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("head".equals(field)) {
+                readHead();
+            } else if ("results".equals(field)) {
+                if (seekBindingsArray()) {
+                    if (bindingNames != null) {
+                        inBindings = true;
+                        return;
+                    }
+                    // no head yet, buffer bindings until we have one
+                    bufferBindings();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT && token != null) {
+            throw new IOException("Unexpected SPARQL JSON results token " + token);
+        }
+        if (bindingNames == null) {
+            setBindingNames(new ArrayList<String>());
+        }
+        finished = true;
+        if (buffered != null) {
+            inBindings = true;
+        }
+    }
+
+    /**
+     * reads head object, setting binding names
+     *
+     * @throws IOException
+     */
+    private void readHead() throws IOException {
+        List<String> names = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("vars".equals(field)) {
+                while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                    names.add(parser.getText());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        setBindingNames(names);
+    }
+
+    /**
+     * moves parser inside results.bindings array
+     *
+     * @return true if bindings array was found
+     * @throws IOException
+     */
+    private boolean seekBindingsArray() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("bindings".equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * drains remaining bindings when no head has been read yet
+     *
+     * @throws IOException
+     */
+    private void bufferBindings() throws IOException {
+        List<Map<String, Value>> rows = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Map<String, Value> row = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                row.put(name, readValue());
+                if (!seen.containsKey(name)) {
+                    seen.put(name, names.size());
+                    names.add(name);
+                }
+            }
+            rows.add(row);
+        }
+        // close results object
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        setBindingNames(names);
+        buffered = new LinkedList<>();
+        for (Map<String, Value> row : rows) {
+            Value[] values = new Value[names.size()];
+            for (Map.Entry<String, Value> entry : row.entrySet()) {
+                values[bindingIndex.get(entry.getKey())] = entry.getValue();
+            }
+            buffered.add(new ListBindingSet(bindingNames, values));
+        }
+    }
+
+    /**
+     * reads a single binding set object, parser positioned on START_OBJECT
+     *
+     * @return BindingSet
+     * @throws IOException
+     */
+    private BindingSet readBindingSet() throws IOException {
+        Value[] values = new Value[bindingNames.size()];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            Value value = readValue();
+            Integer idx = bindingIndex.get(name);
+            if (idx != null) {
+                values[idx] = value;
+            }
+        }
+        return new ListBindingSet(bindingNames, values);
+    }
+
+    /**
+     * reads a single RDF term object, parser positioned on START_OBJECT
+     *
+     * @return Value
+     * @throws IOException
+     */
+    private Value readValue() throws IOException {
+        String type = null;
+        String value = null;
+        String lang = null;
+        String datatype = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("type".equals(field)) {
+                type = parser.getText();
+            } else if ("value".equals(field)) {
+                value = parser.getText();
+            } else if ("xml:lang".equals(field)) {
+                lang = parser.getText();
+            } else if ("datatype".equals(field)) {
+                datatype = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (type == null || value == null) {
+            throw new IOException("Unexpected SPARQL JSON results, binding without type or value.");
+        }
+        if ("uri".equals(type)) {
+            return f.createURI(value);
+        } else if ("bnode".equals(type)) {
+            return f.createBNode(value);
+        } else if (lang != null) {
+            return f.createLiteral(value, lang);
+        } else if (datatype != null) {
+            return f.createLiteral(value, f.createURI(datatype));
+        } else {
+            return f.createLiteral(value);
+        }
+    }
+
+    /**
+     * set binding names and index
+     *
+     * @param names
+     */
+    private void setBindingNames(List<String> names) {
+        this.bindingNames = Collections.unmodifiableList(names);
+        this.bindingIndex = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            bindingIndex.put(names.get(i), i);
+        }
+    }
+}
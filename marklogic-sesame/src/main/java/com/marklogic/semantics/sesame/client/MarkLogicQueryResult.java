@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import java.util.concurrent.Future;
+
+/**
+ * query result streamed from MarkLogic that can be cancelled while in flight.
+ *
+ * Tuple and graph results returned from the server implement this interface;
+ * results replayed from a QueryResultCache do not, as they hold no connection.
+ *
+ * @author James Fuller
+ */
+public interface MarkLogicQueryResult {
+
+    /**
+     * aborts the underlying HTTP stream and any background parser; safe to call
+     * from any thread, once cancelled hasNext() and next() throw QueryInterruptedException
+     */
+    void cancel();
+
+    /**
+     * returns true if cancel() has been called
+     *
+     * @return boolean
+     */
+    boolean isCancelled();
+
+    /**
+     * returns phase timings of the request and result, filled in as the result is read
+     *
+     * @return QueryTimings
+     */
+    QueryTimings getTimings();
+
+    /**
+     * cancels timer once the result is closed, so the task enforcing a time limit
+     * does not outlive the result it guards
+     *
+     * @param timer as returned by MarkLogicClient.cancelAfter
+     */
+    void cancelOnClose(Future<?> timer);
+}
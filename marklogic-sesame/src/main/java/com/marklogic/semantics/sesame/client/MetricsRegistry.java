@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.google.common.base.Supplier;
+
+/**
+ * registry metrics are reported to, for plugging MarkLogicClientMetrics into
+ * a metrics library
+ *
+ * Names are dot separated and start with MarkLogicClientMetrics.PREFIX, for
+ * example marklogic.sesame.request.select.latency; implementations must be
+ * thread safe.
+ *
+ * @author James Fuller
+ */
+public interface MetricsRegistry {
+
+    /**
+     * adds delta to counter
+     *
+     * @param name
+     * @param delta
+     */
+    void count(String name, long delta);
+
+    /**
+     * adds value to histogram
+     *
+     * @param name
+     * @param value
+     */
+    void update(String name, long value);
+
+    /**
+     * registers gauge read on demand
+     *
+     * @param name
+     * @param gauge
+     */
+    void gauge(String name, Supplier<? extends Number> gauge);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import java.util.Locale;
+
+/**
+ * types of request MarkLogicClient sends to MarkLogic, as reported by metrics
+ *
+ * @author James Fuller
+ */
+public enum OperationType {
+
+    SELECT,
+    CONSTRUCT,
+    ASK,
+    UPDATE,
+    ADD,
+    REMOVE,
+    CLEAR,
+    OPEN_TRANSACTION,
+    COMMIT,
+    ROLLBACK;
+
+    private final String metricName = name().toLowerCase(Locale.ROOT).replace('_', '-');
+
+    /**
+     * returns name used in metric names, eg. open-transaction
+     *
+     * @return String
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
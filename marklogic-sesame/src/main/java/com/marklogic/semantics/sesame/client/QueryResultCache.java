@@ -0,0 +1,348 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.semantics.SPARQLRuleset;
+import info.aduna.iteration.CloseableIteratorIteration;
+import info.aduna.iteration.Iteration;
+import info.aduna.iteration.UnionIteration;
+import org.openrdf.model.Value;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.TupleQueryResultImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * client side cache of tuple and boolean query results, shared by all
+ * connections of a repository.
+ *
+ * Entries are keyed on query string, bindings, rulesets, constraining query,
+ * includeInferred, base URI and paging; they are evicted least recently used
+ * beyond maxEntries or after ttlMillis. Any write sent through a client using
+ * this cache invalidates all entries; writes made outside the repository are
+ * only picked up once entries expire.
+ *
+ * @author James Fuller
+ */
+public class QueryResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 60000;
+    public static final int DEFAULT_MAX_ROWS = 10000;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int maxRows;
+
+    private final Map<Key, CachedValue> entries;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * constructor with default limits
+     */
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * constructor
+     *
+     * @param maxEntries maximum number of cached results
+     * @param ttlMillis time to live of an entry, 0 or less never expires
+     * @param maxRows tuple results with more rows are not cached
+     */
+    public QueryResultCache(final int maxEntries, long ttlMillis, int maxRows) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.maxRows = maxRows;
+        this.entries = new LinkedHashMap<Key, CachedValue>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedValue> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * removes all entries
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * returns number of cached results
+     *
+     * @return int
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * returns number of lookups answered from cache
+     *
+     * @return long
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * returns number of lookups not answered from cache
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * returns maximum number of cached results
+     *
+     * @return int
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * returns time to live of an entry
+     *
+     * @return long
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns current generation, incremented by every invalidation
+     *
+     * @return long
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * builds cache key
+     *
+     * @return Key
+     */
+    static Key key(String type, String queryString, BindingSet bindings, SPARQLRuleset[] rulesets, QueryDefinition constrainingQueryDef, boolean includeInferred, String baseURI, long start, long pageLength) {
+        Map<String, Value> boundValues = new HashMap<>();
+        if (bindings != null) {
+            for (Binding binding : bindings) {
+                boundValues.put(binding.getName(), binding.getValue());
+            }
+        }
+        List<String> rulesetNames = new ArrayList<>();
+        if (rulesets != null) {
+            for (SPARQLRuleset ruleset : rulesets) {
+                if (ruleset != null) {
+                    rulesetNames.add(ruleset.getName());
+                }
+            }
+        }
+        return new Key(Arrays.asList(type, queryString, boundValues, rulesetNames, includeInferred, baseURI, start, pageLength), constrainingQueryDef);
+    }
+
+    /**
+     * returns replay of cached tuple result or null
+     *
+     * @param key
+     * @return TupleQueryResult
+     */
+    TupleQueryResult getTupleResult(Key key) {
+        Object value = get(key);
+        if (value instanceof TupleEntry) {
+            TupleEntry tuples = (TupleEntry) value;
+            return new TupleQueryResultImpl(tuples.bindingNames, tuples.rows);
+        }
+        return null;
+    }
+
+    /**
+     * reads result, caching it if it fits, and returns an equivalent result to the caller
+     *
+     * @param key
+     * @param generation generation read before the query was sent
+     * @param result
+     * @return TupleQueryResult
+     * @throws QueryEvaluationException
+     */
+    TupleQueryResult cacheTupleResult(Key key, long generation, TupleQueryResult result) throws QueryEvaluationException {
+        List<String> bindingNames = result.getBindingNames();
+        List<BindingSet> rows = new ArrayList<>();
+        while (rows.size() <= maxRows && result.hasNext()) {
+            rows.add(result.next());
+        }
+        if (rows.size() > maxRows) {
+            logger.debug("result exceeds {} rows, not cached", maxRows);
+            @SuppressWarnings("unchecked")
+            UnionIteration<BindingSet, QueryEvaluationException> remaining = new UnionIteration<>(
+                    new CloseableIteratorIteration<BindingSet, QueryEvaluationException>(rows.iterator()),
+                    (Iteration<BindingSet, QueryEvaluationException>) result);
+            return new TupleQueryResultImpl(bindingNames, remaining);
+        }
+        result.close();
+        TupleEntry tuples = new TupleEntry(bindingNames, Collections.unmodifiableList(rows));
+        put(key, generation, tuples);
+        return new TupleQueryResultImpl(bindingNames, tuples.rows);
+    }
+
+    /**
+     * returns cached boolean result or null
+     *
+     * @param key
+     * @return Boolean
+     */
+    Boolean getBooleanResult(Key key) {
+        Object value = get(key);
+        return value instanceof Boolean ? (Boolean) value : null;
+    }
+
+    /**
+     * caches boolean result
+     *
+     * @param key
+     * @param generation generation read before the query was sent
+     * @param result
+     */
+    void cacheBooleanResult(Key key, long generation, boolean result) {
+        put(key, generation, result);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns live value for key
+     *
+     * @param key
+     * @return Object
+     */
+    private Object get(Key key) {
+        synchronized (entries) {
+            CachedValue entry = entries.get(key);
+            if (entry != null && ttlMillis > 0 && System.currentTimeMillis() - entry.created > ttlMillis) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    /**
+     * stores value unless cache was invalidated since generation
+     *
+     * @param key
+     * @param generation
+     * @param value
+     */
+    private void put(Key key, long generation, Object value) {
+        synchronized (entries) {
+            if (generation == this.generation.get()) {
+                entries.put(key, new CachedValue(value));
+            }
+        }
+    }
+
+    /**
+     * cache key, constraining query definitions are compared by identity
+     */
+    static final class Key {
+        private final List<Object> parts;
+        private final QueryDefinition constrainingQueryDef;
+
+        Key(List<Object> parts, QueryDefinition constrainingQueryDef) {
+            this.parts = parts;
+            this.constrainingQueryDef = constrainingQueryDef;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return constrainingQueryDef == other.constrainingQueryDef && parts.equals(other.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * parts.hashCode() + System.identityHashCode(constrainingQueryDef);
+        }
+    }
+
+    private static final class CachedValue {
+        private final long created = System.currentTimeMillis();
+        private final Object value;
+
+        CachedValue(Object value) {
+            this.value = value;
+        }
+    }
+
+    private static final class TupleEntry {
+        private final List<String> bindingNames;
+        private final List<BindingSet> rows;
+
+        TupleEntry(List<String> bindingNames, List<BindingSet> rows) {
+            this.bindingNames = bindingNames;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * phase timings of a streamed query result, for telling whether a slow query
+ * is spent in MarkLogic, on the network, in the parser or in the consumer
+ *
+ * Times are nanoseconds since the request was sent, -1 for phases not
+ * reached yet. The background parser stops reading while its queue is full,
+ * so a slow consumer also delays the last byte; compare the consume phase
+ * before blaming the network.
+ *
+ * @author James Fuller
+ */
+public class QueryTimings {
+
+    /**
+     * derived phases reported to metrics
+     */
+    public enum Phase {
+        /** request sent until response headers arrived; server evaluation and network latency */
+        SERVER,
+        /** response headers until last byte read */
+        TRANSFER,
+        /** last byte read until last result parsed */
+        PARSE,
+        /** last result parsed until result closed */
+        CONSUME;
+
+        private final String metricName = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * returns name used in metric names
+         *
+         * @return String
+         */
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private final OperationType operation;
+    private final MarkLogicClientMetrics metrics;
+
+    private final long sentMillis = System.currentTimeMillis();
+    private final long sentNanos = System.nanoTime();
+
+    private volatile long firstByte = -1;
+    private volatile long lastByte = -1;
+    private volatile long lastResult = -1;
+    private volatile long closed = -1;
+
+    /**
+     * constructor, the request is taken to be sent now
+     *
+     * @param operation
+     * @param metrics phases are reported to once the result is closed, null for none
+     */
+    QueryTimings(OperationType operation, MarkLogicClientMetrics metrics) {
+        this.operation = operation;
+        this.metrics = metrics;
+    }
+
+    /**
+     * returns operation type, null if not known
+     *
+     * @return OperationType
+     */
+    public OperationType getOperation() {
+        return operation;
+    }
+
+    /**
+     * returns wall clock time the request was sent, in milliseconds since the epoch
+     *
+     * @return long
+     */
+    public long getRequestSentMillis() {
+        return sentMillis;
+    }
+
+    /**
+     * returns time until the response headers arrived
+     *
+     * @return long
+     */
+    public long getFirstByteNanos() {
+        return firstByte;
+    }
+
+    /**
+     * returns time until the last byte of the response was read
+     *
+     * @return long
+     */
+    public long getLastByteNanos() {
+        return lastByte;
+    }
+
+    /**
+     * returns time until the last result was parsed
+     *
+     * @return long
+     */
+    public long getLastResultNanos() {
+        return lastResult;
+    }
+
+    /**
+     * returns time until the result was closed
+     *
+     * @return long
+     */
+    public long getClosedNanos() {
+        return closed;
+    }
+
+    /**
+     * returns duration of phase, -1 if it has not ended
+     *
+     * @param phase
+     * @return long
+     */
+    public long getPhaseNanos(Phase phase) {
+        switch (phase) {
+            case SERVER:
+                return firstByte;
+            case TRANSFER:
+                return between(firstByte, lastByte);
+            case PARSE:
+                return between(lastByte, lastResult);
+            default:
+                return between(lastResult, closed);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("QueryTimings[").append(operation);
+        for (Phase phase : Phase.values()) {
+            long nanos = getPhaseNanos(phase);
+            sb.append(", ").append(phase.getMetricName()).append('=');
+            sb.append(nanos < 0 ? "-" : TimeUnit.NANOSECONDS.toMicros(nanos) + "us");
+        }
+        return sb.append(']').toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * records arrival of the response headers
+     */
+    synchronized void firstByte() {
+        if (firstByte < 0) {
+            firstByte = elapsed();
+        }
+    }
+
+    /**
+     * records time the last byte of the response was read
+     *
+     * @param at nanoseconds since the request was sent
+     */
+    synchronized void lastByte(long at) {
+        if (lastByte < 0) {
+            lastByte = at;
+        }
+    }
+
+    /**
+     * records that the last result was parsed
+     */
+    synchronized void lastResult() {
+        if (lastResult < 0) {
+            lastResult = elapsed();
+        }
+    }
+
+    /**
+     * records close of the result, reporting phases to metrics
+     */
+    void closed() {
+        synchronized (this) {
+            if (closed >= 0) {
+                return;
+            }
+            closed = elapsed();
+        }
+        if (metrics != null && operation != null) {
+            metrics.queryCompleted(this);
+        }
+    }
+
+    /**
+     * returns stream recording when its last byte was read
+     *
+     * @param in response stream
+     * @return InputStream
+     */
+    InputStream track(InputStream in) {
+        return new TimedInputStream(in, this);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private long elapsed() {
+        return System.nanoTime() - sentNanos;
+    }
+
+    private static long between(long from, long to) {
+        return from < 0 || to < 0 ? -1 : Math.max(0, to - from);
+    }
+
+    /**
+     * records time of the last read returning data, once the stream ends or is closed;
+     * parsers often stop reading once the document is complete, before seeing the end
+     */
+    private static class TimedInputStream extends FilterInputStream {
+
+        private final QueryTimings timings;
+        private long lastRead = -1;
+
+        TimedInputStream(InputStream in, QueryTimings timings) {
+            super(in);
+            this.timings = timings;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                ended();
+            } else {
+                lastRead = timings.elapsed();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                ended();
+            } else if (n > 0) {
+                lastRead = timings.elapsed();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                ended();
+            }
+        }
+
+        private void ended() {
+            if (lastRead >= 0) {
+                timings.lastByte(lastRead);
+            }
+        }
+    }
+}
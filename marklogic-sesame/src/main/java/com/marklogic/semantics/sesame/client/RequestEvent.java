@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a single request to MarkLogic as reported to a RequestListener
+ *
+ * Byte counts are -1 where they are not known: the response of ASK, updates
+ * and writes is not reported, nor is the request body of a stream that has
+ * not been sent yet. Time to first byte is measured until the response
+ * headers arrived; for SELECT and CONSTRUCT the total time includes reading
+ * the results.
+ *
+ * @author James Fuller
+ */
+public class RequestEvent {
+
+    /**
+     * how a request ended
+     */
+    public enum Outcome {
+        SUCCESS,
+        FAILURE,
+        CANCELLED
+    }
+
+    private final OperationType operation;
+    private final String query;
+    private final long startNanos = System.nanoTime();
+
+    private String queryHash;
+    private volatile long bytesOut = -1;
+    private volatile long bytesIn = -1;
+    private volatile long firstByteNanos = -1;
+    private volatile long totalNanos = -1;
+    private volatile Outcome outcome;
+    private Map<String, Object> attributes;
+
+    /**
+     * constructor
+     *
+     * @param operation
+     * @param query null if the request has no query text
+     */
+    RequestEvent(OperationType operation, String query) {
+        this.operation = operation;
+        this.query = query;
+    }
+
+    /**
+     * returns operation type
+     *
+     * @return OperationType
+     */
+    public OperationType getOperation() {
+        return operation;
+    }
+
+    /**
+     * returns query text sent, null for graph store requests
+     *
+     * @return String
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * returns hex encoded 64 bit murmur3 hash of the query text, for grouping
+     * requests without logging their text; null if there is no query text
+     *
+     * @return String
+     */
+    public synchronized String getQueryHash() {
+        if (queryHash == null && query != null) {
+            queryHash = Hashing.murmur3_128().hashString(query, Charsets.UTF_8).toString().substring(0, 16);
+        }
+        return queryHash;
+    }
+
+    /**
+     * returns bytes sent, -1 if unknown
+     *
+     * @return long
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * returns bytes received, -1 if unknown
+     *
+     * @return long
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * returns nanoseconds until response headers arrived, -1 if they did not
+     *
+     * @return long
+     */
+    public long getTimeToFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * returns nanoseconds until the request completed, -1 while it is running
+     *
+     * @return long
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * returns milliseconds until the request completed, -1 while it is running
+     *
+     * @return long
+     */
+    public long getTotalMillis() {
+        long total = totalNanos;
+        return total < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * returns outcome, null while the request is running
+     *
+     * @return Outcome
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * returns attribute set by a listener, eg. a tracing span set in requestStarted()
+     *
+     * @param name
+     * @return Object
+     */
+    public synchronized Object getAttribute(String name) {
+        return attributes == null ? null : attributes.get(name);
+    }
+
+    /**
+     * sets attribute, for passing state from requestStarted() to requestCompleted()
+     *
+     * @param name
+     * @param value
+     */
+    public synchronized void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+
+    @Override
+    public String toString() {
+        return "RequestEvent[" + operation + ", query=" + getQueryHash() + ", out=" + bytesOut + ", in=" + bytesIn
+                + ", ttfb=" + firstByteNanos + "ns, total=" + totalNanos + "ns, " + outcome + "]";
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    void setBytesOut(long bytesOut) {
+        this.bytesOut = bytesOut;
+    }
+
+    void setBytesIn(long bytesIn) {
+        this.bytesIn = bytesIn;
+    }
+
+    /**
+     * records arrival of the response headers
+     */
+    void firstByte() {
+        this.firstByteNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * records completion
+     *
+     * @param outcome
+     */
+    void complete(Outcome outcome) {
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.outcome = outcome;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * response stream counting bytes read and completing its RequestEvent once
+ * the response has been read to the end or parsed, closed, aborted or failed
+ *
+ * @author James Fuller
+ */
+class RequestInputStream extends FilterInputStream {
+
+    private final RequestEvent event;
+    private final MarkLogicClientImpl client;
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private long count = 0;
+
+    /**
+     * constructor
+     *
+     * @param in
+     * @param event
+     * @param client notifies listener
+     */
+    RequestInputStream(InputStream in, RequestEvent event, MarkLogicClientImpl client) {
+        super(in);
+        this.event = event;
+        this.client = client;
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            int b = super.read();
+            if (b == -1) {
+                complete(RequestEvent.Outcome.SUCCESS);
+            } else {
+                count++;
+            }
+            return b;
+        } catch (IOException e) {
+            complete(RequestEvent.Outcome.FAILURE);
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        try {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                complete(RequestEvent.Outcome.SUCCESS);
+            } else {
+                count += n;
+            }
+            return n;
+        } catch (IOException e) {
+            complete(RequestEvent.Outcome.FAILURE);
+            throw e;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * closes stream, a response closed before its end was read or parsed is reported as cancelled
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete(RequestEvent.Outcome.CANCELLED);
+        }
+    }
+
+    /**
+     * reports a response whose result parser reached the end of the document as
+     * successful, parsers stop there without reading to the end of the stream
+     */
+    void parsed() {
+        complete(RequestEvent.Outcome.SUCCESS);
+    }
+
+    /**
+     * reports a response whose connection was aborted as cancelled
+     */
+    void aborted() {
+        complete(RequestEvent.Outcome.CANCELLED);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void complete(RequestEvent.Outcome outcome) {
+        if (completed.compareAndSet(false, true)) {
+            event.setBytesIn(count);
+            client.requestCompleted(event, outcome);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+/**
+ * listener called around every request MarkLogicClient sends to MarkLogic,
+ * for plugging in tracing or slow query logging
+ *
+ * Both methods are called on the thread sending the request, except that
+ * requestCompleted() of a SELECT or CONSTRUCT is called once its results
+ * have been read, from the thread reading them. Listeners must be thread
+ * safe and should return quickly; exceptions they throw are logged and
+ * ignored.
+ *
+ * @author James Fuller
+ */
+public interface RequestListener {
+
+    /**
+     * called before a request is sent
+     *
+     * @param event
+     */
+    void requestStarted(RequestEvent event);
+
+    /**
+     * called once a request has completed, failed or been cancelled
+     *
+     * @param event
+     */
+    void requestCompleted(RequestEvent event);
+}
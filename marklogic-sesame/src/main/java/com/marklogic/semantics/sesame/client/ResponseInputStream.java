@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.http.conn.ConnectionReleaseTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * response stream returned by MarkLogicClientImpl, keeping hold of the HTTP
+ * response it reads so the request can be aborted without reading the rest
+ *
+ * @author James Fuller
+ */
+class ResponseInputStream extends FilterInputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseInputStream.class);
+
+    private final InputStream response;
+    private final RequestInputStream request;
+
+    /**
+     * constructor
+     *
+     * @param body stream read by callers, wrapping response
+     * @param response stream of the HTTP response
+     * @param request counting stream to report as cancelled on abort, null if there is none
+     */
+    ResponseInputStream(InputStream body, InputStream response, RequestInputStream request) {
+        super(body);
+        this.response = response;
+        this.request = request;
+    }
+
+    /**
+     * reports the request as successful once its result has been parsed
+     */
+    void parsed() {
+        if (request != null) {
+            request.parsed();
+        }
+    }
+
+    /**
+     * aborts the HTTP connection, or closes the response when it is not connection backed
+     */
+    void abort() {
+        if (request != null) {
+            request.aborted();
+        }
+        try {
+            if (response instanceof ConnectionReleaseTrigger) {
+                ((ConnectionReleaseTrigger) response).abortConnection();
+            } else {
+                response.close();
+            }
+        } catch (IOException e) {
+            logger.debug("abort() stream closed exception", e);
+        }
+    }
+}
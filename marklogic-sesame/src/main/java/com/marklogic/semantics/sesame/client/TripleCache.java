@@ -58,6 +58,7 @@ public abstract class TripleCache extends TimerTask {
 
     public static final long DEFAULT_CACHE_MILLIS = 800;
     public static final long DEFAULT_INITIAL_DELAY = 50;
+    public static final long DEFAULT_IDLE_MILLIS = 30000;
 
     protected RDFFormat format = RDFFormat.NQUADS;
 
@@ -67,6 +68,15 @@ public abstract class TripleCache extends TimerTask {
 
     protected Date lastCacheAccess = new Date();
 
+    protected long idleMillis = DEFAULT_IDLE_MILLIS;
+
+    private long lastAdd = System.currentTimeMillis();
+
+    // statements waiting to be flushed, readable without the cache lock
+    private volatile int depth = 0;
+
+    private MarkLogicClientMetrics metrics;
+
     /**
      * constructor
      *
@@ -124,30 +134,103 @@ public abstract class TripleCache extends TimerTask {
     }
 
     /**
-     * tests to see if we should flush cache
+     * getter idleMillis
+     *
+     * @return
+     */
+    public long getIdleMillis() {
+        return idleMillis;
+    }
+
+    /**
+     * setter idleMillis, time without adds after which an empty cache is stopped, 0 or less never
+     *
+     * @param idleMillis
+     */
+    public void setIdleMillis(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * returns number of statements waiting to be flushed
+     *
+     * @return int
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * sets metrics recording flushes and depth of this cache, null for none
+     *
+     * @param metrics
+     */
+    public synchronized void setMetrics(MarkLogicClientMetrics metrics) {
+        if (this.metrics != null) {
+            this.metrics.cacheStopped(this);
+        }
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.cacheStarted(this);
+        }
+    }
+
+    /**
+     * cancels timer task and stops recording metrics
      *
+     * @return boolean
      */
     @Override
-    public synchronized void run(){
-        Date now = new Date();
-        if ( !cache.isEmpty() &&
-                ((cache.size() > cacheSize - 1) || (now.getTime() - lastCacheAccess.getTime() > cacheMillis))) {
-            try {
-                flush();
-            } catch (RepositoryException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (MalformedQueryException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (UpdateExecutionException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (IOException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
+    public boolean cancel() {
+        MarkLogicClientMetrics current;
+        synchronized (this) {
+            current = this.metrics;
+        }
+        if (current != null) {
+            current.cacheStopped(this);
+        }
+        return super.cancel();
+    }
+
+    /**
+     * tests to see if we should flush cache, stopping it once it has been idle for idleMillis
+     *
+     */
+    @Override
+    public void run(){
+        synchronized (this) {
+            Date now = new Date();
+            if ( !cache.isEmpty() &&
+                    ((cache.size() > cacheSize - 1) || (now.getTime() - lastCacheAccess.getTime() > cacheMillis))) {
+                try {
+                    recordFlush();
+                } catch (RepositoryException e) {
+                    log.error(e.getLocalizedMessage());
+                    throw new RuntimeException(e);
+                } catch (MalformedQueryException e) {
+                    log.error(e.getLocalizedMessage());
+                    throw new RuntimeException(e);
+                } catch (UpdateExecutionException e) {
+                    log.error(e.getLocalizedMessage());
+                    throw new RuntimeException(e);
+                } catch (IOException e) {
+                    log.error(e.getLocalizedMessage());
+                    throw new RuntimeException(e);
+                }
             }
         }
+        if (isIdle()) {
+            client.stopIdleCache(this);
+        }
+    }
+
+    /**
+     * returns true if cache is empty and nothing was added for idleMillis
+     *
+     * @return boolean
+     */
+    public synchronized boolean isIdle() {
+        return idleMillis > 0 && cache.isEmpty() && System.currentTimeMillis() - lastAdd > idleMillis;
     }
 
     protected abstract void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException;
@@ -161,7 +244,7 @@ public abstract class TripleCache extends TimerTask {
         log.debug(String.valueOf(cache.size()));
         if( !cache.isEmpty()) {
             try {
-                flush();
+                recordFlush();
             } catch (RepositoryException e) {
                 throw new MarkLogicSesameException("Could not flush write cache, encountered repository issue.",e);
             } catch (MalformedQueryException e) {
@@ -183,10 +266,39 @@ public abstract class TripleCache extends TimerTask {
      * @param contexts
      */
     public synchronized void add(Resource subject, URI predicate, Value object, Resource... contexts) throws MarkLogicSesameException {
+        lastAdd = System.currentTimeMillis();
         cache.add(subject,predicate,object,contexts);
+        depth = cache.size();
         if( cache.size() > cacheSize - 1){
             forceRun();
         }
     }
 
-}
\ No newline at end of file
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * flushes cache, recording flush size or failure in metrics and invalidating cached
+     * query results once the flush is done; caller holds the cache lock
+     *
+     * @throws RepositoryException
+     * @throws MalformedQueryException
+     * @throws UpdateExecutionException
+     * @throws IOException
+     */
+    private void recordFlush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
+        int size = cache.size();
+        boolean success = false;
+        try {
+            flush();
+            success = true;
+        } finally {
+            depth = cache.size();
+            client.invalidateCache();
+            if (metrics != null) {
+                metrics.cacheFlushed(this, size, success);
+            }
+        }
+    }
+}
@@ -95,10 +95,11 @@ public class TripleDeleteCache extends TripleCache {
         }
 
         entireQuery.append("} ");
-        log.info(entireQuery.toString());
-        client.sendUpdateQuery(entireQuery.toString(),bindingSet,false,null);
+        String query = entireQuery.toString();
+        log.debug("flushing delete cache: {} statements, {} chars", cache.size(), query.length());
+        log.trace(query);
+        client.sendCacheFlush(query,bindingSet);
         lastCacheAccess = new Date();
-        //log.info("success writing cache: {}",String.valueOf(cache.size()));
         cache.clear();
 
     }
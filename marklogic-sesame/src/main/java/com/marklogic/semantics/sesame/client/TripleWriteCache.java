@@ -115,8 +115,10 @@ public class TripleWriteCache extends TripleCache {
         }
 
         entireQuery.append("} ");
-        log.debug(entireQuery.toString());
-        client.sendUpdateQuery(entireQuery.toString(),bindingSet,false,null);
+        String query = entireQuery.toString();
+        log.debug("flushing write cache: {} statements, {} chars", cache.size(), query.length());
+        log.trace(query);
+        client.sendCacheFlush(query,bindingSet);
         lastCacheAccess = new Date();
         log.debug("success writing cache: {}",String.valueOf(cache.size()));
         cache.clear();
@@ -19,7 +19,9 @@
  */
 package com.marklogic.semantics.sesame.config;
 
+import com.marklogic.semantics.sesame.client.HttpTransportSettings;
 import org.openrdf.model.Graph;
+import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
@@ -49,6 +51,27 @@ public class MarkLogicRepositoryConfig extends RepositoryImplConfigBase {
     public static final URI UPDATE_ENDPOINT = new URIImpl(
             "http://www.marklogic.com/v1/graphs");
 
+    public static final URI MAX_CONNECTIONS = new URIImpl(
+            "http://www.marklogic.com/transport/maxConnections");
+
+    public static final URI MAX_CONNECTIONS_PER_ROUTE = new URIImpl(
+            "http://www.marklogic.com/transport/maxConnectionsPerRoute");
+
+    public static final URI CONNECT_TIMEOUT = new URIImpl(
+            "http://www.marklogic.com/transport/connectTimeoutMillis");
+
+    public static final URI SOCKET_TIMEOUT = new URIImpl(
+            "http://www.marklogic.com/transport/socketTimeoutMillis");
+
+    public static final URI SOCKET_BUFFER_SIZE = new URIImpl(
+            "http://www.marklogic.com/transport/socketBufferSize");
+
+    public static final URI TCP_NO_DELAY = new URIImpl(
+            "http://www.marklogic.com/transport/tcpNoDelay");
+
+    public static final URI KEEP_ALIVE = new URIImpl(
+            "http://www.marklogic.com/transport/keepAliveMillis");
+
 	private String queryEndpointUrl;
 	private String updateEndpointUrl;
 
@@ -58,6 +81,14 @@ public class MarkLogicRepositoryConfig extends RepositoryImplConfigBase {
 	private String password;
 	private String auth;
 
+	private Integer maxConnections;
+	private Integer maxConnectionsPerRoute;
+	private Integer connectTimeoutMillis;
+	private Integer socketTimeoutMillis;
+	private Integer socketBufferSize;
+	private Boolean tcpNoDelay;
+	private Long keepAliveMillis;
+
     /**
 	 * base constructor
 	 */
@@ -183,6 +214,104 @@ public class MarkLogicRepositoryConfig extends RepositoryImplConfigBase {
 		this.updateEndpointUrl = url;
 	}
 	
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for HTTP connection pool size, null for default
+	 *
+	 */
+	public Integer getMaxConnections() {
+		return maxConnections;
+	}
+	public void setMaxConnections(Integer maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for HTTP connections to the MarkLogic host, null for default
+	 *
+	 */
+	public Integer getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+	public void setMaxConnectionsPerRoute(Integer maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for HTTP connect timeout, null for default
+	 *
+	 */
+	public Integer getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+	public void setConnectTimeoutMillis(Integer connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for HTTP socket read timeout, null for default
+	 *
+	 */
+	public Integer getSocketTimeoutMillis() {
+		return socketTimeoutMillis;
+	}
+	public void setSocketTimeoutMillis(Integer socketTimeoutMillis) {
+		this.socketTimeoutMillis = socketTimeoutMillis;
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for HTTP socket buffer size, null for default
+	 *
+	 */
+	public Integer getSocketBufferSize() {
+		return socketBufferSize;
+	}
+	public void setSocketBufferSize(Integer socketBufferSize) {
+		this.socketBufferSize = socketBufferSize;
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for TCP_NODELAY, null for default
+	 *
+	 */
+	public Boolean getTcpNoDelay() {
+		return tcpNoDelay;
+	}
+	public void setTcpNoDelay(Boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for maximum HTTP keep-alive, null for default
+	 *
+	 */
+	public Long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
+	public void setKeepAliveMillis(Long keepAliveMillis) {
+		this.keepAliveMillis = keepAliveMillis;
+	}
+
+	/**
+	 * returns HTTP transport settings, null if none are configured
+	 *
+	 * @return HttpTransportSettings
+	 */
+	public HttpTransportSettings getHttpTransportSettings() {
+		if (maxConnections == null && maxConnectionsPerRoute == null && connectTimeoutMillis == null
+				&& socketTimeoutMillis == null && socketBufferSize == null && tcpNoDelay == null && keepAliveMillis == null) {
+			return null;
+		}
+		HttpTransportSettings settings = new HttpTransportSettings();
+		settings.setMaxConnections(maxConnections);
+		settings.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		settings.setConnectTimeoutMillis(connectTimeoutMillis);
+		settings.setSocketTimeoutMillis(socketTimeoutMillis);
+		settings.setSocketBufferSize(socketBufferSize);
+		settings.setTcpNoDelay(tcpNoDelay);
+		settings.setKeepAliveMillis(keepAliveMillis);
+		return settings;
+	}
+
 	@Override
 	/**
 	 * validate configuration
@@ -212,6 +341,27 @@ public class MarkLogicRepositoryConfig extends RepositoryImplConfigBase {
 		if (getUpdateEndpointUrl() != null) {
 			graph.add(implNode, UPDATE_ENDPOINT, vf.createURI(getUpdateEndpointUrl()));
 		}
+		if (getMaxConnections() != null) {
+			graph.add(implNode, MAX_CONNECTIONS, vf.createLiteral(getMaxConnections()));
+		}
+		if (getMaxConnectionsPerRoute() != null) {
+			graph.add(implNode, MAX_CONNECTIONS_PER_ROUTE, vf.createLiteral(getMaxConnectionsPerRoute()));
+		}
+		if (getConnectTimeoutMillis() != null) {
+			graph.add(implNode, CONNECT_TIMEOUT, vf.createLiteral(getConnectTimeoutMillis()));
+		}
+		if (getSocketTimeoutMillis() != null) {
+			graph.add(implNode, SOCKET_TIMEOUT, vf.createLiteral(getSocketTimeoutMillis()));
+		}
+		if (getSocketBufferSize() != null) {
+			graph.add(implNode, SOCKET_BUFFER_SIZE, vf.createLiteral(getSocketBufferSize()));
+		}
+		if (getTcpNoDelay() != null) {
+			graph.add(implNode, TCP_NO_DELAY, vf.createLiteral(getTcpNoDelay()));
+		}
+		if (getKeepAliveMillis() != null) {
+			graph.add(implNode, KEEP_ALIVE, vf.createLiteral(getKeepAliveMillis()));
+		}
 
 		return implNode;
 	}
@@ -236,7 +386,36 @@ public class MarkLogicRepositoryConfig extends RepositoryImplConfigBase {
 			if (uri != null) {
 				setUpdateEndpointUrl(uri.stringValue());
 			}
-		} catch (GraphUtilException e) {
+
+			Literal lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, MAX_CONNECTIONS);
+			if (lit != null) {
+				setMaxConnections(lit.intValue());
+			}
+			lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, MAX_CONNECTIONS_PER_ROUTE);
+			if (lit != null) {
+				setMaxConnectionsPerRoute(lit.intValue());
+			}
+			lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, CONNECT_TIMEOUT);
+			if (lit != null) {
+				setConnectTimeoutMillis(lit.intValue());
+			}
+			lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, SOCKET_TIMEOUT);
+			if (lit != null) {
+				setSocketTimeoutMillis(lit.intValue());
+			}
+			lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, SOCKET_BUFFER_SIZE);
+			if (lit != null) {
+				setSocketBufferSize(lit.intValue());
+			}
+			lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, TCP_NO_DELAY);
+			if (lit != null) {
+				setTcpNoDelay(lit.booleanValue());
+			}
+			lit = GraphUtil.getOptionalObjectLiteral(graph, implNode, KEEP_ALIVE);
+			if (lit != null) {
+				setKeepAliveMillis(lit.longValue());
+			}
+		} catch (GraphUtilException | IllegalArgumentException e) {
 			throw new RepositoryConfigException(e.getMessage(), e);
 		}
 	}
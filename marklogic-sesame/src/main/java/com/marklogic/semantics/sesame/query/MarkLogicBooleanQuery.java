@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.sesame.query;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
@@ -34,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * boolean query
@@ -64,9 +66,67 @@ public class MarkLogicBooleanQuery extends MarkLogicQuery implements BooleanQuer
      */
     @Override
     public boolean evaluate() throws QueryEvaluationException {
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindings();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        return withTimeLimit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws QueryEvaluationException {
+                return sendBooleanQuery(queryString, bindings, includeInferred, baseURI);
+            }
+        });
+    }
+
+    /**
+     * evaluate boolean query on the async executor
+     *
+     * pending writes are flushed and query state captured before returning
+     *
+     * @return ListenableFuture of Boolean
+     * @throws QueryEvaluationException
+     */
+    public ListenableFuture<Boolean> evaluateAsync() throws QueryEvaluationException {
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindingsSnapshot();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws QueryEvaluationException {
+                return sendBooleanQuery(queryString, bindings, includeInferred, baseURI);
+            }
+        });
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * flush pending writes
+     *
+     * @throws QueryEvaluationException
+     */
+    private void syncWrites() throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendBooleanQuery(getQueryString(), getBindings(), getIncludeInferred(),getBaseURI());
+        } catch (MarkLogicSesameException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * send boolean query
+     *
+     * @return boolean
+     * @throws QueryEvaluationException
+     */
+    private boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws QueryEvaluationException {
+        try {
+            return getMarkLogicClient().sendBooleanQuery(queryString, bindings, includeInferred, baseURI);
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.sesame.query;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
@@ -29,12 +30,15 @@ import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.query.QueryResults;
 import org.openrdf.repository.sparql.query.SPARQLQueryBindingSet;
+import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
 
 /**
  * graph query
@@ -66,14 +70,43 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
     @Override
     public GraphQueryResult evaluate()
             throws QueryEvaluationException {
-        try {
-            sync();
-            return getMarkLogicClient().sendGraphQuery(getQueryString(),getBindings(),getIncludeInferred(),getBaseURI());
-        } catch (IOException e) {
-            throw new QueryEvaluationException(e);
-        } catch (MarkLogicSesameException e) {
-            throw new QueryEvaluationException(e);
-        }
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindings();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        final boolean pullParsing = isPullParsing();
+        return withTimeLimit(new Callable<GraphQueryResult>() {
+            @Override
+            public GraphQueryResult call() throws QueryEvaluationException {
+                return sendGraphQuery(queryString, bindings, includeInferred, baseURI, pullParsing);
+            }
+        });
+    }
+
+    /**
+     * evaluate graph query on the async executor
+     *
+     * pending writes are flushed and query state captured before returning,
+     * a maximum execution time cancels the result if not consumed in time
+     *
+     * @return ListenableFuture of GraphQueryResult
+     * @throws QueryEvaluationException
+     */
+    public ListenableFuture<GraphQueryResult> evaluateAsync() throws QueryEvaluationException {
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindingsSnapshot();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        final boolean pullParsing = isPullParsing();
+        final long deadline = getDeadline();
+        return submit(new Callable<GraphQueryResult>() {
+            @Override
+            public GraphQueryResult call() throws QueryEvaluationException {
+                return cancelAtDeadline(sendGraphQuery(queryString, bindings, includeInferred, baseURI, pullParsing), deadline);
+            }
+        });
     }
 
     /**
@@ -91,4 +124,57 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
             QueryResults.report(queryResult, resultHandler);
         }
     }
+
+    /**
+     * evaluate graph query, copying results serialized by MarkLogic in dataFormat
+     * straight to out without parsing them into statements
+     *
+     * @param out not closed
+     * @param dataFormat N-Triples, Turtle, RDF/XML, RDF/JSON or N3
+     * @return number of bytes written
+     * @throws QueryEvaluationException
+     */
+    public long evaluate(OutputStream out, RDFFormat dataFormat) throws QueryEvaluationException {
+        syncWrites();
+        try {
+            return getMarkLogicClient().sendGraphQuery(getQueryString(false), getBindings(), getIncludeInferred(), getBaseURI(), dataFormat, out);
+        } catch (IOException e) {
+            throw new QueryEvaluationException(e);
+        } catch (MarkLogicSesameException e) {
+            throw new QueryEvaluationException(e);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * flush pending writes
+     *
+     * @throws QueryEvaluationException
+     */
+    private void syncWrites() throws QueryEvaluationException {
+        try {
+            sync();
+        } catch (MarkLogicSesameException e) {
+            throw new QueryEvaluationException(e);
+        }
+    }
+
+    /**
+     * send graph query
+     *
+     * @return GraphQueryResult
+     * @throws QueryEvaluationException
+     */
+    private GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, boolean pullParsing) throws QueryEvaluationException {
+        try {
+            return getMarkLogicClient().sendGraphQuery(queryString, bindings, includeInferred, baseURI, pullParsing);
+        } catch (IOException e) {
+            throw new QueryEvaluationException(e);
+        } catch (MarkLogicSesameException e) {
+            throw new QueryEvaluationException(e);
+        }
+    }
 }
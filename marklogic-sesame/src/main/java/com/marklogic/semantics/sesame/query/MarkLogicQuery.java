@@ -19,22 +19,37 @@
  */
 package com.marklogic.semantics.sesame.query;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.sesame.MarkLogicSesameException;
 import com.marklogic.semantics.sesame.client.MarkLogicClient;
 import com.marklogic.semantics.sesame.client.MarkLogicClientDependent;
+import com.marklogic.semantics.sesame.client.MarkLogicQueryResult;
 import org.openrdf.model.Value;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.Binding;
 import org.openrdf.query.Dataset;
 import org.openrdf.query.Query;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
 import org.openrdf.query.impl.AbstractQuery;
 import org.openrdf.repository.sparql.query.QueryStringUtil;
 import org.openrdf.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * base query class
  *
@@ -54,6 +69,20 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
 
     private boolean includeInferred;
 
+    private Boolean pullParsing;
+
+    private Boolean limitBounded;
+
+    private int maxExecutionTime = 0;
+
+    /**
+     * queries with a LIMIT up to this value parse results on the calling thread
+     * unless pull parsing has been explicitly set
+     */
+    public static final long PULL_PARSING_MAX_LIMIT = 1000;
+
+    private static final Pattern TRAILING_LIMIT = Pattern.compile("\\bLIMIT\\s+(\\d+)\\s*(?:OFFSET\\s+\\d+\\s*)?$", Pattern.CASE_INSENSITIVE);
+
     /**
      * constructor
      *
@@ -100,7 +129,23 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      * @return
      */
     public String getQueryString() {
-        return QueryStringUtil.getQueryString(this.queryString, getBindings());
+        return getQueryString(true);
+    }
+
+    /**
+     * gets the query string, with bindings inlined or as originally set
+     *
+     * evaluation sends the query string without inlined bindings, passing
+     * bindings to the server so parameterized queries share a query plan
+     *
+     * @param includeBindings
+     * @return
+     */
+    public String getQueryString(boolean includeBindings) {
+        if (includeBindings) {
+            return QueryStringUtil.getQueryString(this.queryString, getBindings());
+        }
+        return this.queryString;
     }
 
     /**
@@ -110,6 +155,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     public void setQueryString(String queryString) {
         this.queryString = queryString;
+        this.limitBounded = null;
     }
 
     /**
@@ -190,6 +236,46 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
         return this.includeInferred;
     }
 
+    /**
+     * set true to parse results incrementally on the calling thread, false to
+     * always use a background parser thread
+     *
+     * if never set, LIMIT bounded queries are pull parsed automatically
+     *
+     * @param pullParsing
+     */
+    public void setPullParsing(boolean pullParsing) {
+        this.pullParsing = pullParsing;
+    }
+
+    /**
+     * return true if results will be parsed on the calling thread
+     *
+     * @return boolean
+     */
+    public boolean isPullParsing() {
+        if (pullParsing != null) {
+            return pullParsing;
+        }
+        if (limitBounded == null) {
+            limitBounded = isLimitBounded(this.queryString, PULL_PARSING_MAX_LIMIT);
+        }
+        return limitBounded;
+    }
+
+    /**
+     * return true if results will be parsed on the calling thread for the supplied page length
+     *
+     * @param pageLength
+     * @return boolean
+     */
+    protected boolean isPullParsing(long pageLength) {
+        if (pullParsing == null && pageLength > 0 && pageLength <= PULL_PARSING_MAX_LIMIT) {
+            return true;
+        }
+        return isPullParsing();
+    }
+
     /**
      * implemented to honor interface
      *
@@ -210,21 +296,27 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     }
 
     /**
-     * sets maximum execution time for query
+     * sets maximum execution time for query, in seconds, 0 or less for no limit
+     *
+     * the limit covers sending the query and reading its results; once it
+     * expires the HTTP stream is aborted, which ends the request on MarkLogic,
+     * and evaluation or iteration throws QueryInterruptedException
      *
      * @param maxExecTime
      */
     @Override
     public void setMaxExecutionTime(int maxExecTime) {
+        this.maxExecutionTime = maxExecTime;
     }
 
     /**
+     * returns maximum execution time for query, in seconds
      *
      * @return int
      */
     @Override
     public int getMaxExecutionTime() {
-        return 0;
+        return this.maxExecutionTime;
     }
 
     /**
@@ -303,4 +395,149 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     protected void sync() throws MarkLogicSesameException {
         getMarkLogicClient().sync();
     }
+
+    /**
+     * copy of current bindings, so later changes to this query do not affect a submitted evaluation
+     *
+     * @return SPARQLQueryBindingSet
+     */
+    protected SPARQLQueryBindingSet getBindingsSnapshot() {
+        SPARQLQueryBindingSet copy = new SPARQLQueryBindingSet();
+        for (Binding binding : getBindings()) {
+            copy.addBinding(binding);
+        }
+        return copy;
+    }
+
+    /**
+     * runs task on the client's async executor
+     *
+     * @param task
+     * @return ListenableFuture
+     */
+    protected <T> ListenableFuture<T> submit(Callable<T> task) {
+        return getMarkLogicClient().submit(task);
+    }
+
+    /**
+     * returns deadline in milliseconds for an evaluation starting now, 0 if there is no time limit
+     *
+     * @return long
+     */
+    protected long getDeadline() {
+        return maxExecutionTime > 0 ? System.currentTimeMillis() + maxExecutionTime * 1000L : 0;
+    }
+
+    /**
+     * runs task on the calling thread, or if a maximum execution time is set on the
+     * async executor, giving up when the time limit expires; a streamed result is
+     * cancelled if not consumed before the time limit
+     *
+     * when the time limit expires first the request is cancelled too: a task still queued
+     * never runs, a running task is interrupted and a result arriving late is cancelled
+     *
+     * @param task
+     * @return T
+     * @throws QueryEvaluationException
+     */
+    protected <T> T withTimeLimit(final Callable<T> task) throws QueryEvaluationException {
+        long deadline = getDeadline();
+        if (deadline == 0) {
+            return call(task);
+        }
+        final AtomicBoolean expired = new AtomicBoolean(false);
+        ListenableFuture<T> future = submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                T result = task.call();
+                if (expired.get() && result instanceof MarkLogicQueryResult) {
+                    ((MarkLogicQueryResult) result).cancel();
+                }
+                return result;
+            }
+        });
+        try {
+            return cancelAtDeadline(future.get(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS), deadline);
+        } catch (TimeoutException e) {
+            expired.set(true);
+            future.cancel(true);
+            Futures.addCallback(future, new FutureCallback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    if (result instanceof MarkLogicQueryResult) {
+                        ((MarkLogicQueryResult) result).cancel();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    logger.debug("query failed after maximum execution time", t);
+                }
+            });
+            throw new QueryInterruptedException("Query exceeded maximum execution time of " + maxExecutionTime + " seconds.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryInterruptedException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryEvaluationException) {
+                throw (QueryEvaluationException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new QueryEvaluationException(e.getCause());
+        }
+    }
+
+    /**
+     * schedules cancellation of a streamed result at deadline
+     *
+     * @param result
+     * @param deadline as returned by getDeadline(), 0 for no time limit
+     * @return result
+     */
+    protected <T> T cancelAtDeadline(T result, long deadline) {
+        if (deadline > 0 && result instanceof MarkLogicQueryResult) {
+            getMarkLogicClient().cancelAfter((MarkLogicQueryResult) result, deadline - System.currentTimeMillis());
+        }
+        return result;
+    }
+
+    /**
+     * tests if query ends with a LIMIT no larger than max
+     *
+     * @param queryString
+     * @param max
+     * @return boolean
+     */
+    static boolean isLimitBounded(String queryString, long max) {
+        if (queryString == null) {
+            return false;
+        }
+        Matcher m = TRAILING_LIMIT.matcher(queryString);
+        if (m.find()) {
+            try {
+                return Long.parseLong(m.group(1)) <= max;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * runs task on the calling thread
+     *
+     * @param task
+     * @return T
+     * @throws QueryEvaluationException
+     */
+    private static <T> T call(Callable<T> task) throws QueryEvaluationException {
+        try {
+            return task.call();
+        } catch (QueryEvaluationException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new QueryEvaluationException(e);
+        }
+    }
 }
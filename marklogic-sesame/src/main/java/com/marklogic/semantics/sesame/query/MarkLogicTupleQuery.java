@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.sesame.query;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
@@ -32,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * tuple query
@@ -76,18 +78,57 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
      * @return TupleQueryResult
      * @throws QueryEvaluationException
      */
-    public TupleQueryResult evaluate(long start, long pageLength)
+    public TupleQueryResult evaluate(final long start, final long pageLength)
             throws QueryEvaluationException {
-        try {
-            sync();
-            return getMarkLogicClient().sendTupleQuery(getQueryString(), getBindings(), start, pageLength, getIncludeInferred(), getBaseURI());
-        }catch (RepositoryException e) {
-            throw new QueryEvaluationException(e.getMessage(), e);
-        }catch (MalformedQueryException e) {
-            throw new QueryEvaluationException(e.getMessage(), e);
-        }catch(FailedRequestException e){
-            throw new QueryEvaluationException(e.getMessage(), e);
-        }
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindings();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        final boolean pullParsing = isPullParsing(pageLength);
+        return withTimeLimit(new Callable<TupleQueryResult>() {
+            @Override
+            public TupleQueryResult call() throws QueryEvaluationException {
+                return sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, pullParsing);
+            }
+        });
+    }
+
+    /**
+     * evaluate tuple query on the async executor
+     *
+     * @return ListenableFuture of TupleQueryResult
+     * @throws QueryEvaluationException
+     */
+    public ListenableFuture<TupleQueryResult> evaluateAsync() throws QueryEvaluationException {
+        return evaluateAsync(this.start, this.pageLength);
+    }
+
+    /**
+     * evaluate tuple query with pagination on the async executor
+     *
+     * pending writes are flushed and query state captured before returning,
+     * a maximum execution time cancels the result if not consumed in time
+     *
+     * @param start
+     * @param pageLength
+     * @return ListenableFuture of TupleQueryResult
+     * @throws QueryEvaluationException
+     */
+    public ListenableFuture<TupleQueryResult> evaluateAsync(final long start, final long pageLength) throws QueryEvaluationException {
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindingsSnapshot();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        final boolean pullParsing = isPullParsing(pageLength);
+        final long deadline = getDeadline();
+        return submit(new Callable<TupleQueryResult>() {
+            @Override
+            public TupleQueryResult call() throws QueryEvaluationException {
+                return cancelAtDeadline(sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, pullParsing), deadline);
+            }
+        });
     }
 
     /**
@@ -126,4 +167,40 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
         }
         queryResult.close();
     }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * flush pending writes
+     *
+     * @throws QueryEvaluationException
+     */
+    private void syncWrites() throws QueryEvaluationException {
+        try {
+            sync();
+        } catch (MarkLogicSesameException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * send tuple query
+     *
+     * @return TupleQueryResult
+     * @throws QueryEvaluationException
+     */
+    private TupleQueryResult sendTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, boolean pullParsing)
+            throws QueryEvaluationException {
+        try {
+            return getMarkLogicClient().sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, pullParsing);
+        }catch (RepositoryException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }catch (MalformedQueryException e) {
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }catch(FailedRequestException e){
+            throw new QueryEvaluationException(e.getMessage(), e);
+        }
+    }
 }
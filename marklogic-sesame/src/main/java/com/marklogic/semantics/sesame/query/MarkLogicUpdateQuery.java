@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.sesame.query;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.ForbiddenUserException;
 import com.marklogic.client.semantics.GraphPermissions;
@@ -35,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * update query
@@ -64,9 +66,58 @@ public class MarkLogicUpdateQuery extends MarkLogicQuery implements Update,MarkL
      */
     @Override
     public void execute() throws UpdateExecutionException {
+        syncWrites();
+        sendUpdateQuery(getQueryString(false), getBindings(), getIncludeInferred(), getBaseURI());
+    }
+
+    /**
+     * execute update query on the async executor
+     *
+     * pending writes are flushed and query state captured before returning
+     *
+     * @return ListenableFuture completing when the update has executed
+     * @throws UpdateExecutionException
+     */
+    public ListenableFuture<Void> executeAsync() throws UpdateExecutionException {
+        syncWrites();
+        final String queryString = getQueryString(false);
+        final SPARQLQueryBindingSet bindings = getBindingsSnapshot();
+        final boolean includeInferred = getIncludeInferred();
+        final String baseURI = getBaseURI();
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws UpdateExecutionException {
+                sendUpdateQuery(queryString, bindings, includeInferred, baseURI);
+                return null;
+            }
+        });
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * flush pending writes
+     *
+     * @throws UpdateExecutionException
+     */
+    private void syncWrites() throws UpdateExecutionException {
         try {
             sync();
-            getMarkLogicClient().sendUpdateQuery(getQueryString(), getBindings(), getIncludeInferred(), getBaseURI());
+        } catch (MarkLogicSesameException e) {
+            throw new UpdateExecutionException(e);
+        }
+    }
+
+    /**
+     * send update query
+     *
+     * @throws UpdateExecutionException
+     */
+    private void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws UpdateExecutionException {
+        try {
+            getMarkLogicClient().sendUpdateQuery(queryString, bindings, includeInferred, baseURI);
         }catch(ForbiddenUserException | FailedRequestException e){
             throw new UpdateExecutionException(e);
         } catch (RepositoryException e) {
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame;
+
+import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import com.marklogic.semantics.sesame.standin.StandInServer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.openrdf.sail.inferencer.InferencerConnection;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * test GraphExport
+ *
+ * @author James Fuller
+ */
+public class GraphExportTest {
+
+    private final ValueFactory f = ValueFactoryImpl.getInstance();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFileName() {
+        Assert.assertEquals("http%3A%2F%2Fmarklogic.com%2Ftest%2Fcontext1.nt.gz",
+                GraphExport.fileName(f.createURI("http://marklogic.com/test/context1")));
+        Assert.assertEquals("http%3A%2F%2Fmarklogic.com%2Fsemantics%23default-graph.nt.gz",
+                GraphExport.fileName(f.createURI(MarkLogicClient.DEFAULT_GRAPH_URI)));
+    }
+
+    @Test
+    public void testFileNameOfLongGraph() {
+        StringBuilder sb = new StringBuilder("http://marklogic.com/test/");
+        for (int i = 0; i < 300; i++) {
+            sb.append('a');
+        }
+        String name = GraphExport.fileName(f.createURI(sb.toString()));
+        Assert.assertEquals(40 + GraphExport.NTRIPLES_GZIP_SUFFIX.length(), name.length());
+        Assert.assertEquals(name, GraphExport.fileName(f.createURI(sb.toString())));
+    }
+
+    @Test
+    public void testIncludeInferred() throws Exception {
+        URI graph = f.createURI("http://marklogic.com/test/inferred");
+        SailRepository store = new SailRepository(new MemoryStore());
+        store.initialize();
+        InferencerConnection sail = (InferencerConnection) store.getSail().getConnection();
+        try {
+            sail.begin();
+            sail.addStatement(f.createURI("http://marklogic.com/test/s"), f.createURI("http://marklogic.com/test/p"), f.createLiteral("explicit"), graph);
+            sail.addInferredStatement(f.createURI("http://marklogic.com/test/s"), f.createURI("http://marklogic.com/test/p"), f.createLiteral("inferred"), graph);
+            sail.commit();
+        } finally {
+            sail.close();
+        }
+        StandInServer server = new StandInServer(store);
+        MarkLogicRepository rep = new MarkLogicRepository("127.0.0.1", server.start(), "admin", "admin", "DIGEST");
+        rep.initialize();
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        try {
+            for (boolean includeInferred : new boolean[]{false, true}) {
+                int expected = includeInferred ? 2 : 1;
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                conn.exportGraphs(out, 2, includeInferred, graph);
+                Model nquads = Rio.parse(new ByteArrayInputStream(out.toByteArray()), "", RDFFormat.NQUADS);
+                Assert.assertEquals(expected, nquads.size());
+
+                Map<Resource, File> files = conn.exportGraphs(folder.newFolder(), 2, includeInferred, graph);
+                InputStream in = new GZIPInputStream(new FileInputStream(files.get(graph)));
+                try {
+                    Assert.assertEquals(expected, Rio.parse(in, "", RDFFormat.NTRIPLES).size());
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            conn.close();
+            rep.shutDown();
+            server.stop();
+            store.shutDown();
+        }
+    }
+}
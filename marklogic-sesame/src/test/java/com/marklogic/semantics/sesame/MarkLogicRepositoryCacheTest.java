@@ -19,6 +19,10 @@
  */
 package com.marklogic.semantics.sesame;
 
+import com.marklogic.semantics.sesame.client.GraphCatalog;
+import com.marklogic.semantics.sesame.client.GraphStatistics;
+import com.marklogic.semantics.sesame.client.QueryResultCache;
+import info.aduna.iteration.Iterations;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -28,6 +32,7 @@ import org.openrdf.IsolationLevels;
 import org.openrdf.model.*;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.TupleQueryResult;
 import org.openrdf.repository.RepositoryResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +41,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * tests write cache
@@ -166,4 +173,105 @@ public class MarkLogicRepositoryCacheTest extends SesameTestBase {
 //        conn.remove(stmts);
 //        assertEquals(0L, conn.size());
     }
+
+    @Test
+    public void testQueryResultCache() throws Exception {
+        QueryResultCache cache = new QueryResultCache();
+        rep.setQueryResultCache(cache);
+        MarkLogicRepositoryConnection cachedConn = rep.getConnection();
+        try {
+            ValueFactory f = cachedConn.getValueFactory();
+            URI alice = f.createURI("http://example.org/people/alice");
+            URI name = f.createURI("http://example.org/ontology/name");
+            String askQuery = "ASK { <http://example.org/people/alice> <http://example.org/ontology/name> ?o }";
+
+            assertFalse(cachedConn.prepareBooleanQuery(askQuery).evaluate());
+            assertFalse(cachedConn.prepareBooleanQuery(askQuery).evaluate());
+            assertEquals(1, cache.getHits());
+
+            cachedConn.add(alice, name, f.createLiteral("Alice"));
+            assertEquals(0, cache.size());
+            assertTrue(cachedConn.prepareBooleanQuery(askQuery).evaluate());
+
+            String selectQuery = "SELECT ?o { <http://example.org/people/alice> <http://example.org/ontology/name> ?o }";
+            TupleQueryResult first = cachedConn.prepareTupleQuery(selectQuery).evaluate();
+            assertEquals("Alice", first.next().getValue("o").stringValue());
+            first.close();
+            TupleQueryResult second = cachedConn.prepareTupleQuery(selectQuery).evaluate();
+            assertEquals("Alice", second.next().getValue("o").stringValue());
+            assertFalse(second.hasNext());
+            second.close();
+            assertEquals(2, cache.getHits());
+
+            cachedConn.remove(alice, name, f.createLiteral("Alice"));
+            assertFalse(cachedConn.prepareBooleanQuery(askQuery).evaluate());
+        } finally {
+            cachedConn.close();
+            rep.setQueryResultCache(null);
+        }
+    }
+
+    @Test
+    public void testGraphStatistics() throws Exception {
+        GraphStatistics statistics = new GraphStatistics();
+        rep.setGraphStatistics(statistics);
+        MarkLogicRepositoryConnection statsConn = rep.getConnection();
+        try {
+            ValueFactory f = statsConn.getValueFactory();
+            Resource context1 = f.createURI("http://marklogic.com/test/context1");
+            URI alice = f.createURI("http://example.org/people/alice");
+            URI name = f.createURI("http://example.org/ontology/name");
+
+            long before = statsConn.size();
+            long defaultBefore = statsConn.size((Resource) null);
+            statsConn.add(alice, name, f.createLiteral("Alice"), context1);
+            statsConn.add(alice, name, f.createLiteral("Alicia"), context1);
+            assertEquals(before + 2, statsConn.size());
+            assertEquals(2, statsConn.size(context1));
+            assertEquals(defaultBefore, statsConn.size((Resource) null));
+            assertFalse(statsConn.isEmpty());
+
+            statsConn.remove(alice, name, f.createLiteral("Alicia"), context1);
+            assertEquals(1, statsConn.size(context1));
+
+            statsConn.clear(context1);
+            assertEquals(0, statsConn.size(context1));
+            assertEquals(before, statsConn.size());
+
+            statistics.invalidate();
+            assertEquals(before, statsConn.size());
+        } finally {
+            statsConn.close();
+            rep.setGraphStatistics(null);
+        }
+    }
+
+    @Test
+    public void testGraphCatalog() throws Exception {
+        GraphCatalog catalog = new GraphCatalog();
+        rep.setGraphCatalog(catalog);
+        MarkLogicRepositoryConnection catalogConn = rep.getConnection();
+        try {
+            ValueFactory f = catalogConn.getValueFactory();
+            Resource context1 = f.createURI("http://marklogic.com/test/catalog1");
+            URI alice = f.createURI("http://example.org/people/alice");
+            URI name = f.createURI("http://example.org/ontology/name");
+
+            Set<Resource> before = Iterations.asSet(catalogConn.getContextIDs());
+            assertFalse(before.contains(context1));
+            assertTrue(catalog.getGraphs() != null);
+
+            catalogConn.add(alice, name, f.createLiteral("Alice"), context1);
+            assertTrue(Iterations.asSet(catalogConn.getContextIDs()).contains(context1));
+
+            catalogConn.clear(context1);
+            assertEquals(before, Iterations.asSet(catalogConn.getContextIDs()));
+
+            catalog.invalidate();
+            assertEquals(before, Iterations.asSet(catalogConn.getContextIDs()));
+        } finally {
+            catalogConn.close();
+            rep.setGraphCatalog(null);
+        }
+    }
 }
@@ -40,18 +40,23 @@ import org.openrdf.repository.RepositoryResult;
 import org.openrdf.repository.sparql.SPARQLRepository;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
 import org.openrdf.rio.helpers.RDFHandlerBase;
 import org.openrdf.rio.rdfxml.RDFXMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -665,6 +670,82 @@ conn.sync();
         conn.clear(context1);
     }
 
+    @Test
+    public void testHasStatements() throws Exception
+    {
+        Resource context1 = conn.getValueFactory().createURI("http://marklogic.com/test/context1");
+        ValueFactory f= conn.getValueFactory();
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI bob = f.createURI("http://example.org/people/bob");
+        URI name = f.createURI("http://example.org/ontology/name");
+        Literal alicesName = f.createLiteral("Alice");
+
+        Statement st1 = f.createStatement(alice, name, alicesName);
+        conn.add(st1, context1);
+
+        List<Statement> candidates = new ArrayList<>();
+        candidates.add(st1);
+        candidates.add(f.createStatement(bob, name, alicesName));
+        candidates.add(f.createStatement(alice, name, alicesName, context1));
+        candidates.add(f.createStatement(alice, name, f.createLiteral("Alice", "en")));
+        for (int i = 0; i < 2500; i++) {
+            candidates.add(f.createStatement(f.createURI("http://example.org/people/" + i), name, alicesName));
+        }
+        candidates.add(st1);
+
+        boolean[] found = conn.hasStatements(candidates, false);
+        Assert.assertEquals(candidates.size(), found.length);
+        Assert.assertTrue(found[0]);
+        Assert.assertFalse(found[1]);
+        Assert.assertTrue(found[2]);
+        Assert.assertFalse(found[3]);
+        Assert.assertFalse(found[4]);
+        Assert.assertTrue(found[candidates.size() - 1]);
+
+        found = conn.hasStatements(candidates.subList(0, 3), false, (Resource) null);
+        Assert.assertFalse(found[0]);
+        Assert.assertFalse(found[1]);
+        Assert.assertTrue(found[2]);
+
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testGetStatementsForPatterns() throws Exception
+    {
+        Resource context1 = conn.getValueFactory().createURI("http://marklogic.com/test/context1");
+        ValueFactory f= conn.getValueFactory();
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI bob = f.createURI("http://example.org/people/bob");
+        URI name = f.createURI("http://example.org/ontology/name");
+        URI age = f.createURI("http://example.org/ontology/age");
+
+        conn.add(alice, name, f.createLiteral("Alice"), context1);
+        conn.add(alice, age, f.createLiteral(30), context1);
+        conn.add(bob, name, f.createLiteral("Bob"), context1);
+
+        List<Statement> patterns = new ArrayList<>();
+        patterns.add(f.createStatement(alice, null, null));
+        patterns.add(f.createStatement(bob, name, null));
+        patterns.add(f.createStatement(f.createURI("http://example.org/people/carol"), null, null));
+        patterns.add(f.createStatement(null, name, f.createLiteral("Bob"), context1));
+
+        List<List<Statement>> results = conn.getStatements(patterns, false, context1);
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(2, results.get(0).size());
+        Assert.assertEquals(1, results.get(1).size());
+        Assert.assertEquals(f.createStatement(bob, name, f.createLiteral("Bob"), context1), results.get(1).get(0));
+        Assert.assertEquals(context1, results.get(1).get(0).getContext());
+        Assert.assertTrue(results.get(2).isEmpty());
+        Assert.assertEquals(bob, results.get(3).get(0).getSubject());
+
+        results = conn.getStatements(patterns, false, (Resource) null);
+        Assert.assertTrue(results.get(0).isEmpty());
+        Assert.assertEquals(1, results.get(3).size());
+
+        conn.clear(context1);
+    }
+
     @Test
     public void testExportStatements()
             throws Exception {
@@ -728,6 +809,90 @@ conn.sync();
         conn.clear(context1);
     }
 
+    @Test
+    public void testExportStatementsToOutputStream()
+            throws Exception {
+        Resource context1 = conn.getValueFactory().createURI("http://marklogic.com/test/context1");
+        ValueFactory f= conn.getValueFactory();
+        final URI alice = f.createURI("http://example.org/people/alice");
+        URI name = f.createURI("http://example.org/ontology/name");
+        Literal alicesName = f.createLiteral("Alice");
+
+        Statement st1 = f.createStatement(alice, name, alicesName);
+        conn.add(st1, context1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long bytes = conn.exportStatements(null, null, null, false, out, RDFFormat.NTRIPLES, context1);
+        Assert.assertEquals(out.size(), bytes);
+
+        Model model = Rio.parse(new ByteArrayInputStream(out.toByteArray()), "", RDFFormat.NTRIPLES);
+        Assert.assertEquals(1, model.size());
+        Assert.assertTrue(model.contains(alice, name, null));
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testExportContexts()
+            throws Exception {
+        Resource context1 = conn.getValueFactory().createURI("http://marklogic.com/test/context1");
+        Resource context2 = conn.getValueFactory().createURI("http://marklogic.com/test/context2");
+        ValueFactory f= conn.getValueFactory();
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI bob = f.createURI("http://example.org/people/bob");
+        URI name = f.createURI("http://example.org/ontology/name");
+
+        conn.add(alice, name, f.createLiteral("Alice"), context1);
+        conn.add(bob, name, f.createLiteral("Bob"), context2);
+
+        final Model model = new LinkedHashModel();
+        conn.export(new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                model.add(st);
+            }
+        }, context2);
+        Assert.assertEquals(1, model.size());
+        Assert.assertTrue(model.contains(bob, name, null));
+        conn.clear(context1, context2);
+    }
+
+    @Test
+    public void testExportGraphs()
+            throws Exception {
+        Resource context1 = conn.getValueFactory().createURI("http://marklogic.com/test/context1");
+        Resource context2 = conn.getValueFactory().createURI("http://marklogic.com/test/context2");
+        ValueFactory f= conn.getValueFactory();
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI bob = f.createURI("http://example.org/people/bob");
+        URI name = f.createURI("http://example.org/ontology/name");
+
+        conn.add(alice, name, f.createLiteral("Alice"), context1);
+        conn.add(bob, name, f.createLiteral("Bob"), context2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long bytes = conn.exportGraphs(out, 2, false, context2, context1);
+        Assert.assertEquals(out.size(), bytes);
+
+        String nquads = out.toString("UTF-8");
+        Assert.assertTrue(nquads.indexOf("<http://marklogic.com/test/context2>") < nquads.indexOf("<http://marklogic.com/test/context1>"));
+        Model model = Rio.parse(new ByteArrayInputStream(out.toByteArray()), "", RDFFormat.NQUADS);
+        Assert.assertEquals(2, model.size());
+        Assert.assertTrue(model.contains(alice, name, null, context1));
+        Assert.assertTrue(model.contains(bob, name, null, context2));
+
+        File directory = File.createTempFile("marklogic-sesame-export", "");
+        directory.delete();
+        Map<Resource, File> files = conn.exportGraphs(directory, 2, false, context1, context2);
+        Assert.assertEquals(2, files.size());
+        for (Map.Entry<Resource, File> entry : files.entrySet()) {
+            Model graph = Rio.parse(new GZIPInputStream(new FileInputStream(entry.getValue())), "", RDFFormat.NTRIPLES);
+            Assert.assertEquals(1, graph.size());
+            entry.getValue().delete();
+        }
+        directory.delete();
+        conn.clear(context1, context2);
+    }
+
     @Ignore
     public void testIntegrateWithRemoteRepository() throws Exception{
         final Resource context1 = conn.getValueFactory().createURI("http://marklogic.com/test/context1");
@@ -21,6 +21,11 @@ package com.marklogic.semantics.sesame;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.sesame.client.MarkLogicClientMetrics;
+import com.marklogic.semantics.sesame.client.MarkLogicClientPool;
+import com.marklogic.semantics.sesame.client.OperationType;
+import com.marklogic.semantics.sesame.client.RequestEvent;
+import com.marklogic.semantics.sesame.client.RequestListener;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -28,6 +33,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.TupleQueryResult;
 import org.openrdf.query.UpdateExecutionException;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
@@ -35,6 +41,9 @@ import org.openrdf.repository.RepositoryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * tests MarkLogicRespository
  *
@@ -116,6 +125,82 @@ public class MarkLogicRepositoryTest extends SesameTestBase {
         rep.shutDown();
     }
 
+    @Test
+    public void testClientPool()
+            throws Exception {
+        MarkLogicRepository rep = new MarkLogicRepository(host, port, user, password, "DIGEST");
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        rep.setClientPool(pool);
+        rep.initialize();
+
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        Assert.assertEquals(1, pool.getNumActive());
+        Assert.assertTrue(conn.prepareBooleanQuery("ASK {}").evaluate());
+        conn.close();
+        Assert.assertEquals(0, pool.getNumActive());
+        Assert.assertEquals(1, pool.getNumIdle());
+
+        conn = rep.getConnection();
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertTrue(conn.prepareBooleanQuery("ASK {}").evaluate());
+        conn.close();
+        rep.shutDown();
+        Assert.assertEquals(0, pool.getNumIdle());
+    }
+
+    @Test
+    public void testMetrics()
+            throws Exception {
+        MarkLogicRepository rep = new MarkLogicRepository(host, port, user, password, "DIGEST");
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics();
+        rep.setMetrics(metrics);
+        rep.initialize();
+        Assert.assertNotNull(metrics.getObjectName());
+
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        Assert.assertTrue(conn.prepareBooleanQuery("ASK {}").evaluate());
+        Assert.assertEquals(1, metrics.getRequestCount(OperationType.ASK));
+        Assert.assertEquals(0, metrics.getErrorCount(OperationType.ASK));
+        Assert.assertEquals(1, metrics.getLatencyMicros(OperationType.ASK).getCount());
+        conn.close();
+        rep.shutDown();
+        Assert.assertNull(metrics.getObjectName());
+    }
+
+    @Test
+    public void testRequestListener()
+            throws Exception {
+        MarkLogicRepository rep = new MarkLogicRepository(host, port, user, password, "DIGEST");
+        final List<RequestEvent> events = new ArrayList<>();
+        rep.setRequestListener(new RequestListener() {
+            @Override
+            public void requestStarted(RequestEvent event) {
+            }
+
+            @Override
+            public synchronized void requestCompleted(RequestEvent event) {
+                events.add(event);
+            }
+        });
+        rep.initialize();
+
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        TupleQueryResult result = conn.prepareTupleQuery("SELECT ?s WHERE { ?s ?p ?o } LIMIT 1").evaluate();
+        while (result.hasNext()) {
+            result.next();
+        }
+        result.close();
+        conn.close();
+        rep.shutDown();
+
+        Assert.assertEquals(1, events.size());
+        RequestEvent event = events.get(0);
+        Assert.assertEquals(OperationType.SELECT, event.getOperation());
+        Assert.assertEquals(RequestEvent.Outcome.SUCCESS, event.getOutcome());
+        Assert.assertTrue(event.getBytesIn() > 0);
+        Assert.assertTrue(event.getTimeToFirstByteNanos() > 0);
+    }
+
     @Test
     public void testMultipleReposWithDifferentUsers() throws RepositoryException, MalformedQueryException, UpdateExecutionException {
         readerRep.initialize();
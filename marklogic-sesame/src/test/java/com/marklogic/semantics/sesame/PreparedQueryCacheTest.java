@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * test PreparedQueryCache
+ *
+ * @author James Fuller
+ */
+public class PreparedQueryCacheTest {
+
+    @Test
+    public void testDetectQueryType() {
+        Assert.assertEquals(PreparedQueryCache.QueryType.TUPLE, PreparedQueryCache.detectQueryType("select ?s { ?s ?p ?o }"));
+        Assert.assertEquals(PreparedQueryCache.QueryType.TUPLE, PreparedQueryCache.detectQueryType("PREFIX ex: <http://example.org/>\n# comment\nSeLeCt ?s { ?s ex:p ?o }"));
+        Assert.assertEquals(PreparedQueryCache.QueryType.BOOLEAN, PreparedQueryCache.detectQueryType("BASE <http://example.org/>\nask { ?s ?p ?o }"));
+        Assert.assertEquals(PreparedQueryCache.QueryType.GRAPH, PreparedQueryCache.detectQueryType("construct { ?s ?p ?o } where { ?s ?p ?o }"));
+        Assert.assertEquals(PreparedQueryCache.QueryType.GRAPH, PreparedQueryCache.detectQueryType("DESCRIBE <http://example.org/s>"));
+    }
+
+    @Test
+    public void testBoundedCapacity() {
+        PreparedQueryCache cache = new PreparedQueryCache(10);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(PreparedQueryCache.QueryType.TUPLE, cache.getQueryType("select ?s { ?s ?p " + i + " }"));
+        }
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals(PreparedQueryCache.QueryType.BOOLEAN, cache.getQueryType("ask { ?s ?p ?o }"));
+        Assert.assertEquals(PreparedQueryCache.QueryType.BOOLEAN, cache.getQueryType("ask { ?s ?p ?o }"));
+        Assert.assertEquals(10, cache.size());
+    }
+}
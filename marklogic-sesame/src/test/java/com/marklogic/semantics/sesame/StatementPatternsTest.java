@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame;
+
+import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.parser.sparql.SPARQLParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test StatementPatterns
+ *
+ * @author James Fuller
+ */
+public class StatementPatternsTest {
+
+    private final ValueFactory f = ValueFactoryImpl.getInstance();
+
+    @Test
+    public void testToSPARQL() {
+        Assert.assertEquals("UNDEF", StatementPatterns.toSPARQL(null));
+        Assert.assertEquals("<http://example.org/s>", StatementPatterns.toSPARQL(f.createURI("http://example.org/s")));
+        Assert.assertEquals("\"a \\\"quoted\\\"\\nvalue\"", StatementPatterns.toSPARQL(f.createLiteral("a \"quoted\"\nvalue")));
+        Assert.assertEquals("\"chat\"@fr", StatementPatterns.toSPARQL(f.createLiteral("chat", "fr")));
+        Assert.assertEquals("\"1\"^^<http://www.w3.org/2001/XMLSchema#int>", StatementPatterns.toSPARQL(f.createLiteral(1)));
+        Assert.assertEquals("<http://marklogic.com/semantics/blank/_:b1>", StatementPatterns.toSPARQL(f.createBNode("b1")));
+    }
+
+    @Test
+    public void testContexts() {
+        URI s = f.createURI("http://example.org/s");
+        URI g = f.createURI("http://example.org/g");
+        List<Statement> patterns = new ArrayList<>();
+        patterns.add(f.createStatement(s, null, null));
+        patterns.add(f.createStatement(s, null, null, g));
+        StatementPatterns builder = new StatementPatterns();
+
+        List<String> blocks = builder.valuesBlocks(patterns);
+        Assert.assertEquals(1, blocks.size());
+        Assert.assertTrue(blocks.get(0).contains("(0 <http://example.org/s> UNDEF UNDEF UNDEF)"));
+        Assert.assertTrue(blocks.get(0).contains("(1 <http://example.org/s> UNDEF UNDEF <http://example.org/g>)"));
+
+        blocks = builder.valuesBlocks(patterns, (Resource[]) null);
+        Assert.assertTrue(blocks.get(0).contains("(0 <http://example.org/s> UNDEF UNDEF <" + MarkLogicClient.DEFAULT_GRAPH_URI + ">)"));
+
+        blocks = builder.valuesBlocks(patterns, g, null);
+        Assert.assertTrue(blocks.get(0).contains("(0 <http://example.org/s> UNDEF UNDEF <http://example.org/g>)"));
+        Assert.assertTrue(blocks.get(0).contains("(0 <http://example.org/s> UNDEF UNDEF <" + MarkLogicClient.DEFAULT_GRAPH_URI + ">)"));
+    }
+
+    @Test
+    public void testChunking() throws Exception {
+        List<Statement> patterns = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            patterns.add(f.createStatement(f.createURI("http://example.org/s" + i), f.createURI("http://example.org/p"), f.createLiteral(i)));
+        }
+        List<String> blocks = new StatementPatterns(10, 1024 * 1024).valuesBlocks(patterns);
+        Assert.assertEquals(3, blocks.size());
+
+        blocks = new StatementPatterns(1000, 1000).valuesBlocks(patterns);
+        Assert.assertTrue(blocks.size() > 1);
+        int rows = 0;
+        for (String block : blocks) {
+            Assert.assertTrue(block.length() <= 1000);
+            rows += block.split("\n").length - 2;
+            new SPARQLParser().parseQuery("SELECT ?idx WHERE { " + block + " GRAPH ?ctx { ?s ?p ?o } }", null);
+        }
+        Assert.assertEquals(25, rows);
+    }
+}
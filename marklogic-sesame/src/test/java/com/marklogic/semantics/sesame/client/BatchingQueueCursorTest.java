@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.query.QueryEvaluationException;
+
+/**
+ * test BatchingQueueCursor
+ *
+ * @author James Fuller
+ */
+public class BatchingQueueCursorTest {
+
+    @Test
+    public void testAllElementsHandedOver() throws Exception {
+        final BatchingQueueCursor<Integer> cursor = new BatchingQueueCursor<>(256, 2);
+        final int total = 10000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < total; i++) {
+                        cursor.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    cursor.toss(e);
+                } finally {
+                    cursor.done();
+                }
+            }
+        });
+        producer.start();
+        int expected = 0;
+        while (cursor.hasNext()) {
+            Assert.assertEquals(Integer.valueOf(expected++), cursor.next());
+        }
+        Assert.assertEquals(total, expected);
+        cursor.close();
+        producer.join();
+    }
+
+    @Test
+    public void testPartialBatch() throws Exception {
+        BatchingQueueCursor<String> cursor = new BatchingQueueCursor<>(512, 4);
+        cursor.put("a");
+        cursor.put("b");
+        cursor.done();
+        Assert.assertEquals("a", cursor.next());
+        Assert.assertEquals("b", cursor.next());
+        Assert.assertFalse(cursor.hasNext());
+        cursor.close();
+    }
+
+    @Test
+    public void testCloseUnblocksProducer() throws Exception {
+        final BatchingQueueCursor<Integer> cursor = new BatchingQueueCursor<>(2, 1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        cursor.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    cursor.toss(e);
+                } finally {
+                    cursor.done();
+                }
+            }
+        });
+        producer.start();
+        Assert.assertEquals(Integer.valueOf(0), cursor.next());
+        cursor.close();
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+    }
+
+    @Test(expected = QueryEvaluationException.class)
+    public void testTossedException() throws Exception {
+        BatchingQueueCursor<String> cursor = new BatchingQueueCursor<>(4, 4);
+        cursor.put("a");
+        cursor.toss(new QueryEvaluationException("parse error"));
+        cursor.done();
+        cursor.next();
+    }
+}
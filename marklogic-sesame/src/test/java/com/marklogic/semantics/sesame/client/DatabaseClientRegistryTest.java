@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * test DatabaseClientRegistry
+ *
+ * @author James Fuller
+ */
+public class DatabaseClientRegistryTest {
+
+    @Test
+    public void testSharedClient() {
+        DatabaseClientRegistry registry = new DatabaseClientRegistry();
+        DatabaseClient c1 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST");
+        DatabaseClient c2 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST");
+        Assert.assertSame(c1, c2);
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(2, registry.getReferences(c1));
+
+        registry.release(c1);
+        Assert.assertEquals(1, registry.getReferences(c1));
+        registry.release(c2);
+        Assert.assertEquals(0, registry.getReferences(c1));
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testDistinctKeys() {
+        DatabaseClientRegistry registry = new DatabaseClientRegistry();
+        DatabaseClient c1 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST");
+        DatabaseClient c2 = registry.acquire("localhost", 8000, "Documents", "admin", "admin", "DIGEST");
+        DatabaseClient c3 = registry.acquire("localhost", 8000, null, "reader", "reader", "DIGEST");
+        DatabaseClient c4 = registry.acquire("localhost", 8000, null, "admin", "other", "DIGEST");
+        Assert.assertNotSame(c1, c2);
+        Assert.assertNotSame(c1, c3);
+        Assert.assertNotSame(c1, c4);
+        Assert.assertEquals(4, registry.size());
+        registry.release(c1);
+        registry.release(c2);
+        registry.release(c3);
+        registry.release(c4);
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseUnknownClient() {
+        DatabaseClientRegistry registry = new DatabaseClientRegistry();
+        DatabaseClient c1 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST");
+        registry.release(c1);
+        registry.release(c1);
+    }
+
+    @Test
+    public void testRepositoriesShareDatabaseClient() throws Exception {
+        DatabaseClientRegistry registry = DatabaseClientRegistry.getInstance();
+        int size = registry.size();
+        MarkLogicRepository rep1 = new MarkLogicRepository("registry.example.org", 8000, "admin", "admin", "DIGEST");
+        MarkLogicRepository rep2 = new MarkLogicRepository("registry.example.org", 8000, "admin", "admin", "DIGEST");
+        Assert.assertEquals(size, registry.size());
+        rep1.initialize();
+        rep2.initialize();
+        Assert.assertEquals(size + 1, registry.size());
+        rep1.shutDown();
+        Assert.assertEquals(size + 1, registry.size());
+        rep2.shutDown();
+        Assert.assertEquals(size, registry.size());
+    }
+}
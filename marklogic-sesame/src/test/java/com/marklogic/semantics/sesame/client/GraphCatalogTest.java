@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * test GraphCatalog
+ *
+ * @author James Fuller
+ */
+public class GraphCatalogTest {
+
+    private final URI g1 = ValueFactoryImpl.getInstance().createURI("http://example.org/g1");
+    private final URI g2 = ValueFactoryImpl.getInstance().createURI("http://example.org/g2");
+    private final URI defaultGraph = ValueFactoryImpl.getInstance().createURI(MarkLogicClient.DEFAULT_GRAPH_URI);
+
+    @Test
+    public void testUnpopulated() {
+        GraphCatalog catalog = new GraphCatalog();
+        Assert.assertNull(catalog.getGraphs());
+        catalog.added(g1);
+        Assert.assertNull(catalog.getGraphs());
+    }
+
+    @Test
+    public void testLocalUpdates() {
+        GraphCatalog catalog = new GraphCatalog();
+        catalog.populate(Arrays.asList(g1), catalog.getGeneration());
+        Assert.assertEquals(Arrays.<Resource>asList(g1), catalog.getGraphs());
+
+        catalog.added(g1, g2);
+        catalog.added();
+        List<Resource> graphs = catalog.getGraphs();
+        Assert.assertEquals(3, graphs.size());
+        Assert.assertTrue(graphs.contains(g2));
+        Assert.assertTrue(graphs.contains(defaultGraph));
+
+        catalog.cleared(g1, null);
+        Assert.assertEquals(Arrays.<Resource>asList(g2), catalog.getGraphs());
+        catalog.cleared(new Resource[0]);
+        Assert.assertEquals(Arrays.<Resource>asList(g2), catalog.getGraphs());
+
+        catalog.clearedAll();
+        Assert.assertTrue(catalog.getGraphs().isEmpty());
+
+        catalog.invalidate();
+        Assert.assertNull(catalog.getGraphs());
+    }
+
+    @Test
+    public void testStalePopulateIgnored() {
+        GraphCatalog catalog = new GraphCatalog();
+        long generation = catalog.getGeneration();
+        catalog.cleared(g1);
+        catalog.populate(Arrays.asList(g1, g2), generation);
+        Assert.assertNull(catalog.getGraphs());
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        GraphCatalog catalog = new GraphCatalog(50);
+        catalog.populate(Arrays.asList(g1), catalog.getGeneration());
+        Assert.assertNotNull(catalog.getGraphs());
+        Thread.sleep(100);
+        Assert.assertNull(catalog.getGraphs());
+    }
+}
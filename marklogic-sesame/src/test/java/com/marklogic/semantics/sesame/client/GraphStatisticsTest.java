@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * test GraphStatistics
+ *
+ * @author James Fuller
+ */
+public class GraphStatisticsTest {
+
+    private final URI g1 = ValueFactoryImpl.getInstance().createURI("http://example.org/g1");
+
+    private Map<String, Long> seedCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        counts.put(g1.stringValue(), 10L);
+        counts.put(MarkLogicClient.DEFAULT_GRAPH_URI, 5L);
+        return counts;
+    }
+
+    @Test
+    public void testUnseeded() {
+        GraphStatistics statistics = new GraphStatistics();
+        Assert.assertNull(statistics.getCounts());
+        statistics.cleared(g1);
+        Assert.assertNull(statistics.getCounts());
+    }
+
+    @Test
+    public void testCleared() {
+        GraphStatistics statistics = new GraphStatistics();
+        statistics.seed(seedCounts(), statistics.getGeneration());
+        Map<String, Long> counts = statistics.getCounts();
+        Assert.assertEquals(Long.valueOf(10), counts.get(g1.stringValue()));
+        Assert.assertEquals(Long.valueOf(5), counts.get(MarkLogicClient.DEFAULT_GRAPH_URI));
+
+        statistics.cleared(g1);
+        Assert.assertFalse(statistics.getCounts().containsKey(g1.stringValue()));
+        statistics.cleared(new Resource[0]);
+        Assert.assertEquals(Long.valueOf(5), statistics.getCounts().get(MarkLogicClient.DEFAULT_GRAPH_URI));
+        statistics.cleared((Resource[]) null);
+        Assert.assertFalse(statistics.getCounts().containsKey(MarkLogicClient.DEFAULT_GRAPH_URI));
+
+        statistics.clearedAll();
+        Assert.assertTrue(statistics.getCounts().isEmpty());
+
+        statistics.invalidate();
+        Assert.assertNull(statistics.getCounts());
+    }
+
+    @Test
+    public void testWrittenGraphsRecounted() {
+        GraphStatistics statistics = new GraphStatistics();
+        statistics.written(g1);
+        Assert.assertNull(statistics.getStaleGraphs());
+
+        statistics.seed(seedCounts(), statistics.getGeneration());
+        Assert.assertTrue(statistics.getStaleGraphs().isEmpty());
+        statistics.written(g1);
+        Assert.assertNull(statistics.getCounts());
+        Set<String> stale = statistics.getStaleGraphs();
+        Assert.assertEquals(Collections.singleton(g1.stringValue()), stale);
+
+        long generation = statistics.getGeneration();
+        statistics.written();
+        statistics.recount(Collections.singletonMap(g1.stringValue(), 11L), stale, generation);
+        Assert.assertNull(statistics.getCounts());
+
+        stale = statistics.getStaleGraphs();
+        Assert.assertEquals(2, stale.size());
+        Map<String, Long> recounted = new HashMap<>();
+        recounted.put(MarkLogicClient.DEFAULT_GRAPH_URI, 6L);
+        statistics.recount(recounted, stale, statistics.getGeneration());
+        Map<String, Long> counts = statistics.getCounts();
+        Assert.assertFalse(counts.containsKey(g1.stringValue()));
+        Assert.assertEquals(Long.valueOf(6), counts.get(MarkLogicClient.DEFAULT_GRAPH_URI));
+    }
+
+    @Test
+    public void testStaleSeedIgnored() {
+        GraphStatistics statistics = new GraphStatistics();
+        long generation = statistics.getGeneration();
+        statistics.invalidate();
+        statistics.seed(seedCounts(), generation);
+        Assert.assertNull(statistics.getCounts());
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        GraphStatistics statistics = new GraphStatistics(50);
+        statistics.seed(seedCounts(), statistics.getGeneration());
+        Assert.assertNotNull(statistics.getCounts());
+        Thread.sleep(100);
+        Assert.assertNull(statistics.getCounts());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.DatabaseClient;
+import org.apache.http.client.HttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * test HttpTransportSettings
+ *
+ * @author James Fuller
+ */
+public class HttpTransportSettingsTest {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testApply() {
+        HttpTransportSettings settings = new HttpTransportSettings();
+        settings.setMaxConnections(32);
+        settings.setMaxConnectionsPerRoute(16);
+        settings.setConnectTimeoutMillis(1000);
+        settings.setSocketTimeoutMillis(2000);
+        settings.setSocketBufferSize(16384);
+        settings.setTcpNoDelay(true);
+        settings.setKeepAliveMillis(5000L);
+
+        DatabaseClientRegistry registry = new DatabaseClientRegistry();
+        DatabaseClient databaseClient = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST", settings);
+        try {
+            HttpClient client = (HttpClient) databaseClient.getClientImplementation();
+            org.apache.http.params.HttpParams params = client.getParams();
+            Assert.assertEquals(1000, org.apache.http.params.HttpConnectionParams.getConnectionTimeout(params));
+            Assert.assertEquals(2000, org.apache.http.params.HttpConnectionParams.getSoTimeout(params));
+            Assert.assertEquals(16384, org.apache.http.params.HttpConnectionParams.getSocketBufferSize(params));
+            Assert.assertTrue(org.apache.http.params.HttpConnectionParams.getTcpNoDelay(params));
+            if (client.getConnectionManager()
+                    instanceof org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager) {
+                org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager manager =
+                    (org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager) client.getConnectionManager();
+                Assert.assertEquals(32, manager.getMaxTotal());
+                Assert.assertEquals(16, manager.getDefaultMaxPerRoute());
+            }
+        } finally {
+            registry.release(databaseClient);
+        }
+    }
+
+    @Test
+    public void testRegistryKey() {
+        HttpTransportSettings s1 = new HttpTransportSettings();
+        s1.setSocketTimeoutMillis(2000);
+        HttpTransportSettings s2 = new HttpTransportSettings();
+        s2.setSocketTimeoutMillis(2000);
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s1.hashCode(), s2.hashCode());
+
+        DatabaseClientRegistry registry = new DatabaseClientRegistry();
+        DatabaseClient c1 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST", s1);
+        DatabaseClient c2 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST", s2);
+        Assert.assertSame(c1, c2);
+
+        s2.setSocketTimeoutMillis(3000);
+        Assert.assertNotEquals(s1, s2);
+        DatabaseClient c3 = registry.acquire("localhost", 8000, null, "admin", "admin", "DIGEST", s2);
+        Assert.assertNotSame(c1, c3);
+        Assert.assertEquals(2, registry.size());
+
+        registry.release(c1);
+        registry.release(c2);
+        registry.release(c3);
+        Assert.assertEquals(0, registry.size());
+    }
+}
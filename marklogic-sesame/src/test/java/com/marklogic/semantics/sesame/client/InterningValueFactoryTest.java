@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+/**
+ * test InterningValueFactory
+ *
+ * @author James Fuller
+ */
+public class InterningValueFactoryTest {
+
+    @Test
+    public void testURIsAreCanonical() {
+        InterningValueFactory f = new InterningValueFactory();
+        URI a = f.createURI("http://example.org/p");
+        URI b = f.createURI(new String("http://example.org/p"));
+        URI c = f.createURI("http://example.org/", "p");
+        Assert.assertSame(a, b);
+        Assert.assertSame(a, c);
+        Assert.assertEquals(1, f.size());
+    }
+
+    @Test
+    public void testLiteralsAreCanonical() {
+        InterningValueFactory f = new InterningValueFactory();
+        Assert.assertSame(f.createLiteral("Alice"), f.createLiteral("Alice"));
+        Assert.assertSame(f.createLiteral("Alice", "en"), f.createLiteral("Alice", "en"));
+        Assert.assertNotSame(f.createLiteral("Alice", "en"), f.createLiteral("Alice", "de"));
+        Literal one = f.createLiteral("1", XMLSchema.INT);
+        Assert.assertSame(one, f.createLiteral("1", f.createURI(XMLSchema.INT.stringValue())));
+        Assert.assertSame(one.getDatatype(), f.createURI(XMLSchema.INT.stringValue()));
+    }
+
+    @Test
+    public void testLongLiteralsAreNotInterned() {
+        InterningValueFactory f = new InterningValueFactory(100, 4);
+        Literal a = f.createLiteral("longer than four");
+        Literal b = f.createLiteral("longer than four");
+        Assert.assertEquals(a, b);
+        Assert.assertNotSame(a, b);
+        Assert.assertEquals(0, f.size());
+    }
+
+    @Test
+    public void testBoundedCapacity() {
+        InterningValueFactory f = new InterningValueFactory(64, 0);
+        for (int i = 0; i < 10000; i++) {
+            f.createURI("http://example.org/s" + i);
+        }
+        Assert.assertTrue(f.size() <= 64);
+        f.clear();
+        Assert.assertEquals(0, f.size());
+    }
+
+    @Test
+    public void testRepositoryInterning() {
+        MarkLogicRepository repository = new MarkLogicRepository("localhost", 8000, "admin", "admin", "DIGEST");
+        Assert.assertFalse(repository.isInterning());
+        repository.setInterning(true);
+        Assert.assertTrue(repository.getValueFactory() instanceof InterningValueFactory);
+        ValueFactory f = repository.getValueFactory();
+        repository.setInterning(true);
+        Assert.assertSame(f, repository.getValueFactory());
+        repository.setInterning(false);
+        Assert.assertFalse(repository.isInterning());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * test lazily started write cache timers of MarkLogicClient
+ *
+ * @author James Fuller
+ */
+public class MarkLogicClientCacheTimerTest {
+
+    private final ValueFactory f = ValueFactoryImpl.getInstance();
+
+    private final MarkLogicClient client = new MarkLogicClient("localhost", 8000, "admin", "admin", "DIGEST");
+
+    @After
+    public void tearDown() {
+        client.stopTimer();
+    }
+
+    @Test
+    public void testTimerStartedByFirstWrite() throws Exception {
+        Assert.assertFalse(client.isTimerRunning());
+        client.sync();
+        Assert.assertFalse(client.isTimerRunning());
+
+        // long initial delay keeps the cache from flushing to a server
+        client.initTimer(60000, 800, 750);
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI name = f.createURI("http://example.org/ontology/name");
+        client.sendAdd(null, alice, name, f.createLiteral("Alice"));
+        Assert.assertTrue(client.isTimerRunning());
+
+        client.stopTimer();
+        Assert.assertFalse(client.isTimerRunning());
+    }
+
+    @Test
+    public void testIdleCache() throws Exception {
+        TripleWriteCache cache = new TripleWriteCache(client);
+        cache.setIdleMillis(10);
+        Thread.sleep(20);
+        Assert.assertTrue(cache.isIdle());
+
+        cache.setIdleMillis(0);
+        Assert.assertFalse(cache.isIdle());
+
+        cache.setIdleMillis(10);
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI name = f.createURI("http://example.org/ontology/name");
+        cache.add(alice, name, f.createLiteral("Alice"));
+        Thread.sleep(20);
+        Assert.assertFalse(cache.isIdle());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.google.common.base.Supplier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * test MarkLogicClientMetrics and Histogram
+ *
+ * @author James Fuller
+ */
+public class MarkLogicClientMetricsTest {
+
+    private final ValueFactory f = ValueFactoryImpl.getInstance();
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getP99());
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500.5, histogram.getMean(), 0.001);
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(500, histogram.getP50(), 500 * 0.125);
+        Assert.assertEquals(990, histogram.getP99(), 990 * 0.125);
+        Assert.assertEquals(1000, histogram.getPercentile(100));
+        Assert.assertEquals(1, histogram.getPercentile(0));
+
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testRequests() {
+        RecordingRegistry registry = new RecordingRegistry();
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics(registry);
+        metrics.requestCompleted(OperationType.SELECT, TimeUnit.MILLISECONDS.toNanos(2), true);
+        metrics.requestCompleted(OperationType.SELECT, TimeUnit.MILLISECONDS.toNanos(4), false);
+        metrics.requestCompleted(OperationType.OPEN_TRANSACTION, TimeUnit.MILLISECONDS.toNanos(1), true);
+
+        Assert.assertEquals(2, metrics.getRequestCount(OperationType.SELECT));
+        Assert.assertEquals(1, metrics.getErrorCount(OperationType.SELECT));
+        Assert.assertEquals(4000, metrics.getLatencyMicros(OperationType.SELECT).getMax());
+        Assert.assertEquals(Long.valueOf(1), metrics.getRequestCounts().get("open-transaction"));
+        Assert.assertEquals(Long.valueOf(0), metrics.getErrorCounts().get("construct"));
+
+        Assert.assertEquals(Long.valueOf(2), registry.counts.get("marklogic.sesame.request.select.count"));
+        Assert.assertEquals(Long.valueOf(1), registry.counts.get("marklogic.sesame.request.select.errors"));
+        Assert.assertEquals(Long.valueOf(4000), registry.values.get("marklogic.sesame.request.select.latency"));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getRequestCount(OperationType.SELECT));
+        Assert.assertEquals(0, metrics.getLatencyMicros(OperationType.SELECT).getCount());
+    }
+
+    @Test
+    public void testCacheDepth() throws Exception {
+        RecordingRegistry registry = new RecordingRegistry();
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics(registry);
+        MarkLogicClient client = new MarkLogicClient("localhost", 8000, "admin", "admin", "DIGEST");
+        TripleWriteCache cache = new TripleWriteCache(client);
+        cache.setMetrics(metrics);
+
+        URI alice = f.createURI("http://example.org/people/alice");
+        URI name = f.createURI("http://example.org/ontology/name");
+        cache.add(alice, name, f.createLiteral("Alice"));
+        cache.add(alice, name, f.createLiteral("Alicia"));
+        Assert.assertEquals(2, cache.getDepth());
+        Assert.assertEquals(2, metrics.getWriteCacheDepth());
+        Assert.assertEquals(0, metrics.getDeleteCacheDepth());
+        Assert.assertEquals(2, registry.gauges.get("marklogic.sesame.cache.write.depth").get().intValue());
+
+        cache.cancel();
+        Assert.assertEquals(0, metrics.getWriteCacheDepth());
+
+        metrics.cacheFlushed(cache, 750, true);
+        metrics.cacheFlushed(new TripleDeleteCache(client), 3, true);
+        metrics.cacheFlushed(cache, 10, false);
+        Assert.assertEquals(750, metrics.getWriteCacheFlushSizes().getMax());
+        Assert.assertEquals(1, metrics.getDeleteCacheFlushSizes().getCount());
+        Assert.assertEquals(1, metrics.getCacheFlushErrors());
+        Assert.assertEquals(Long.valueOf(750), registry.values.get("marklogic.sesame.cache.write.flush.size"));
+    }
+
+    @Test
+    public void testParserThreads() throws Exception {
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics();
+        metrics.parserStarted();
+        metrics.parserStarted();
+        metrics.parserFinished();
+        Assert.assertEquals(1, metrics.getActiveParserThreads());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics();
+        MarkLogicClientMetrics other = new MarkLogicClientMetrics();
+        Assert.assertTrue(metrics.registerMBean("localhost:8000"));
+        try {
+            Assert.assertFalse(other.registerMBean("localhost:8000"));
+            Assert.assertNull(other.getObjectName());
+
+            metrics.requestCompleted(OperationType.ASK, TimeUnit.MILLISECONDS.toNanos(3), true);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = metrics.getObjectName();
+            Assert.assertEquals("MarkLogicClientMetrics", name.getKeyProperty("type"));
+
+            TabularData counts = (TabularData) server.getAttribute(name, "RequestCounts");
+            Assert.assertEquals(1L, counts.get(new Object[]{"ask"}).get("value"));
+
+            TabularData latencies = (TabularData) server.getAttribute(name, "LatencyMicros");
+            CompositeData ask = (CompositeData) latencies.get(new Object[]{"ask"}).get("value");
+            Assert.assertEquals(3000L, ask.get("max"));
+            Assert.assertEquals(1L, ask.get("count"));
+
+            Assert.assertEquals(0, server.getAttribute(name, "WriteCacheDepth"));
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals(0, metrics.getRequestCount(OperationType.ASK));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        Assert.assertNull(metrics.getObjectName());
+        Assert.assertTrue(other.registerMBean("localhost:8000"));
+        other.unregisterMBean();
+    }
+
+    private static class RecordingRegistry implements MetricsRegistry {
+        final Map<String, Long> counts = new HashMap<>();
+        final Map<String, Long> values = new HashMap<>();
+        final Map<String, Supplier<? extends Number>> gauges = new HashMap<>();
+
+        @Override
+        public synchronized void count(String name, long delta) {
+            Long count = counts.get(name);
+            counts.put(name, count == null ? delta : count + delta);
+        }
+
+        @Override
+        public synchronized void update(String name, long value) {
+            values.put(name, value);
+        }
+
+        @Override
+        public synchronized void gauge(String name, Supplier<? extends Number> gauge) {
+            gauges.put(name, gauge);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.google.common.base.Supplier;
+import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.sesame.MarkLogicSesameException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test MarkLogicClientPool
+ *
+ * @author James Fuller
+ */
+public class MarkLogicClientPoolTest {
+
+    private final List<MarkLogicClient> created = new ArrayList<>();
+
+    private final Supplier<MarkLogicClient> factory = new Supplier<MarkLogicClient>() {
+        @Override
+        public MarkLogicClient get() {
+            MarkLogicClient client = new MarkLogicClient("localhost", 8000, "admin", "admin", "DIGEST");
+            created.add(client);
+            return client;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        for (MarkLogicClient client : created) {
+            client.stopTimer();
+        }
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        MarkLogicClient client = pool.checkout(factory);
+        Assert.assertEquals(1, pool.getNumActive());
+        pool.checkin(client);
+        Assert.assertEquals(0, pool.getNumActive());
+        Assert.assertEquals(1, pool.getNumIdle());
+        Assert.assertSame(client, pool.checkout(factory));
+        Assert.assertEquals(1, created.size());
+    }
+
+    @Test
+    public void testCheckinResetsState() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        MarkLogicClient client = pool.checkout(factory);
+        client.setRulesets(SPARQLRuleset.RDFS);
+        client.setResultBatching(500, 2);
+        pool.checkin(client);
+        client = pool.checkout(factory);
+        Assert.assertNull(client.getRulesets());
+        Assert.assertNull(client.getConstrainingQueryDefinition());
+        Assert.assertEquals(BatchingQueueCursor.DEFAULT_BATCH_SIZE, client.getResultBatchSize());
+        Assert.assertEquals(BatchingQueueCursor.DEFAULT_QUEUE_CAPACITY, client.getResultQueueCapacity());
+    }
+
+    @Test
+    public void testCheckinResetsCacheConfiguration() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        MarkLogicClient client = pool.checkout(factory);
+        client.initTimer(10, 100, 5);
+        client.setCacheIdleMillis(1000);
+        pool.checkin(client);
+        client = pool.checkout(factory);
+        Assert.assertEquals(1, created.size());
+        Assert.assertEquals(TripleCache.DEFAULT_INITIAL_DELAY, client.getCacheInitialDelay());
+        Assert.assertEquals(TripleCache.DEFAULT_CACHE_MILLIS, client.getCachePeriod());
+        Assert.assertEquals(TripleCache.DEFAULT_CACHE_SIZE, client.getCacheSize());
+        Assert.assertEquals(TripleCache.DEFAULT_IDLE_MILLIS, client.getCacheIdleMillis());
+    }
+
+    @Test
+    public void testClientWithCachedStatementsDiscarded() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        MarkLogicClient client = pool.checkout(factory);
+        // long timer period, so the statement stays cached as after a failed flush
+        client.initTimer(60000, 60000, 1000);
+        ValueFactory vf = ValueFactoryImpl.getInstance();
+        client.sendAdd(null, vf.createURI("http://example.org/s"), vf.createURI("http://example.org/p"), vf.createLiteral("o"));
+        Assert.assertFalse(client.isReusable());
+        pool.checkin(client);
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertNotSame(client, pool.checkout(factory));
+    }
+
+    @Test
+    public void testReleasedClientDiscarded() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        MarkLogicClient client = pool.checkout(factory);
+        client.release();
+        pool.checkin(client);
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertNotSame(client, pool.checkout(factory));
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool(0, 1, 4, 0, 0);
+        MarkLogicClient c1 = pool.checkout(factory);
+        MarkLogicClient c2 = pool.checkout(factory);
+        pool.checkin(c1);
+        pool.checkin(c2);
+        Assert.assertEquals(1, pool.getNumIdle());
+        Assert.assertSame(c1, pool.checkout(factory));
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool(1, 4, 4, 1, 0);
+        MarkLogicClient c1 = pool.checkout(factory);
+        MarkLogicClient c2 = pool.checkout(factory);
+        pool.checkin(c1);
+        pool.checkin(c2);
+        Thread.sleep(20);
+        MarkLogicClient client = pool.checkout(factory);
+        Assert.assertSame(c2, client);
+        Assert.assertEquals(0, pool.getNumIdle());
+    }
+
+    @Test(expected = MarkLogicSesameException.class)
+    public void testMaxTotal() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool(0, 1, 1, 0, 10);
+        pool.checkout(factory);
+        pool.checkout(factory);
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        MarkLogicClientPool pool = new MarkLogicClientPool();
+        MarkLogicClient c1 = pool.checkout(factory);
+        MarkLogicClient c2 = pool.checkout(factory);
+        pool.checkin(c1);
+        pool.close();
+        Assert.assertEquals(0, pool.getNumIdle());
+        pool.checkin(c2);
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertEquals(0, pool.getNumActive());
+    }
+}
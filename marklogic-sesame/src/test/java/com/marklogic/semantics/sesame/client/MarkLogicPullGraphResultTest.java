@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.rio.ParserConfig;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.NTriplesParserSettings;
+import org.openrdf.rio.helpers.ParseErrorLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * test MarkLogicPullGraphResult
+ *
+ * @author James Fuller
+ */
+public class MarkLogicPullGraphResultTest {
+
+    private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+    private static InputStream stream(String nt) {
+        return new ByteArrayInputStream(nt.getBytes(UTF8));
+    }
+
+    @Test
+    public void testParsesTerms() throws Exception {
+        String nt = "# comment\n"
+                + "<http://example.org/a\\u003Eb> <http://example.org/p> \"say \\\"hi\\\" > there\"@en .\n"
+                + "\n"
+                + "_:b1 <http://example.org/p> \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .\n"
+                + "<http://example.org/s> <http://example.org/p> _:b1 .\n";
+        MarkLogicPullGraphResult result = new MarkLogicPullGraphResult(stream(nt), UTF8, ValueFactoryImpl.getInstance());
+
+        Statement first = result.next();
+        Assert.assertEquals("http://example.org/a>b", first.getSubject().stringValue());
+        Assert.assertEquals("say \"hi\" > there", first.getObject().stringValue());
+        Assert.assertEquals("en", ((Literal) first.getObject()).getLanguage());
+
+        Statement second = result.next();
+        Assert.assertTrue(second.getSubject() instanceof BNode);
+        Assert.assertEquals(1, ((Literal) second.getObject()).intValue());
+
+        Statement third = result.next();
+        Assert.assertEquals(second.getSubject(), third.getObject());
+
+        Assert.assertFalse(result.hasNext());
+        result.close();
+    }
+
+    @Test
+    public void testInvalidLineFails() throws Exception {
+        String nt = "<http://example.org/s> <http://example.org/p> \"o\" .\n"
+                + "<http://example.org/s> \"p\" \"o\" .\n";
+        MarkLogicPullGraphResult result = new MarkLogicPullGraphResult(stream(nt), UTF8, ValueFactoryImpl.getInstance());
+        result.next();
+        try {
+            result.next();
+            Assert.fail("expected QueryEvaluationException");
+        } catch (QueryEvaluationException e) {
+            Assert.assertTrue(e.getMessage().contains("line 2"));
+        } finally {
+            result.close();
+        }
+    }
+
+    @Test
+    public void testParserConfigApplies() throws Exception {
+        String nt = "<http://example.org/s> \"p\" \"o\" .\n"
+                + "<http://example.org/s> <http://example.org/p> \"o\" .\n";
+        RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES, ValueFactoryImpl.getInstance());
+        ParserConfig config = new ParserConfig();
+        config.addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
+        parser.setParserConfig(config);
+        parser.setParseErrorListener(new ParseErrorLogger());
+        InputStream in = stream(nt);
+        MarkLogicPullGraphResult result = new MarkLogicPullGraphResult(in, in, parser, UTF8, "", new QueryTimings(null, null));
+
+        Assert.assertEquals("http://example.org/p", result.next().getPredicate().stringValue());
+        Assert.assertFalse(result.hasNext());
+        result.close();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.apache.http.conn.ConnectionReleaseTrigger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryInterruptedException;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * test cancelling in-flight query results
+ *
+ * @author James Fuller
+ */
+public class MarkLogicQueryResultCancelTest {
+
+    private static final String HEAD = "{\"head\":{\"vars\":[\"s\"]},\"results\":{\"bindings\":[";
+    private static final String ROW = "{\"s\":{\"type\":\"uri\",\"value\":\"http://example.org/s\"}}";
+
+    @Test
+    public void testCancelPullResult() throws Exception {
+        InputStream in = new StalledStream(HEAD + ROW + ",");
+
+        MarkLogicPullTupleResult result = new MarkLogicPullTupleResult(in, ValueFactoryImpl.getInstance());
+        Assert.assertTrue(result.hasNext());
+        result.next();
+        result.cancel();
+        Assert.assertTrue(result.isCancelled());
+        try {
+            result.hasNext();
+            Assert.fail("expected QueryInterruptedException");
+        } catch (QueryInterruptedException e) {
+            // expected
+        }
+        result.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelBackgroundResult() throws Exception {
+        StalledStream in = new StalledStream(HEAD + ROW + ",");
+
+        final MarkLogicBackgroundTupleResult result = new MarkLogicBackgroundTupleResult(new BatchingQueueCursor<BindingSet>(1, 1),
+                QueryResultIO.createParser(TupleQueryResultFormat.JSON, ValueFactoryImpl.getInstance()), in);
+        Thread parser = new Thread(result);
+        parser.start();
+
+        // consumer blocks waiting for a batch the parser can never complete
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                result.cancel();
+            }
+        });
+        canceller.start();
+        try {
+            while (result.hasNext()) {
+                result.next();
+            }
+            Assert.fail("expected QueryInterruptedException");
+        } catch (QueryInterruptedException e) {
+            // expected
+        }
+        parser.join(5000);
+        Assert.assertFalse(parser.isAlive());
+    }
+
+    @Test
+    public void testAbortStreamReleasesConnection() throws Exception {
+        AbortableStream raw = new AbortableStream();
+        InputStream in = new ResponseInputStream(new BufferedInputStream(raw), raw, null);
+        MarkLogicClientImpl.abortStream(in);
+        Assert.assertTrue(raw.aborted);
+        Assert.assertFalse(raw.closed);
+    }
+
+    @Test
+    public void testAbortStreamClosesOtherStreams() throws Exception {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(new byte[0]) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+            }
+        });
+        MarkLogicClientImpl.abortStream(in);
+        Assert.assertTrue(closed[0]);
+    }
+
+    @Test
+    public void testCloseCancelsTimer() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            MarkLogicPullTupleResult result = new MarkLogicPullTupleResult(new ByteArrayInputStream((HEAD + "]}}").getBytes(StandardCharsets.UTF_8)), ValueFactoryImpl.getInstance());
+            ScheduledFuture<?> timer = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 1, TimeUnit.HOURS);
+            result.cancelOnClose(timer);
+            Assert.assertFalse(timer.isCancelled());
+            result.close();
+            Assert.assertTrue(timer.isCancelled());
+
+            ScheduledFuture<?> late = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 1, TimeUnit.HOURS);
+            result.cancelOnClose(late);
+            Assert.assertTrue(late.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStreamedResultIsCancellable() throws Exception {
+        TupleQueryResult result = new MarkLogicPullTupleResult(new ByteArrayInputStream((HEAD + "]}}").getBytes(StandardCharsets.UTF_8)), ValueFactoryImpl.getInstance());
+        Assert.assertTrue(result instanceof MarkLogicQueryResult);
+        Assert.assertFalse(result.hasNext());
+        result.close();
+    }
+
+    /**
+     * returns prefix, then blocks like a stalled response until closed
+     */
+    private static class StalledStream extends InputStream {
+        private final byte[] prefix;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private int pos = 0;
+
+        StalledStream(String prefix) {
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos < prefix.length) {
+                return prefix[pos++] & 0xff;
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("stream closed");
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len > 0 && pos < prefix.length) {
+                int n = Math.min(len, prefix.length - pos);
+                System.arraycopy(prefix, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+            return len == 0 ? 0 : super.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.countDown();
+        }
+    }
+
+    /**
+     * stands in for the connection backed stream of an HTTP response
+     */
+    private static class AbortableStream extends InputStream implements ConnectionReleaseTrigger {
+        boolean aborted = false;
+        boolean closed = false;
+
+        @Override
+        public int read() throws IOException {
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+
+        @Override
+        public void releaseConnection() throws IOException {
+        }
+
+        @Override
+        public void abortConnection() throws IOException {
+            aborted = true;
+        }
+    }
+}
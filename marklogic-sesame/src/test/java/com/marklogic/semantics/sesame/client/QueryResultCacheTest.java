@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.semantics.SPARQLRuleset;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.query.impl.TupleQueryResultImpl;
+import org.openrdf.repository.sparql.query.SPARQLQueryBindingSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * test QueryResultCache
+ *
+ * @author James Fuller
+ */
+public class QueryResultCacheTest {
+
+    private final ValueFactory f = new ValueFactoryImpl();
+
+    @Test
+    public void testKeyIncludesBindingsAndRulesets() {
+        SPARQLQueryBindingSet bindings = new SPARQLQueryBindingSet();
+        bindings.addBinding("s", f.createURI("http://example.org/s"));
+        QueryResultCache.Key a = QueryResultCache.key("tuple", "select * { ?s ?p ?o }", bindings, null, null, true, null, 1, -1);
+        QueryResultCache.Key b = QueryResultCache.key("tuple", "select * { ?s ?p ?o }", bindings, new SPARQLRuleset[0], null, true, null, 1, -1);
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+
+        bindings.addBinding("s", f.createURI("http://example.org/other"));
+        Assert.assertNotEquals(a, QueryResultCache.key("tuple", "select * { ?s ?p ?o }", bindings, null, null, true, null, 1, -1));
+        Assert.assertNotEquals(a, QueryResultCache.key("tuple", "select * { ?s ?p ?o }", null, new SPARQLRuleset[]{SPARQLRuleset.RDFS}, null, true, null, 1, -1));
+        Assert.assertNotEquals(a, QueryResultCache.key("tuple", "select * { ?s ?p ?o }", null, null, null, false, null, 1, -1));
+    }
+
+    @Test
+    public void testTupleResultReplay() throws Exception {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key key = QueryResultCache.key("tuple", "select ?s { ?s ?p ?o }", null, null, null, true, null, 1, -1);
+        Assert.assertNull(cache.getTupleResult(key));
+
+        TupleQueryResult first = cache.cacheTupleResult(key, cache.getGeneration(), rows(3));
+        Assert.assertEquals(3, count(first));
+        TupleQueryResult replay = cache.getTupleResult(key);
+        Assert.assertEquals(Arrays.asList("s"), replay.getBindingNames());
+        Assert.assertEquals(3, count(replay));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        QueryResultCache cache = new QueryResultCache();
+        QueryResultCache.Key key = QueryResultCache.key("boolean", "ask { ?s ?p ?o }", null, null, null, true, null, 0, 0);
+        long generation = cache.getGeneration();
+        cache.cacheBooleanResult(key, generation, true);
+        Assert.assertEquals(Boolean.TRUE, cache.getBooleanResult(key));
+
+        cache.invalidate();
+        Assert.assertNull(cache.getBooleanResult(key));
+
+        // result of a query sent before the invalidation is not cached
+        cache.cacheBooleanResult(key, generation, true);
+        Assert.assertNull(cache.getBooleanResult(key));
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        QueryResultCache cache = new QueryResultCache(2, 0, 5);
+        QueryResultCache.Key large = QueryResultCache.key("tuple", "large", null, null, null, true, null, 1, -1);
+        Assert.assertEquals(10, count(cache.cacheTupleResult(large, cache.getGeneration(), rows(10))));
+        Assert.assertEquals(0, cache.size());
+
+        for (int i = 0; i < 5; i++) {
+            cache.cacheBooleanResult(QueryResultCache.key("boolean", "ask" + i, null, null, null, true, null, 0, 0), cache.getGeneration(), true);
+        }
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10, 1, 5);
+        QueryResultCache.Key key = QueryResultCache.key("boolean", "ask { ?s ?p ?o }", null, null, null, true, null, 0, 0);
+        cache.cacheBooleanResult(key, cache.getGeneration(), false);
+        Thread.sleep(20);
+        Assert.assertNull(cache.getBooleanResult(key));
+    }
+
+    private TupleQueryResult rows(int n) {
+        List<String> names = Arrays.asList("s");
+        List<BindingSet> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            rows.add(new ListBindingSet(names, f.createURI("http://example.org/s" + i)));
+        }
+        return new TupleQueryResultImpl(names, rows);
+    }
+
+    private int count(TupleQueryResult result) throws Exception {
+        int count = 0;
+        while (result.hasNext()) {
+            result.next();
+            count++;
+        }
+        result.close();
+        return count;
+    }
+}
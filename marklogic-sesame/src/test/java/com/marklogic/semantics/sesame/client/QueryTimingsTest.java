@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * test phase timings of query results
+ *
+ * @author James Fuller
+ */
+public class QueryTimingsTest {
+
+    private static final String RESULTS = "{\"head\":{\"vars\":[\"s\"]},\"results\":{\"bindings\":["
+            + "{\"s\":{\"type\":\"uri\",\"value\":\"http://example.org/s1\"}},"
+            + "{\"s\":{\"type\":\"uri\",\"value\":\"http://example.org/s2\"}}]}}";
+
+    @Test
+    public void testPullResultTimings() throws Exception {
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics();
+        QueryTimings timings = new QueryTimings(OperationType.SELECT, metrics);
+        timings.firstByte();
+        InputStream in = timings.track(new ByteArrayInputStream(RESULTS.getBytes(StandardCharsets.UTF_8)));
+
+        MarkLogicPullTupleResult result = new MarkLogicPullTupleResult(in, in, ValueFactoryImpl.getInstance(), timings);
+        Assert.assertSame(timings, result.getTimings());
+        Assert.assertEquals(-1, timings.getPhaseNanos(QueryTimings.Phase.PARSE));
+        int count = 0;
+        while (result.hasNext()) {
+            result.next();
+            count++;
+        }
+        result.close();
+        Assert.assertEquals(2, count);
+
+        assertPhases(timings);
+        for (QueryTimings.Phase phase : QueryTimings.Phase.values()) {
+            Assert.assertEquals(1, metrics.getPhaseMicros(OperationType.SELECT, phase).getCount());
+            Assert.assertEquals(0, metrics.getPhaseMicros(OperationType.CONSTRUCT, phase).getCount());
+        }
+        Assert.assertEquals(8, metrics.getQueryPhaseMicros().size());
+
+        // closing again does not report twice
+        timings.closed();
+        Assert.assertEquals(1, metrics.getPhaseMicros(OperationType.SELECT, QueryTimings.Phase.SERVER).getCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testBackgroundResultTimings() throws Exception {
+        MarkLogicClientMetrics metrics = new MarkLogicClientMetrics();
+        QueryTimings timings = new QueryTimings(OperationType.SELECT, metrics);
+        timings.firstByte();
+        InputStream in = timings.track(new ByteArrayInputStream(RESULTS.getBytes(StandardCharsets.UTF_8)));
+
+        MarkLogicBackgroundTupleResult result = new MarkLogicBackgroundTupleResult(new BatchingQueueCursor<BindingSet>(16, 4),
+                QueryResultIO.createParser(TupleQueryResultFormat.JSON, ValueFactoryImpl.getInstance()), in, in, timings);
+        Thread parser = new Thread(result);
+        parser.start();
+        int count = 0;
+        while (result.hasNext()) {
+            result.next();
+            count++;
+        }
+        parser.join();
+        result.close();
+        Assert.assertEquals(2, count);
+
+        assertPhases(timings);
+        Assert.assertEquals(1, metrics.getPhaseMicros(OperationType.SELECT, QueryTimings.Phase.CONSUME).getCount());
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getPhaseMicros(OperationType.SELECT, QueryTimings.Phase.CONSUME).getCount());
+    }
+
+    @Test
+    public void testUnreachedPhases() {
+        QueryTimings timings = new QueryTimings(OperationType.CONSTRUCT, null);
+        timings.firstByte();
+        timings.closed();
+        Assert.assertTrue(timings.getPhaseNanos(QueryTimings.Phase.SERVER) >= 0);
+        Assert.assertEquals(-1, timings.getPhaseNanos(QueryTimings.Phase.TRANSFER));
+        Assert.assertEquals(-1, timings.getPhaseNanos(QueryTimings.Phase.PARSE));
+        Assert.assertEquals(-1, timings.getPhaseNanos(QueryTimings.Phase.CONSUME));
+        Assert.assertTrue(timings.toString().contains("transfer=-"));
+    }
+
+    private static void assertPhases(QueryTimings timings) {
+        Assert.assertTrue(timings.getFirstByteNanos() >= 0);
+        Assert.assertTrue(timings.getLastByteNanos() >= timings.getFirstByteNanos());
+        Assert.assertTrue(timings.getLastResultNanos() >= timings.getLastByteNanos());
+        Assert.assertTrue(timings.getClosedNanos() >= timings.getLastResultNanos());
+        for (QueryTimings.Phase phase : QueryTimings.Phase.values()) {
+            Assert.assertTrue(phase.name(), timings.getPhaseNanos(phase) >= 0);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test RequestListener events reported by MarkLogicClientImpl
+ *
+ * @author James Fuller
+ */
+public class RequestListenerTest {
+
+    // nothing listens on port 1, so requests fail without a server
+    private final DatabaseClient databaseClient = DatabaseClientFactory.newClient("localhost", 1, "admin", "admin", DatabaseClientFactory.Authentication.DIGEST);
+
+    private final MarkLogicClientImpl client = new MarkLogicClientImpl(databaseClient);
+
+    private final RecordingListener listener = new RecordingListener();
+
+    @After
+    public void tearDown() {
+        databaseClient.release();
+    }
+
+    @Test
+    public void testResponseReadToEnd() throws Exception {
+        client.setRequestListener(listener);
+        byte[] body = "{\"boolean\":true}".getBytes(StandardCharsets.UTF_8);
+        RequestEvent event = new RequestEvent(OperationType.SELECT, "SELECT * WHERE { ?s ?p ?o }");
+        event.firstByte();
+        InputStream in = new BufferedInputStream(new RequestInputStream(new ByteArrayInputStream(body), event, client));
+        Assert.assertTrue(listener.completed.isEmpty());
+
+        IOUtils.toByteArray(in);
+        Assert.assertEquals(1, listener.completed.size());
+        Assert.assertEquals(RequestEvent.Outcome.SUCCESS, event.getOutcome());
+        Assert.assertEquals(body.length, event.getBytesIn());
+        Assert.assertTrue(event.getTotalNanos() >= event.getTimeToFirstByteNanos());
+
+        in.close();
+        Assert.assertEquals(1, listener.completed.size());
+        Assert.assertEquals(RequestEvent.Outcome.SUCCESS, event.getOutcome());
+    }
+
+    @Test
+    public void testResponseClosedEarly() throws Exception {
+        client.setRequestListener(listener);
+        RequestEvent event = new RequestEvent(OperationType.CONSTRUCT, "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }");
+        InputStream in = new RequestInputStream(new ByteArrayInputStream(new byte[100]), event, client);
+        Assert.assertEquals(10, in.read(new byte[10]));
+        in.close();
+        Assert.assertEquals(RequestEvent.Outcome.CANCELLED, event.getOutcome());
+        Assert.assertEquals(10, event.getBytesIn());
+    }
+
+    @Test
+    public void testResponseAborted() throws Exception {
+        client.setRequestListener(listener);
+        RequestEvent event = new RequestEvent(OperationType.SELECT, "SELECT * WHERE { ?s ?p ?o }");
+        ByteArrayInputStream response = new ByteArrayInputStream(new byte[100]);
+        RequestInputStream request = new RequestInputStream(response, event, client);
+        InputStream in = new ResponseInputStream(new BufferedInputStream(request), response, request);
+        MarkLogicClientImpl.abortStream(in);
+        Assert.assertEquals(1, listener.completed.size());
+        Assert.assertEquals(RequestEvent.Outcome.CANCELLED, event.getOutcome());
+    }
+
+    @Test
+    public void testFailedRequest() throws Exception {
+        client.setRequestListener(listener);
+        String query = "ASK { ?s ?p ?o }";
+        try {
+            client.performBooleanQuery(query, null, null, false, null);
+            Assert.fail("expected request to fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertEquals(1, listener.started.size());
+        Assert.assertEquals(1, listener.completed.size());
+        RequestEvent event = listener.completed.get(0);
+        Assert.assertSame(listener.started.get(0), event);
+        Assert.assertEquals(OperationType.ASK, event.getOperation());
+        Assert.assertEquals(RequestEvent.Outcome.FAILURE, event.getOutcome());
+        Assert.assertEquals(query.length(), event.getBytesOut());
+        Assert.assertEquals(16, event.getQueryHash().length());
+        Assert.assertEquals(new RequestEvent(OperationType.ASK, query).getQueryHash(), event.getQueryHash());
+        Assert.assertEquals("span", event.getAttribute("trace"));
+    }
+
+    @Test
+    public void testNoListener() throws Exception {
+        try {
+            client.performBooleanQuery("ASK { ?s ?p ?o }", null, null, false, null);
+            Assert.fail("expected request to fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertTrue(listener.started.isEmpty());
+    }
+
+    private static class RecordingListener implements RequestListener {
+        final List<RequestEvent> started = new ArrayList<>();
+        final List<RequestEvent> completed = new ArrayList<>();
+
+        @Override
+        public synchronized void requestStarted(RequestEvent event) {
+            event.setAttribute("trace", "span");
+            started.add(event);
+        }
+
+        @Override
+        public synchronized void requestCompleted(RequestEvent event) {
+            completed.add(event);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Graph;
+import org.openrdf.model.Resource;
+import org.openrdf.model.impl.LinkedHashModel;
+
+/**
+ * test MarkLogicRepositoryConfig export and parse
+ *
+ * @author James Fuller
+ */
+public class MarkLogicRepositoryConfigTest {
+
+    @Test
+    public void testTransportSettingsRoundTrip() throws Exception {
+        MarkLogicRepositoryConfig config = new MarkLogicRepositoryConfig("localhost", 8200, "admin", "admin", "DIGEST");
+        config.setMaxConnections(32);
+        config.setMaxConnectionsPerRoute(16);
+        config.setConnectTimeoutMillis(1000);
+        config.setSocketTimeoutMillis(2000);
+        config.setSocketBufferSize(16384);
+        config.setTcpNoDelay(true);
+        config.setKeepAliveMillis(5000L);
+
+        Graph graph = new LinkedHashModel();
+        Resource implNode = config.export(graph);
+
+        MarkLogicRepositoryConfig parsed = new MarkLogicRepositoryConfig();
+        parsed.parse(graph, implNode);
+        Assert.assertEquals(Integer.valueOf(32), parsed.getMaxConnections());
+        Assert.assertEquals(Integer.valueOf(16), parsed.getMaxConnectionsPerRoute());
+        Assert.assertEquals(Integer.valueOf(1000), parsed.getConnectTimeoutMillis());
+        Assert.assertEquals(Integer.valueOf(2000), parsed.getSocketTimeoutMillis());
+        Assert.assertEquals(Integer.valueOf(16384), parsed.getSocketBufferSize());
+        Assert.assertEquals(Boolean.TRUE, parsed.getTcpNoDelay());
+        Assert.assertEquals(Long.valueOf(5000L), parsed.getKeepAliveMillis());
+        Assert.assertEquals(config.getHttpTransportSettings(), parsed.getHttpTransportSettings());
+    }
+
+    @Test
+    public void testNoTransportSettings() throws Exception {
+        MarkLogicRepositoryConfig config = new MarkLogicRepositoryConfig("localhost", 8200, "admin", "admin", "DIGEST");
+        Graph graph = new LinkedHashModel();
+        Resource implNode = config.export(graph);
+
+        MarkLogicRepositoryConfig parsed = new MarkLogicRepositoryConfig();
+        parsed.parse(graph, implNode);
+        Assert.assertNull(parsed.getMaxConnections());
+        Assert.assertNull(parsed.getHttpTransportSettings());
+    }
+}
@@ -96,6 +96,24 @@ public class MarkLogicGraphQueryTest extends SesameTestBase {
         results.close();
     }
 
+    @Test
+    public void testConstructQueryWithPullParsing()
+            throws Exception {
+        String queryString = "PREFIX nn: <http://semanticbible.org/ns/2006/NTNames#>\n" +
+                "PREFIX test: <http://marklogic.com#test>\n" +
+                "\n" +
+                "construct { ?s  test:test \"0\"} WHERE  {?s nn:childOf nn:Eve . }";
+        MarkLogicGraphQuery graphQuery = conn.prepareGraphQuery(QueryLanguage.SPARQL, queryString);
+        graphQuery.setPullParsing(true);
+        GraphQueryResult results = graphQuery.evaluate();
+        Statement st1 = results.next();
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Abel", st1.getSubject().stringValue());
+        Assert.assertEquals("0", st1.getObject().stringValue());
+        Statement st2 = results.next();
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Cain", st2.getSubject().stringValue());
+        results.close();
+    }
+
     @Test
     public void testGraphQueryWithBaseURIInline()
             throws Exception {
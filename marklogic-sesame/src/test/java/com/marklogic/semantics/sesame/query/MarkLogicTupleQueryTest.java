@@ -21,6 +21,7 @@ import info.aduna.iteration.ExceptionConvertingIteration;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -36,6 +37,7 @@ import org.openrdf.query.BindingSet;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.Query;
 import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.QueryResultHandlerException;
 import org.openrdf.query.TupleQuery;
@@ -47,12 +49,17 @@ import org.openrdf.repository.RepositoryResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.marklogic.client.io.FileHandle;
 import com.marklogic.client.semantics.GraphManager;
 import com.marklogic.client.semantics.RDFMimeTypes;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
 import com.marklogic.semantics.sesame.SesameTestBase;
+import com.marklogic.semantics.sesame.client.MarkLogicQueryResult;
+import com.marklogic.semantics.sesame.client.OperationType;
+import com.marklogic.semantics.sesame.client.QueryTimings;
 import com.sun.jersey.client.apache4.ApacheHttpClient4;
 
 /**
@@ -289,6 +296,97 @@ public class MarkLogicTupleQueryTest extends SesameTestBase {
         }
     }
 
+    @Test
+    public void testSPARQLQueryWithPullParsing()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 100";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        Assert.assertTrue(tupleQuery.isPullParsing());
+
+        TupleQueryResult results = tupleQuery.evaluate(3, 1);
+        Assert.assertEquals("s", results.getBindingNames().get(0));
+        BindingSet bindingSet = results.next();
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#BethanyBeyondtheJordanGeodata", bindingSet.getValue("s").stringValue());
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#altitude", bindingSet.getValue("p").stringValue());
+        Assert.assertEquals("0", bindingSet.getValue("o").stringValue());
+        Assert.assertFalse(results.hasNext());
+        results.close();
+
+        MarkLogicTupleQuery unbounded = conn.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o }");
+        Assert.assertFalse(unbounded.isPullParsing());
+        unbounded.setPullParsing(true);
+        Assert.assertTrue(unbounded.isPullParsing());
+        tupleQuery.setPullParsing(false);
+        Assert.assertFalse(tupleQuery.isPullParsing());
+    }
+
+    @Test
+    public void testSPARQLQueryAsync()
+            throws Exception {
+        List<ListenableFuture<TupleQueryResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o } limit 100");
+            futures.add(tupleQuery.evaluateAsync(3, 1));
+        }
+        MarkLogicBooleanQuery booleanQuery = conn.prepareBooleanQuery(QueryLanguage.SPARQL, "ask { <http://semanticbible.org/ns/2006/NTNames#Jotham> ?p ?o }");
+        ListenableFuture<Boolean> ask = booleanQuery.evaluateAsync();
+
+        for (TupleQueryResult results : Futures.allAsList(futures).get(30, TimeUnit.SECONDS)) {
+            BindingSet bindingSet = results.next();
+            Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#BethanyBeyondtheJordanGeodata", bindingSet.getValue("s").stringValue());
+            Assert.assertFalse(results.hasNext());
+            results.close();
+        }
+        Assert.assertTrue(ask.get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSPARQLQueryMaxExecutionTime()
+            throws Exception {
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o } limit 100");
+        tupleQuery.setMaxExecutionTime(30);
+        Assert.assertEquals(30, tupleQuery.getMaxExecutionTime());
+        TupleQueryResult results = tupleQuery.evaluate(3, 1);
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#BethanyBeyondtheJordanGeodata", results.next().getValue("s").stringValue());
+        Assert.assertFalse(results.hasNext());
+        results.close();
+    }
+
+    @Test
+    public void testSPARQLQueryCancel()
+            throws Exception {
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o }");
+        tupleQuery.setPullParsing(false);
+        TupleQueryResult results = tupleQuery.evaluate();
+        Assert.assertTrue(results instanceof MarkLogicQueryResult);
+        Assert.assertTrue(results.hasNext());
+        ((MarkLogicQueryResult) results).cancel();
+        try {
+            results.hasNext();
+            Assert.fail("expected QueryInterruptedException");
+        } catch (QueryInterruptedException e) {
+            // expected
+        }
+        results.close();
+    }
+
+    @Test
+    public void testSPARQLQueryTimings()
+            throws Exception {
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o } limit 10");
+        TupleQueryResult results = tupleQuery.evaluate();
+        Assert.assertTrue(results instanceof MarkLogicQueryResult);
+        QueryTimings timings = ((MarkLogicQueryResult) results).getTimings();
+        Assert.assertEquals(OperationType.SELECT, timings.getOperation());
+        Assert.assertTrue(timings.getFirstByteNanos() >= 0);
+        while (results.hasNext()) {
+            results.next();
+        }
+        results.close();
+        Assert.assertTrue(timings.getLastResultNanos() >= 0);
+        Assert.assertTrue(timings.getClosedNanos() >= timings.getLastResultNanos());
+    }
+
     //https://bugtrack.marklogic.com/41543
     @Test
     public void testSPARQLQueryCloseWait()
@@ -402,6 +500,31 @@ public class MarkLogicTupleQueryTest extends SesameTestBase {
         //tupleQuery.evaluate();
     }
 
+    @Test
+    public void testSPARQLQueryServerSideBindings()
+            throws Exception {
+        String queryString = "select ?s ?o { ?s ?p ?o . filter (?p = ?c) filter (?s = ?b) }";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        tupleQuery.setBinding("b", ValueFactoryImpl.getInstance().createURI("http://semanticbible.org/ns/2006/NTNames#Jotham"));
+        tupleQuery.setBinding("c", ValueFactoryImpl.getInstance().createURI("http://semanticbible.org/ns/2006/NTNames#parentOf"));
+
+        // bindings are sent to the server, not inlined into the query
+        Assert.assertEquals(queryString, tupleQuery.getQueryString(false));
+        Assert.assertNotEquals(queryString, tupleQuery.getQueryString());
+
+        TupleQueryResult results = tupleQuery.evaluate();
+        Assert.assertTrue(results.hasNext());
+        BindingSet bindingSet = results.next();
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Jotham", bindingSet.getValue("s").stringValue());
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Ahaz", bindingSet.getValue("o").stringValue());
+        results.close();
+
+        tupleQuery.setBinding("b", ValueFactoryImpl.getInstance().createURI("http://semanticbible.org/ns/2006/NTNames#Jim"));
+        results = tupleQuery.evaluate();
+        Assert.assertFalse(results.hasNext());
+        results.close();
+    }
+
     @Test
     public void testSPARQLQueryBindings()
             throws Exception {
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFWriterRegistry;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.UnsupportedRDFormatException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * stand-in for /v1/graphs; GET exports a graph or lists graphs, POST merges,
+ * PUT replaces and DELETE clears a graph, or all graphs when none is named.
+ *
+ * Statements without a context are stored in the MarkLogic default graph.
+ * Graph permissions are accepted and ignored.
+ *
+ * @author James Fuller
+ */
+class GraphsHandler extends StandInHandler {
+
+    private static final String URI_LIST = "text/uri-list";
+
+    /**
+     * constructor
+     *
+     * @param server
+     */
+    GraphsHandler(StandInServer server) {
+        super(server);
+    }
+
+    @Override
+    void handle(final StandInExchange ex) throws Exception {
+        if (!"/v1/graphs".equals(ex.getPath())) {
+            throw new StandInException(404, "REST-UNSUPPORTEDMETHOD", "Endpoint " + ex.getPath() + " is not implemented by the stand-in.");
+        }
+        if ("permissions".equals(ex.getParam("category"))) {
+            if ("GET".equals(ex.getMethod())) {
+                ex.respond(200, "application/json").write("{\"permissions\":[]}".getBytes(StandardCharsets.UTF_8));
+            } else {
+                ex.respond(204);
+            }
+            return;
+        }
+        final Resource graph = graph(ex);
+        final String method = ex.getMethod();
+        switch (method) {
+            case "GET":
+            case "HEAD":
+                server.withConnection(ex.getParam("txid"), false, new StandInServer.ConnectionTask<Void>() {
+                    @Override
+                    public Void run(RepositoryConnection conn) throws Exception {
+                        if (graph == null) {
+                            list(conn, ex);
+                        } else {
+                            RDFFormat format = RDFFormat.NTRIPLES;
+                            for (String mimeType : ex.getAccept()) {
+                                RDFFormat accepted = RDFWriterRegistry.getInstance().getFileFormatForMIMEType(mimeType);
+                                if (accepted != null) {
+                                    format = accepted;
+                                    break;
+                                }
+                            }
+                            OutputStream out = ex.respond(200, format.getDefaultMIMEType());
+                            conn.export(Rio.createWriter(format, out), graph);
+                        }
+                        return null;
+                    }
+                });
+                break;
+            case "POST":
+            case "PUT":
+                final RDFFormat format = Rio.getParserFormatForMIMEType(ex.getContentType());
+                if (format == null) {
+                    throw new UnsupportedRDFormatException("No parser for content type " + ex.getContentType() + ".");
+                }
+                server.withConnection(ex.getParam("txid"), true, new StandInServer.ConnectionTask<Void>() {
+                    @Override
+                    public Void run(RepositoryConnection conn) throws Exception {
+                        if ("PUT".equals(method)) {
+                            clear(conn, graph);
+                        }
+                        load(conn, format, graph, ex);
+                        return null;
+                    }
+                });
+                ex.respond(204);
+                break;
+            case "DELETE":
+                server.withConnection(ex.getParam("txid"), true, new StandInServer.ConnectionTask<Void>() {
+                    @Override
+                    public Void run(RepositoryConnection conn) throws Exception {
+                        clear(conn, graph);
+                        return null;
+                    }
+                });
+                ex.respond(204);
+                break;
+            default:
+                throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", method + " is not supported on " + ex.getPath() + ".");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * returns graph named by the default or graph parameter, null for all graphs
+     *
+     * @param ex
+     * @return Resource
+     */
+    private static Resource graph(StandInExchange ex) {
+        if (ex.getParam("default") != null) {
+            return new URIImpl(MarkLogicClient.DEFAULT_GRAPH_URI);
+        }
+        String graph = ex.getParam("graph");
+        return graph == null ? null : new URIImpl(graph);
+    }
+
+    /**
+     * writes graph IRIs as a text/uri-list
+     *
+     * @param conn
+     * @param ex
+     * @throws Exception
+     */
+    private static void list(RepositoryConnection conn, StandInExchange ex) throws Exception {
+        Writer writer = new OutputStreamWriter(ex.respond(200, URI_LIST), StandardCharsets.UTF_8);
+        RepositoryResult<Resource> contexts = conn.getContextIDs();
+        try {
+            while (contexts.hasNext()) {
+                writer.write(contexts.next().stringValue());
+                writer.write("\r\n");
+            }
+        } finally {
+            contexts.close();
+        }
+        writer.flush();
+    }
+
+    /**
+     * clears graph, or all graphs if null
+     *
+     * @param conn
+     * @param graph
+     * @throws Exception
+     */
+    private static void clear(RepositoryConnection conn, Resource graph) throws Exception {
+        if (graph == null) {
+            conn.clear();
+        } else {
+            conn.clear(graph);
+        }
+    }
+
+    /**
+     * parses request body into graph, or into the contexts of the statements if null
+     *
+     * @param conn
+     * @param format
+     * @param graph
+     * @param ex
+     * @throws Exception
+     */
+    private static void load(final RepositoryConnection conn, RDFFormat format, final Resource graph, StandInExchange ex) throws Exception {
+        final Resource defaultGraph = new URIImpl(MarkLogicClient.DEFAULT_GRAPH_URI);
+        RDFParser parser = Rio.createParser(format, conn.getValueFactory());
+        parser.setRDFHandler(new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                Resource context = graph != null ? graph : st.getContext() != null ? st.getContext() : defaultGraph;
+                try {
+                    conn.add(st.getSubject(), st.getPredicate(), st.getObject(), context);
+                } catch (Exception e) {
+                    throw new RDFHandlerException(e);
+                }
+            }
+        });
+        String base = ex.getParam("base");
+        parser.parse(ex.getBody(), base == null ? "" : base);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import com.marklogic.semantics.sesame.client.MarkLogicClient;
+import info.aduna.lang.FileFormat;
+import info.aduna.lang.service.FileFormatServiceRegistry;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.GraphQuery;
+import org.openrdf.query.Operation;
+import org.openrdf.query.Query;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.Update;
+import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.query.resultio.BooleanQueryResultFormat;
+import org.openrdf.query.resultio.BooleanQueryResultWriterRegistry;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultWriter;
+import org.openrdf.query.resultio.TupleQueryResultWriterRegistry;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFWriterRegistry;
+import org.openrdf.rio.Rio;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * stand-in for POST /v1/graphs/sparql; SPARQL queries and updates with
+ * bindings, datasets, pagination and transactions.
+ *
+ * Result formats follow the Accept header; without one, tuple and boolean
+ * results are SPARQL JSON and graph results N-Triples, as read by MarkLogicClient.
+ *
+ * @author James Fuller
+ */
+class SparqlHandler extends StandInHandler {
+
+    static final String SPARQL_QUERY = "application/sparql-query";
+    static final String SPARQL_UPDATE = "application/sparql-update";
+
+    private static final String BIND_PREFIX = "bind:";
+
+    /**
+     * constructor
+     *
+     * @param server
+     */
+    SparqlHandler(StandInServer server) {
+        super(server);
+    }
+
+    @Override
+    void handle(final StandInExchange ex) throws Exception {
+        final boolean update;
+        final String sparql;
+        String contentType = ex.getContentType();
+        if ("GET".equals(ex.getMethod())) {
+            update = false;
+            sparql = ex.getParam("query");
+        } else if (!"POST".equals(ex.getMethod())) {
+            throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", ex.getMethod() + " is not supported on " + ex.getPath() + ".");
+        } else if (SPARQL_QUERY.equals(contentType)) {
+            update = false;
+            sparql = ex.readBody();
+        } else if (SPARQL_UPDATE.equals(contentType)) {
+            update = true;
+            sparql = ex.readBody();
+        } else if (StandInExchange.FORM.equals(contentType)) {
+            update = ex.getParam("update") != null;
+            sparql = update ? ex.getParam("update") : ex.getParam("query");
+        } else {
+            throw new StandInException(400, "REST-INVALIDMIMETYPE", "Content type " + contentType + " is not supported by the stand-in.");
+        }
+        if (sparql == null) {
+            throw new StandInException(400, "REST-REQUIREDPARAM", "No SPARQL query or update given.");
+        }
+        server.withConnection(ex.getParam("txid"), update, new StandInServer.ConnectionTask<Void>() {
+            @Override
+            public Void run(RepositoryConnection conn) throws Exception {
+                String base = ex.getParam("base");
+                if (update) {
+                    Update operation = conn.prepareUpdate(QueryLanguage.SPARQL, sparql, base);
+                    prepare(operation, conn.getValueFactory(), ex);
+                    operation.setDataset(updateDataset(ex));
+                    operation.execute();
+                } else {
+                    Query query = conn.prepareQuery(QueryLanguage.SPARQL, sparql, base);
+                    prepare(query, conn.getValueFactory(), ex);
+                    DatasetImpl dataset = queryDataset(ex);
+                    if (dataset != null) {
+                        query.setDataset(dataset);
+                    }
+                    evaluate(query, ex);
+                }
+                return null;
+            }
+        });
+        if (update) {
+            ex.respond(204);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * evaluates query, writing results in the format accepted by the client
+     *
+     * @param query
+     * @param ex
+     * @throws Exception
+     */
+    private static void evaluate(Query query, StandInExchange ex) throws Exception {
+        if (query instanceof TupleQuery) {
+            TupleQueryResultFormat format = accepted(TupleQueryResultWriterRegistry.getInstance(), ex.getAccept(), TupleQueryResultFormat.JSON);
+            TupleQueryResult result = ((TupleQuery) query).evaluate();
+            try {
+                long skip = Math.max(0, parseLong(ex.getParam("start"), 1) - 1);
+                long limit = parseLong(ex.getParam("pageLength"), -1);
+                OutputStream out = ex.respond(200, format.getDefaultMIMEType());
+                TupleQueryResultWriter writer = QueryResultIO.createWriter(format, out);
+                writer.startDocument();
+                writer.startHeader();
+                writer.startQueryResult(result.getBindingNames());
+                writer.endHeader();
+                long written = 0;
+                while (result.hasNext() && (limit < 0 || written < limit)) {
+                    BindingSet bindings = result.next();
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        writer.handleSolution(bindings);
+                        written++;
+                    }
+                }
+                writer.endQueryResult();
+            } finally {
+                result.close();
+            }
+        } else if (query instanceof GraphQuery) {
+            RDFFormat format = accepted(RDFWriterRegistry.getInstance(), ex.getAccept(), RDFFormat.NTRIPLES);
+            OutputStream out = ex.respond(200, format.getDefaultMIMEType());
+            ((GraphQuery) query).evaluate(Rio.createWriter(format, out));
+        } else if (query instanceof BooleanQuery) {
+            BooleanQueryResultFormat format = accepted(BooleanQueryResultWriterRegistry.getInstance(), ex.getAccept(), BooleanQueryResultFormat.JSON);
+            boolean result = ((BooleanQuery) query).evaluate();
+            QueryResultIO.write(result, format, ex.respond(200, format.getDefaultMIMEType()));
+        } else {
+            throw new StandInException(400, "XDMP-UNEXPECTED", "Unsupported query type " + query.getClass().getSimpleName() + ".");
+        }
+    }
+
+    /**
+     * applies bind: parameters to operation, and default-rulesets=exclude by
+     * leaving out statements inferred by the backing repository
+     *
+     * @param operation
+     * @param vf
+     * @param ex
+     */
+    private static void prepare(Operation operation, ValueFactory vf, StandInExchange ex) {
+        operation.setIncludeInferred(!"exclude".equals(ex.getParam("default-rulesets")));
+        for (Map.Entry<String, List<String>> param : ex.getParams().entrySet()) {
+            if (!param.getKey().startsWith(BIND_PREFIX)) {
+                continue;
+            }
+            String spec = param.getKey().substring(BIND_PREFIX.length());
+            String value = param.getValue().get(0);
+            int at = spec.indexOf('@');
+            int colon = spec.indexOf(':');
+            Value bound;
+            String name;
+            if (at >= 0) {
+                name = spec.substring(0, at);
+                bound = vf.createLiteral(value, spec.substring(at + 1).toLowerCase(Locale.ROOT));
+            } else if (colon >= 0) {
+                name = spec.substring(0, colon);
+                String type = spec.substring(colon + 1);
+                // xsd:string and plain literals are the same term in RDF 1.1, as in MarkLogic
+                bound = "string".equals(type)
+                        ? vf.createLiteral(value)
+                        : vf.createLiteral(value, new URIImpl(XMLSchema.NAMESPACE + type));
+            } else {
+                name = spec;
+                bound = vf.createURI(value);
+            }
+            operation.setBinding(name, bound);
+        }
+    }
+
+    /**
+     * returns dataset of default-graph-uri and named-graph-uri, null if neither is given
+     *
+     * @param ex
+     * @return DatasetImpl
+     */
+    private static DatasetImpl queryDataset(StandInExchange ex) {
+        List<String> defaultGraphs = ex.getParams("default-graph-uri");
+        List<String> namedGraphs = ex.getParams("named-graph-uri");
+        if (defaultGraphs.isEmpty() && namedGraphs.isEmpty()) {
+            return null;
+        }
+        DatasetImpl dataset = new DatasetImpl();
+        for (String graph : defaultGraphs) {
+            dataset.addDefaultGraph(new URIImpl(graph));
+        }
+        for (String graph : namedGraphs) {
+            dataset.addNamedGraph(new URIImpl(graph));
+        }
+        return dataset;
+    }
+
+    /**
+     * returns dataset of using-graph-uri and using-named-graph-uri, inserting into and
+     * deleting from the MarkLogic default graph when no graph is named
+     *
+     * @param ex
+     * @return DatasetImpl
+     */
+    private static DatasetImpl updateDataset(StandInExchange ex) {
+        DatasetImpl dataset = new DatasetImpl();
+        for (String graph : ex.getParams("using-graph-uri")) {
+            dataset.addDefaultGraph(new URIImpl(graph));
+        }
+        for (String graph : ex.getParams("using-named-graph-uri")) {
+            dataset.addNamedGraph(new URIImpl(graph));
+        }
+        URIImpl defaultGraph = new URIImpl(MarkLogicClient.DEFAULT_GRAPH_URI);
+        dataset.setDefaultInsertGraph(defaultGraph);
+        dataset.addDefaultRemoveGraph(defaultGraph);
+        return dataset;
+    }
+
+    /**
+     * returns first accepted format the registry can write, otherwise fallback
+     *
+     * @param registry
+     * @param accept
+     * @param fallback
+     * @return format
+     */
+    private static <F extends FileFormat> F accepted(FileFormatServiceRegistry<F, ?> registry, List<String> accept, F fallback) {
+        for (String mimeType : accept) {
+            F format = registry.getFileFormatForMIMEType(mimeType);
+            if (format != null) {
+                return format;
+            }
+        }
+        return fallback;
+    }
+
+    private static long parseLong(String value, long fallback) {
+        return value == null ? fallback : Long.parseLong(value);
+    }
+}
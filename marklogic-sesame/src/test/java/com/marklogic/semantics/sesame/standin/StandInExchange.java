@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * a single request to the stand-in; decoded parameters, a throttled request
+ * body and a throttled, chunked response
+ *
+ * @author James Fuller
+ */
+final class StandInExchange {
+
+    static final String FORM = "application/x-www-form-urlencoded";
+
+    private final HttpExchange exchange;
+    private final long bytesPerSecond;
+    private final Map<String, List<String>> params = new LinkedHashMap<>();
+
+    private InputStream body;
+    private OutputStream response;
+    private boolean responded = false;
+
+    /**
+     * constructor, reads form encoded bodies as parameters
+     *
+     * @param exchange
+     * @param bytesPerSecond request and response body bandwidth, 0 or less for unlimited
+     * @throws IOException
+     */
+    StandInExchange(HttpExchange exchange, long bytesPerSecond) throws IOException {
+        this.exchange = exchange;
+        this.bytesPerSecond = bytesPerSecond;
+        parse(exchange.getRequestURI().getRawQuery());
+        if (FORM.equals(getContentType())) {
+            parse(new String(ByteStreams.toByteArray(getBody()), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * returns request method
+     *
+     * @return String
+     */
+    String getMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    /**
+     * returns request path
+     *
+     * @return String
+     */
+    String getPath() {
+        return exchange.getRequestURI().getPath();
+    }
+
+    /**
+     * returns first value of parameter, null if not given
+     *
+     * @param name
+     * @return String
+     */
+    String getParam(String name) {
+        List<String> values = params.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    /**
+     * returns values of parameter
+     *
+     * @param name
+     * @return List
+     */
+    List<String> getParams(String name) {
+        List<String> values = params.get(name);
+        return values == null ? Collections.<String>emptyList() : values;
+    }
+
+    /**
+     * returns all parameters by name
+     *
+     * @return Map
+     */
+    Map<String, List<String>> getParams() {
+        return params;
+    }
+
+    /**
+     * returns lower case media type of the request body without parameters, null if not given
+     *
+     * @return String
+     */
+    String getContentType() {
+        return mediaType(exchange.getRequestHeaders().getFirst("Content-Type"));
+    }
+
+    /**
+     * returns media types the client accepts, in the order given
+     *
+     * @return List
+     */
+    List<String> getAccept() {
+        List<String> types = new ArrayList<>();
+        for (String header : exchange.getRequestHeaders().get("Accept") == null
+                ? Collections.<String>emptyList() : exchange.getRequestHeaders().get("Accept")) {
+            for (String type : header.split(",")) {
+                String mediaType = mediaType(type);
+                if (mediaType != null && !mediaType.isEmpty()) {
+                    types.add(mediaType);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * returns throttled request body
+     *
+     * @return InputStream
+     */
+    InputStream getBody() {
+        if (body == null) {
+            body = Throttle.input(exchange.getRequestBody(), bytesPerSecond);
+        }
+        return body;
+    }
+
+    /**
+     * returns request body as a UTF-8 string
+     *
+     * @return String
+     * @throws IOException
+     */
+    String readBody() throws IOException {
+        return new String(ByteStreams.toByteArray(getBody()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * sets response header, before responding
+     *
+     * @param name
+     * @param value
+     */
+    void setHeader(String name, String value) {
+        exchange.getResponseHeaders().set(name, value);
+    }
+
+    /**
+     * sends status and a chunked body of contentType
+     *
+     * @param status
+     * @param contentType
+     * @return throttled response body
+     * @throws IOException
+     */
+    OutputStream respond(int status, String contentType) throws IOException {
+        drain(exchange);
+        setHeader("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, 0);
+        responded = true;
+        response = Throttle.output(exchange.getResponseBody(), bytesPerSecond);
+        return response;
+    }
+
+    /**
+     * sends status without a body
+     *
+     * @param status
+     * @throws IOException
+     */
+    void respond(int status) throws IOException {
+        drain(exchange);
+        exchange.sendResponseHeaders(status, -1);
+        responded = true;
+    }
+
+    /**
+     * returns true once the response status has been sent
+     *
+     * @return boolean
+     */
+    boolean isResponded() {
+        return responded;
+    }
+
+    /**
+     * drains the request body and ends the exchange
+     */
+    void close() {
+        try {
+            drain(exchange);
+            if (response != null) {
+                response.flush();
+            }
+        } catch (IOException e) {
+            // client went away, nothing left to tell it
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * reads what is left of the request body; the server closes a kept alive
+     * connection if the response finishes before the request body was read to its end
+     *
+     * @param exchange
+     * @throws IOException
+     */
+    static void drain(HttpExchange exchange) throws IOException {
+        ByteStreams.copy(exchange.getRequestBody(), ByteStreams.nullOutputStream());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * adds form encoded parameters
+     *
+     * @param query
+     * @throws UnsupportedEncodingException
+     */
+    private void parse(String query) throws UnsupportedEncodingException {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            List<String> values = params.get(name);
+            if (values == null) {
+                values = new ArrayList<>();
+                params.put(name, values);
+            }
+            values.add(value);
+        }
+    }
+
+    /**
+     * returns media type without parameters, lower case
+     *
+     * @param header
+     * @return String
+     */
+    private static String mediaType(String header) {
+        if (header == null) {
+            return null;
+        }
+        int semicolon = header.indexOf(';');
+        return (semicolon < 0 ? header : header.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+}
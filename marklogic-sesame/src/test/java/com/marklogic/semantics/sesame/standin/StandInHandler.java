@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.UnsupportedRDFormatException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * base of the stand-in endpoints; counts the request, injects latency and
+ * turns failures into MarkLogic REST error responses
+ *
+ * @author James Fuller
+ */
+abstract class StandInHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandInHandler.class);
+
+    protected final StandInServer server;
+
+    /**
+     * constructor
+     *
+     * @param server
+     */
+    StandInHandler(StandInServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        server.requested();
+        StandInExchange ex = null;
+        try {
+            long latency = server.getLatencyMillis();
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            ex = new StandInExchange(exchange, server.getBytesPerSecond());
+            handle(ex);
+        } catch (StandInException e) {
+            error(exchange, ex, e.status, e.messageCode, e.getMessage());
+        } catch (MalformedQueryException | RDFParseException | UnsupportedRDFormatException e) {
+            error(exchange, ex, 400, "XDMP-BADREQ", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error(exchange, ex, 503, "XDMP-CANCELED", "Stand-in is stopping.");
+        } catch (Exception e) {
+            logger.warn("stand-in request failed", e);
+            error(exchange, ex, 500, "XDMP-INTERNAL", String.valueOf(e.getMessage()));
+        } finally {
+            if (ex != null) {
+                ex.close();
+            } else {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * handles request, responding before returning
+     *
+     * @param ex
+     * @throws Exception
+     */
+    abstract void handle(StandInExchange ex) throws Exception;
+
+    /**
+     * failure reported to the client as a MarkLogic REST error
+     */
+    static class StandInException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+        private final String messageCode;
+
+        StandInException(int status, String messageCode, String message) {
+            super(message);
+            this.status = status;
+            this.messageCode = messageCode;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * sends a MarkLogic REST error, unless a response was already started
+     *
+     * @param exchange
+     * @param ex null if failed before the exchange was read
+     * @param status
+     * @param messageCode
+     * @param message
+     */
+    private static void error(HttpExchange exchange, StandInExchange ex, int status, String messageCode, String message) {
+        if (ex != null && ex.isResponded()) {
+            logger.debug("cannot report {} after response started", messageCode);
+            return;
+        }
+        String body = "{\"errorResponse\":{\"statusCode\":" + status
+                + ",\"status\":\"" + reason(status)
+                + "\",\"messageCode\":\"" + escape(messageCode)
+                + "\",\"message\":\"" + escape(message) + "\"}}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            StandInExchange.drain(exchange);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.flush();
+        } catch (IOException e) {
+            logger.debug("could not send error response", e);
+        }
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Internal Server Error";
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : String.valueOf(value).toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * embedded stand-in for the MarkLogic REST endpoints used by MarkLogicClient;
+ * /v1/graphs, /v1/graphs/sparql, /v1/transactions and /v1/ping, backed by a Sesame
+ * repository, an in-memory store by default.
+ *
+ * Latency is added before each request is handled and request and response
+ * bodies are throttled to the configured bandwidth, so the client can be tested
+ * and benchmarked end to end without a MarkLogic server. Authentication,
+ * permissions and rulesets are not implemented; the stand-in accepts any
+ * credentials and ignores those parameters, except default-rulesets=exclude,
+ * which leaves out statements inferred by the backing repository.
+ * Constraining queries are rejected.
+ *
+ * @author James Fuller
+ */
+public class StandInServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandInServer.class);
+
+    private final Repository repository;
+    private final boolean ownsRepository;
+
+    private final ConcurrentMap<String, RepositoryConnection> transactions = new ConcurrentHashMap<>();
+    private final AtomicLong txids = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile long latencyMillis = 0;
+    private volatile long bytesPerSecond = 0;
+
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    /**
+     * constructor, backed by an in-memory store
+     */
+    public StandInServer() {
+        this(new SailRepository(new MemoryStore()), true);
+    }
+
+    /**
+     * constructor
+     *
+     * @param repository initialized and shut down by the caller
+     */
+    public StandInServer(Repository repository) {
+        this(repository, false);
+    }
+
+    /**
+     * starts on an ephemeral port of the loopback interface
+     *
+     * @return port
+     * @throws IOException
+     */
+    public int start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * starts on port of the loopback interface
+     *
+     * @param port 0 for an ephemeral port
+     * @return port
+     * @throws IOException
+     */
+    public synchronized int start(int port) throws IOException {
+        if (httpServer != null) {
+            throw new IllegalStateException("Stand-in is already started.");
+        }
+        if (ownsRepository && !repository.isInitialized()) {
+            try {
+                repository.initialize();
+            } catch (RepositoryException e) {
+                throw new IOException(e);
+            }
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/v1/graphs/sparql", new SparqlHandler(this));
+        server.createContext("/v1/graphs", new GraphsHandler(this));
+        server.createContext("/v1/transactions", new TransactionsHandler(this));
+        server.createContext("/v1/ping", new StandInHandler(this) {
+            @Override
+            void handle(StandInExchange ex) throws Exception {
+                ex.respond(204);
+            }
+        });
+        server.createContext("/", new StandInHandler(this) {
+            @Override
+            void handle(StandInExchange ex) throws StandInException {
+                throw new StandInException(404, "REST-UNSUPPORTEDMETHOD", "Endpoint " + ex.getPath() + " is not implemented by the stand-in.");
+            }
+        });
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("marklogic-standin-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.start();
+        httpServer = server;
+        logger.debug("stand-in listening on port {}", getPort());
+        return getPort();
+    }
+
+    /**
+     * stops listening, rolling back open transactions; shuts down the in-memory store
+     */
+    public synchronized void stop() {
+        if (httpServer == null) {
+            return;
+        }
+        httpServer.stop(0);
+        httpServer = null;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        for (String txid : new ArrayList<>(transactions.keySet())) {
+            complete(txid, false);
+        }
+        if (ownsRepository) {
+            try {
+                repository.shutDown();
+            } catch (RepositoryException e) {
+                logger.warn("could not shut down stand-in store", e);
+            }
+        }
+    }
+
+    /**
+     * returns port listened on
+     *
+     * @return int
+     */
+    public synchronized int getPort() {
+        if (httpServer == null) {
+            throw new IllegalStateException("Stand-in is not started.");
+        }
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * returns repository the stand-in reads and writes
+     *
+     * @return Repository
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * returns latency added before each request is handled
+     *
+     * @return long
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * sets latency added before each request is handled, 0 for none
+     *
+     * @param latencyMillis
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * returns bandwidth of request and response bodies
+     *
+     * @return long
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * sets bandwidth of request and response bodies, 0 or less for unlimited
+     *
+     * @param bytesPerSecond
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * returns number of requests received
+     *
+     * @return long
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * returns number of open transactions
+     *
+     * @return int
+     */
+    public int getOpenTransactions() {
+        return transactions.size();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // package ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * work done on a repository connection
+     */
+    interface ConnectionTask<T> {
+        T run(RepositoryConnection conn) throws Exception;
+    }
+
+    /**
+     * counts a request
+     */
+    void requested() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * runs task on the connection of transaction txid or, without txid, on a
+     * new connection committed after a write task
+     *
+     * @param txid null outside of a transaction
+     * @param write
+     * @param task
+     * @return result of task
+     * @throws Exception
+     */
+    <T> T withConnection(String txid, boolean write, ConnectionTask<T> task) throws Exception {
+        if (txid != null) {
+            RepositoryConnection conn = transactions.get(txid);
+            if (conn == null) {
+                throw new StandInHandler.StandInException(400, "XDMP-NOTXN", "No transaction with identifier " + txid + ".");
+            }
+            synchronized (conn) {
+                return task.run(conn);
+            }
+        }
+        RepositoryConnection conn = repository.getConnection();
+        try {
+            if (!write) {
+                return task.run(conn);
+            }
+            conn.begin();
+            boolean committed = false;
+            try {
+                T result = task.run(conn);
+                conn.commit();
+                committed = true;
+                return result;
+            } finally {
+                if (!committed) {
+                    conn.rollback();
+                }
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * opens a transaction
+     *
+     * @return transaction identifier
+     * @throws RepositoryException
+     */
+    String begin() throws RepositoryException {
+        RepositoryConnection conn = repository.getConnection();
+        try {
+            conn.begin();
+        } catch (RepositoryException e) {
+            conn.close();
+            throw e;
+        }
+        String txid = Long.toString(txids.incrementAndGet());
+        transactions.put(txid, conn);
+        return txid;
+    }
+
+    /**
+     * commits or rolls back a transaction
+     *
+     * @param txid
+     * @param commit
+     * @return false if there is no transaction txid
+     */
+    boolean complete(String txid, boolean commit) {
+        RepositoryConnection conn = transactions.remove(txid);
+        if (conn == null) {
+            return false;
+        }
+        synchronized (conn) {
+            try {
+                if (commit) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+            } catch (RepositoryException e) {
+                logger.warn("could not complete transaction {}", txid, e);
+                throw new IllegalStateException(e);
+            } finally {
+                try {
+                    conn.close();
+                } catch (RepositoryException e) {
+                    logger.debug("could not close transaction connection", e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * returns true if txid is an open transaction
+     *
+     * @param txid
+     * @return boolean
+     */
+    boolean isOpen(String txid) {
+        return transactions.containsKey(txid);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private StandInServer(Repository repository, boolean ownsRepository) {
+        this.repository = repository;
+        this.ownsRepository = ownsRepository;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import com.marklogic.semantics.sesame.MarkLogicRepository;
+import com.marklogic.semantics.sesame.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.sesame.client.GraphCatalog;
+import com.marklogic.semantics.sesame.client.GraphStatistics;
+import com.marklogic.semantics.sesame.client.RequestEvent;
+import com.marklogic.semantics.sesame.client.RequestListener;
+import com.marklogic.semantics.sesame.query.MarkLogicGraphQuery;
+import com.marklogic.semantics.sesame.query.MarkLogicTupleQuery;
+import info.aduna.iteration.Iterations;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.rio.RDFFormat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * test MarkLogicRepository end to end against the stand-in
+ *
+ * @author James Fuller
+ */
+public class StandInServerTest {
+
+    private static final String NS = "http://example.org/";
+
+    private StandInServer server;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+    private ValueFactory vf;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        int port = server.start();
+        rep = new MarkLogicRepository("127.0.0.1", port, "admin", "admin", "DIGEST");
+        rep.initialize();
+        conn = rep.getConnection();
+        vf = conn.getValueFactory();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        server.stop();
+    }
+
+    @Test
+    public void testAddAndQuery() throws Exception {
+        URI graph = vf.createURI(NS + "g1");
+        conn.add(vf.createURI(NS + "s1"), vf.createURI(NS + "p"), vf.createLiteral("one"), graph);
+        conn.add(vf.createURI(NS + "s2"), vf.createURI(NS + "p"), vf.createLiteral(2L), graph);
+        conn.sync();
+
+        TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, "SELECT ?s ?o WHERE { ?s <" + NS + "p> ?o } ORDER BY ?s");
+        TupleQueryResult result = query.evaluate();
+        try {
+            Assert.assertTrue(result.hasNext());
+            BindingSet first = result.next();
+            Assert.assertEquals(NS + "s1", first.getValue("s").stringValue());
+            Assert.assertEquals("one", first.getValue("o").stringValue());
+            Assert.assertTrue(result.hasNext());
+            result.next();
+            Assert.assertFalse(result.hasNext());
+        } finally {
+            result.close();
+        }
+
+        query.setBinding("o", vf.createLiteral(2L));
+        result = query.evaluate();
+        try {
+            Assert.assertEquals(NS + "s2", result.next().getValue("s").stringValue());
+            Assert.assertFalse(result.hasNext());
+        } finally {
+            result.close();
+        }
+
+        GraphQueryResult graphResult = conn.prepareGraphQuery(QueryLanguage.SPARQL,
+                "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + NS + "g1> { ?s ?p ?o } }").evaluate();
+        int count = 0;
+        try {
+            while (graphResult.hasNext()) {
+                graphResult.next();
+                count++;
+            }
+        } finally {
+            graphResult.close();
+        }
+        Assert.assertEquals(2, count);
+
+        Assert.assertTrue(conn.prepareBooleanQuery(QueryLanguage.SPARQL, "ASK { <" + NS + "s1> ?p \"one\" }").evaluate());
+        Assert.assertFalse(conn.prepareBooleanQuery(QueryLanguage.SPARQL, "ASK { <" + NS + "s1> ?p \"two\" }").evaluate());
+        Assert.assertEquals(2, conn.size(graph));
+
+        conn.clear(graph);
+        Assert.assertEquals(0, conn.size(graph));
+    }
+
+    @Test
+    public void testParsedResultsReportSuccess() throws Exception {
+        URI graph = vf.createURI(NS + "g5");
+        conn.add(vf.createURI(NS + "s1"), vf.createURI(NS + "p"), vf.createLiteral("one"), graph);
+        conn.add(vf.createURI(NS + "s2"), vf.createURI(NS + "p"), vf.createLiteral("two"), graph);
+        conn.sync();
+
+        final List<RequestEvent> completed = new CopyOnWriteArrayList<>();
+        rep.setRequestListener(new RequestListener() {
+            @Override
+            public void requestStarted(RequestEvent event) {
+            }
+
+            @Override
+            public void requestCompleted(RequestEvent event) {
+                completed.add(event);
+            }
+        });
+        MarkLogicRepositoryConnection listened = rep.getConnection();
+        try {
+            for (boolean pullParsing : new boolean[]{false, true}) {
+                MarkLogicTupleQuery query = listened.prepareTupleQuery(QueryLanguage.SPARQL, "SELECT ?s ?o WHERE { ?s ?p ?o }");
+                query.setPullParsing(pullParsing);
+                TupleQueryResult result = query.evaluate();
+                int count = 0;
+                while (result.hasNext()) {
+                    result.next();
+                    count++;
+                }
+                result.close();
+                Assert.assertEquals(2, count);
+
+                MarkLogicGraphQuery graphQuery = listened.prepareGraphQuery(QueryLanguage.SPARQL, "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }");
+                graphQuery.setPullParsing(pullParsing);
+                GraphQueryResult graphResult = graphQuery.evaluate();
+                while (graphResult.hasNext()) {
+                    graphResult.next();
+                }
+                graphResult.close();
+            }
+
+            // a pull result parses nothing until read, a background parser may finish before close
+            MarkLogicTupleQuery unreadQuery = listened.prepareTupleQuery(QueryLanguage.SPARQL, "SELECT ?s ?o WHERE { ?s ?p ?o }");
+            unreadQuery.setPullParsing(true);
+            unreadQuery.evaluate().close();
+        } finally {
+            listened.close();
+        }
+
+        Assert.assertEquals(5, completed.size());
+        for (RequestEvent event : completed.subList(0, 4)) {
+            Assert.assertEquals(event.toString(), RequestEvent.Outcome.SUCCESS, event.getOutcome());
+        }
+        Assert.assertEquals(RequestEvent.Outcome.CANCELLED, completed.get(4).getOutcome());
+    }
+
+    @Test
+    public void testGraphCatalogWarmAcrossFlush() throws Exception {
+        rep.setGraphCatalog(new GraphCatalog());
+        MarkLogicRepositoryConnection cataloged = rep.getConnection();
+        try {
+            cataloged.add(vf.createURI(NS + "s"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), vf.createURI(NS + "g5"));
+            cataloged.sync();
+            long requests = server.getRequestCount();
+            Iterations.asList(cataloged.getContextIDs());
+            Assert.assertEquals(requests + 1, server.getRequestCount());
+
+            URI graph = vf.createURI(NS + "g6");
+            cataloged.add(vf.createURI(NS + "s"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), graph);
+            cataloged.sync();
+            requests = server.getRequestCount();
+            Assert.assertTrue(Iterations.asList(cataloged.getContextIDs()).contains(graph));
+            Assert.assertEquals(requests, server.getRequestCount());
+
+            cataloged.prepareUpdate(QueryLanguage.SPARQL, "INSERT DATA { GRAPH <" + NS + "g7> { <" + NS + "s> <" + NS + "p> <" + NS + "o> } }").execute();
+            requests = server.getRequestCount();
+            Iterations.asList(cataloged.getContextIDs());
+            Assert.assertEquals(requests + 1, server.getRequestCount());
+        } finally {
+            cataloged.close();
+        }
+    }
+
+    @Test
+    public void testGraphStatisticsRecountWrittenGraph() throws Exception {
+        URI g1 = vf.createURI(NS + "g8");
+        URI g2 = vf.createURI(NS + "g9");
+        conn.add(vf.createURI(NS + "s1"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), g1);
+        conn.add(vf.createURI(NS + "s2"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), g2);
+        conn.sync();
+
+        rep.setGraphStatistics(new GraphStatistics());
+        MarkLogicRepositoryConnection counted = rep.getConnection();
+        try {
+            Assert.assertEquals(1, counted.size(g1));
+            Assert.assertEquals(1, counted.size(g2));
+
+            counted.add(vf.createURI(NS + "s3"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), g2);
+            counted.sync();
+            Assert.assertEquals(Collections.singleton(g2.stringValue()), rep.getGraphStatistics().getStaleGraphs());
+            Assert.assertEquals(2, counted.size(g2));
+            Assert.assertEquals(3, counted.size(g1, g2));
+            Assert.assertTrue(rep.getGraphStatistics().getStaleGraphs().isEmpty());
+        } finally {
+            counted.close();
+        }
+    }
+
+    @Test
+    public void testAddFile() throws Exception {
+        String turtle = "<" + NS + "s> <" + NS + "p> <" + NS + "o1> , <" + NS + "o2> .";
+        URI graph = vf.createURI(NS + "g2");
+        conn.add(new ByteArrayInputStream(turtle.getBytes(StandardCharsets.UTF_8)), NS, RDFFormat.TURTLE, graph);
+
+        RepositoryConnection store = server.getRepository().getConnection();
+        try {
+            RepositoryResult<Statement> statements = store.getStatements(null, null, null, false, graph);
+            int count = 0;
+            while (statements.hasNext()) {
+                Assert.assertEquals(graph, statements.next().getContext());
+                count++;
+            }
+            statements.close();
+            Assert.assertEquals(2, count);
+        } finally {
+            store.close();
+        }
+
+        conn.clear();
+        Assert.assertEquals(0, conn.size());
+    }
+
+    @Test
+    public void testTransactions() throws Exception {
+        URI graph = vf.createURI(NS + "g3");
+        conn.begin();
+        conn.add(vf.createURI(NS + "s"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), graph);
+        conn.sync();
+        Assert.assertEquals(1, server.getOpenTransactions());
+        Assert.assertEquals(1, conn.size(graph));
+        conn.rollback();
+        Assert.assertEquals(0, server.getOpenTransactions());
+        Assert.assertEquals(0, conn.size(graph));
+
+        conn.begin();
+        conn.add(vf.createURI(NS + "s"), vf.createURI(NS + "p"), vf.createURI(NS + "o"), graph);
+        conn.commit();
+        Assert.assertEquals(0, server.getOpenTransactions());
+        Assert.assertEquals(1, conn.size(graph));
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        long requests = server.getRequestCount();
+        conn.prepareBooleanQuery(QueryLanguage.SPARQL, "ASK { ?s ?p ?o }").evaluate();
+        Assert.assertTrue(server.getRequestCount() > requests);
+
+        server.setLatencyMillis(200);
+        long start = System.nanoTime();
+        conn.prepareBooleanQuery(QueryLanguage.SPARQL, "ASK { ?s ?p ?o }").evaluate();
+        Assert.assertTrue(System.nanoTime() - start >= 200 * 1000000L);
+    }
+
+    @Test
+    public void testBandwidth() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 20000) {
+            sb.append("<").append(NS).append("s").append(sb.length()).append("> <").append(NS).append("p> \"o\" .\n");
+        }
+        byte[] turtle = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        server.setBytesPerSecond(40000);
+        long start = System.nanoTime();
+        conn.add(new ByteArrayInputStream(turtle), NS, RDFFormat.TURTLE, vf.createURI(NS + "g4"));
+        Assert.assertTrue(System.nanoTime() - start >= turtle.length * 1000000000L / 40000 - 50 * 1000000L);
+    }
+}
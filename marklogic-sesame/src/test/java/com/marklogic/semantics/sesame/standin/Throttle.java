@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * paces a stream to a number of bytes per second, sleeping once it gets ahead
+ *
+ * @author James Fuller
+ */
+final class Throttle {
+
+    // largest write passed on at once, so pacing stays smooth
+    private static final int CHUNK = 8192;
+
+    private final long bytesPerSecond;
+    private final long start = System.nanoTime();
+    private long bytes = 0;
+
+    /**
+     * constructor
+     *
+     * @param bytesPerSecond
+     */
+    private Throttle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * returns out paced to bytesPerSecond, out itself if 0 or less
+     *
+     * @param out
+     * @param bytesPerSecond
+     * @return OutputStream
+     */
+    static OutputStream output(OutputStream out, long bytesPerSecond) {
+        return bytesPerSecond <= 0 ? out : new ThrottledOutputStream(out, new Throttle(bytesPerSecond));
+    }
+
+    /**
+     * returns in paced to bytesPerSecond, in itself if 0 or less
+     *
+     * @param in
+     * @param bytesPerSecond
+     * @return InputStream
+     */
+    static InputStream input(InputStream in, long bytesPerSecond) {
+        return bytesPerSecond <= 0 ? in : new ThrottledInputStream(in, new Throttle(bytesPerSecond));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // private ////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * accounts for count bytes, sleeping until they are due
+     *
+     * @param count
+     * @throws InterruptedIOException
+     */
+    private void transferred(int count) throws InterruptedIOException {
+        bytes += count;
+        long due = start + TimeUnit.SECONDS.toNanos(1) * bytes / bytesPerSecond;
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling.");
+            }
+        }
+    }
+
+    private static class ThrottledOutputStream extends FilterOutputStream {
+
+        private final Throttle throttle;
+
+        ThrottledOutputStream(OutputStream out, Throttle throttle) {
+            super(out);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            throttle.transferred(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK);
+                out.write(b, off, n);
+                throttle.transferred(n);
+                off += n;
+                len -= n;
+            }
+        }
+    }
+
+    private static class ThrottledInputStream extends FilterInputStream {
+
+        private final Throttle throttle;
+
+        ThrottledInputStream(InputStream in, Throttle throttle) {
+            super(in);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                throttle.transferred(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, Math.min(len, CHUNK));
+            if (n > 0) {
+                throttle.transferred(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2016 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.sesame.standin;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * stand-in for /v1/transactions; POST opens a transaction, redirecting to
+ * /v1/transactions/{txid}, and POST to that with result=commit or result=rollback
+ * completes it. Transaction names and time limits are ignored.
+ *
+ * @author James Fuller
+ */
+class TransactionsHandler extends StandInHandler {
+
+    private static final String PATH = "/v1/transactions";
+
+    /**
+     * constructor
+     *
+     * @param server
+     */
+    TransactionsHandler(StandInServer server) {
+        super(server);
+    }
+
+    @Override
+    void handle(StandInExchange ex) throws Exception {
+        String path = ex.getPath();
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String method = ex.getMethod();
+        if (PATH.equals(path)) {
+            if (!"POST".equals(method)) {
+                throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", method + " is not supported on " + PATH + ".");
+            }
+            String txid = server.begin();
+            ex.setHeader("Location", PATH + "/" + txid);
+            ex.respond(303);
+            return;
+        }
+        if (!path.startsWith(PATH + "/")) {
+            throw new StandInException(404, "REST-UNSUPPORTEDMETHOD", "Endpoint " + path + " is not implemented by the stand-in.");
+        }
+        String txid = path.substring(PATH.length() + 1);
+        if ("GET".equals(method)) {
+            if (!server.isOpen(txid)) {
+                throw new StandInException(404, "XDMP-NOTXN", "No transaction with identifier " + txid + ".");
+            }
+            String status = "{\"transaction-status\":{\"transaction-id\":\"" + txid + "\",\"transaction-mode\":\"update\"}}";
+            ex.respond(200, "application/json").write(status.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (!"POST".equals(method)) {
+            throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", method + " is not supported on " + path + ".");
+        }
+        String result = ex.getParam("result");
+        if (!"commit".equals(result) && !"rollback".equals(result)) {
+            throw new StandInException(400, "REST-INVALIDPARAM", "result must be commit or rollback.");
+        }
+        if (!server.complete(txid, "commit".equals(result))) {
+            throw new StandInException(400, "XDMP-NOTXN", "No transaction with identifier " + txid + ".");
+        }
+        ex.respond(204);
+    }
+}